@@ -0,0 +1,195 @@
+/**
+ * filename: BatchRunner.java
+ */
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Tests many graph files in one JVM on a fork-join pool. Each result is printed as soon as
+ * its test finishes, as one line of the form
+ *
+ * 		file	planar|nonplanar|error	micros
+ *
+ * where micros is the time spent loading and testing the file. A file that cannot be read
+ * or that the engine rejects is reported as "error" and does not stop the batch. With a
+ * ResultCache, a graph that was tested before is answered from the cache.
+ *
+ * @author Trevor Mack		(tmm9274@rit.edu)
+ * @author David Sweeney	(dfs7079@rit.edu)
+ *
+ */
+public class BatchRunner {
+
+	private final PlanarityTester engine;
+	private final int parallelism;
+	private final PrintStream out;
+	//answers of earlier tests, or null to test every file
+	private ResultCache cache;
+	//results so far
+	private final AtomicInteger planar = new AtomicInteger();
+	private final AtomicInteger nonplanar = new AtomicInteger();
+	private final AtomicInteger errors = new AtomicInteger();
+
+	/**
+	 * @param engine		- the planarity engine to run on every file
+	 * @param parallelism	- number of worker threads
+	 * @param out			- where result lines are written
+	 */
+	public BatchRunner(PlanarityTester engine, int parallelism, PrintStream out) {
+		this.engine = engine;
+		this.parallelism = parallelism;
+		this.out = out;
+	}
+
+	/**
+	 * @param cache	- answers to reuse for repeated graphs, or null to test every file
+	 */
+	public void setCache(ResultCache cache) {
+		this.cache = cache;
+	}
+
+	/**
+	 * Expands an input specification into a list of graph files. The specification is
+	 * either a directory (all regular files below it), a glob pattern such as
+	 * "graphs/*.txt" or "graphs/**.txt", or a manifest file listing one graph file per line.
+	 * Blank manifest lines and lines starting with '#' are skipped.
+	 *
+	 * @param spec	- directory, glob or manifest file
+	 * @return the graph files, sorted by path for directories and globs
+	 * @throws IOException if the directory or manifest cannot be read
+	 */
+	public static List<File> listInputs(String spec) throws IOException {
+		List<File> files = new ArrayList<File>();
+		File file = new File(spec);
+		if( file.isDirectory() ) {
+			collect(file.toPath(), null, files);
+		}else if( isGlob(spec) ) {
+			//walk from the deepest directory that has no glob characters
+			int glob = 0;
+			while( !isGlob(spec.substring(0, glob+1)) ) glob++;
+			int cut = Math.max(spec.lastIndexOf('/', glob), spec.lastIndexOf(File.separatorChar, glob)) + 1;
+			Path base = Paths.get(cut == 0 ? "." : spec.substring(0, cut));
+			//the rest of the pattern is matched below base, however base is written
+			collect(base, FileSystems.getDefault().getPathMatcher("glob:" + spec.substring(cut)), files);
+		}else {
+			BufferedReader reader = new BufferedReader(new FileReader(file));
+			try {
+				String line;
+				while( (line = reader.readLine()) != null ) {
+					line = line.trim();
+					if( line.length() == 0 || line.startsWith("#") ) continue;
+					files.add(new File(line));
+				}
+			} finally {
+				reader.close();
+			}
+		}
+		return files;
+	}
+
+	private static boolean isGlob(String spec) {
+		return spec.indexOf('*') >= 0 || spec.indexOf('?') >= 0 || spec.indexOf('[') >= 0 || spec.indexOf('{') >= 0;
+	}
+
+	/**
+	 * Adds the regular files below base, optionally filtered by a matcher on their path
+	 * relative to base.
+	 */
+	private static void collect(Path base, PathMatcher matcher, List<File> files) throws IOException {
+		if( !Files.isDirectory(base) ) return;
+		List<Path> paths = new ArrayList<Path>();
+		Stream<Path> walk = Files.walk(base);
+		try {
+			Iterator<Path> it = walk.iterator();
+			while( it.hasNext() ) {
+				Path path = it.next();
+				if( !Files.isRegularFile(path) ) continue;
+				if( matcher == null || matcher.matches(base.relativize(path)) ) paths.add(path);
+			}
+		} finally {
+			walk.close();
+		}
+		Path[] sorted = paths.toArray(new Path[paths.size()]);
+		Arrays.sort(sorted);
+		for( Path path : sorted ) {
+			files.add(path.toFile());
+		}
+	}
+
+	/**
+	 * Tests all files and waits until every result has been printed.
+	 *
+	 * @param files	- the graph files to test
+	 * @return true	- if no file ended in an error
+	 * @throws InterruptedException if interrupted while waiting for the workers
+	 */
+	public boolean run(List<File> files) throws InterruptedException {
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			for( final File file : files ) {
+				pool.execute(new Runnable() {
+					public void run() {
+						out.println(test(file));
+					}
+				});
+			}
+		} finally {
+			pool.shutdown();
+		}
+		pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+		return errors.get() == 0;
+	}
+
+	/**
+	 * Loads and tests one file.
+	 *
+	 * @param file	- the graph file
+	 * @return the result line for the file
+	 */
+	String test(File file) {
+		long start = System.nanoTime();
+		String result;
+		try {
+			Graph graph = new Graph(file);
+			if( cache == null ? engine.isPlanar(graph) : cache.isPlanar(engine, graph) ) {
+				result = "planar";
+				planar.incrementAndGet();
+			}else {
+				result = "nonplanar";
+				nonplanar.incrementAndGet();
+			}
+		} catch (Throwable e) {
+			//a file the engine fails on, even by running out of stack or heap, is only an error
+			result = "error";
+			errors.incrementAndGet();
+		}
+		long micros = (System.nanoTime() - start) / 1000;
+		return file.getPath() + "\t" + result + "\t" + micros;
+	}
+
+	/**
+	 * @return a one line summary of the results so far, and of the cache if there is one
+	 */
+	public String getSummary() {
+		return (planar.get() + nonplanar.get() + errors.get()) + " file(s): " + planar.get() + " planar, "
+			+ nonplanar.get() + " nonplanar, " + errors.get() + " error(s)"
+			+ (cache == null ? "" : String.format("%n") + cache.getSummary());
+	}
+}
@@ -0,0 +1,243 @@
+/**
+ * filename: BiconnectedComponents.java
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The decomposition of a CompactGraph into its biconnected components (blocks), computed
+ * in O(n+m) with the algorithm of Hopcroft and Tarjan on an explicit stack.
+ *
+ * Every edge belongs to exactly one block; a vertex belongs to one block per incident
+ * block, and the vertices in more than one block are the articulation points. Isolated
+ * vertices belong to no block. A graph is planar if and only if all of its blocks are.
+ *
+ * @author Trevor Mack		(tmm9274@rit.edu)
+ * @author David Sweeney	(dfs7079@rit.edu)
+ *
+ */
+public class BiconnectedComponents {
+
+	private final CompactGraph graph;
+	//edges of each block, as the position of one direction in the target array
+	private final int[] blockOffsets;
+	private final int[] blockEdges;
+	//vertices of each block
+	private final int[] blockVertexOffsets;
+	private final int[] blockVertices;
+	//blocks of each vertex, more than one for articulation points
+	private final int[] vertexBlockOffsets;
+	private final int[] vertexBlocks;
+
+	/**
+	 * Decomposes a graph into its blocks.
+	 *
+	 * @param graph	- the graph to decompose
+	 */
+	public BiconnectedComponents(CompactGraph graph) {
+		this.graph = graph;
+		int n = graph.size();
+		int arcs = graph.offset(n);
+		int[] disc = new int[n];
+		int[] low = new int[n];
+		int[] parentArc = new int[n];
+		int[] next = new int[n];
+		int[] stack = new int[n];
+		//edges visited but not yet assigned to a block
+		int[] edgeStack = new int[arcs/2 + 1];
+		int edgeTop = 0;
+		Arrays.fill(disc, -1);
+		int time = 0;
+
+		int[] offsets = new int[16];
+		int[] edges = new int[arcs/2 + 1];
+		int edgeCount = 0;
+		int blockCount = 0;
+
+		for( int root=0; root<n; root++ ) {
+			if( disc[root] != -1 ) continue;
+			int sp = 0;
+			stack[sp++] = root;
+			disc[root] = low[root] = time++;
+			parentArc[root] = -1;
+			while( sp > 0 ) {
+				int v = stack[sp-1];
+				int end = graph.offset(v+1);
+				if( graph.offset(v) + next[v] < end ) {
+					int i = graph.offset(v) + next[v]++;
+					int w = graph.target(i);
+					//skip self loops and the tree edge back to the parent
+					if( w == v || (parentArc[v] != -1 && i == graph.twin(parentArc[v])) ) continue;
+					if( disc[w] == -1 ) {
+						//tree edge
+						edgeStack[edgeTop++] = i;
+						parentArc[w] = i;
+						disc[w] = low[w] = time++;
+						stack[sp++] = w;
+					}else if( disc[w] < disc[v] ) {
+						//back edge to an ancestor
+						edgeStack[edgeTop++] = i;
+						low[v] = Math.min(low[v], disc[w]);
+					}
+				}else {
+					sp--;
+					if( parentArc[v] == -1 ) continue;
+					int u = stack[sp-1];
+					low[u] = Math.min(low[u], low[v]);
+					if( low[v] >= disc[u] ) {
+						//u separates the subtree of v: its edges on the stack form a block
+						if( blockCount+2 > offsets.length ) offsets = Arrays.copyOf(offsets, 2*offsets.length);
+						offsets[blockCount] = edgeCount;
+						int e;
+						do {
+							e = edgeStack[--edgeTop];
+							edges[edgeCount++] = e;
+						} while( e != parentArc[v] );
+						blockCount++;
+					}
+				}
+			}
+		}
+		offsets[blockCount] = edgeCount;
+		blockOffsets = Arrays.copyOf(offsets, blockCount+1);
+		blockEdges = edges;
+
+		//vertices of each block, found by stamping the endpoints of its edges
+		int[] stamp = new int[n];
+		int[] vertexOffsets = new int[blockCount+1];
+		int[] vertices = new int[edgeCount + blockCount];
+		int[] blocksPerVertex = new int[n+1];
+		int count = 0;
+		for( int b=0; b<blockCount; b++ ) {
+			vertexOffsets[b] = count;
+			for( int k=blockOffsets[b]; k<blockOffsets[b+1]; k++ ) {
+				int i = blockEdges[k];
+				int v1 = graph.target(graph.twin(i)), v2 = graph.target(i);
+				if( stamp[v1] != b+1 ) { stamp[v1] = b+1; vertices[count++] = v1; blocksPerVertex[v1+1]++; }
+				if( stamp[v2] != b+1 ) { stamp[v2] = b+1; vertices[count++] = v2; blocksPerVertex[v2+1]++; }
+			}
+		}
+		vertexOffsets[blockCount] = count;
+		blockVertexOffsets = vertexOffsets;
+		blockVertices = Arrays.copyOf(vertices, count);
+
+		for( int v=0; v<n; v++ ) {
+			blocksPerVertex[v+1] += blocksPerVertex[v];
+		}
+		vertexBlockOffsets = blocksPerVertex;
+		vertexBlocks = new int[count];
+		int[] fill = Arrays.copyOf(blocksPerVertex, n);
+		for( int b=0; b<blockCount; b++ ) {
+			for( int k=blockVertexOffsets[b]; k<blockVertexOffsets[b+1]; k++ ) {
+				vertexBlocks[fill[blockVertices[k]]++] = b;
+			}
+		}
+	}
+
+	/**
+	 * @return the number of blocks
+	 */
+	public int getBlockCount() {
+		return blockOffsets.length-1;
+	}
+
+	/**
+	 * @return true if the graph is connected, has at least one edge and no articulation point
+	 */
+	public boolean isBiconnected() {
+		return getBlockCount() == 1 && blockVertexOffsets[1] == graph.size();
+	}
+
+	/**
+	 * @param b	- a block
+	 * @return the number of edges in block b
+	 */
+	public int getEdgeCount(int b) {
+		return blockOffsets[b+1] - blockOffsets[b];
+	}
+
+	/**
+	 * @param b	- a block
+	 * @return the edges of block b, as positions of one direction in the target array
+	 */
+	public int[] getEdges(int b) {
+		return Arrays.copyOfRange(blockEdges, blockOffsets[b], blockOffsets[b+1]);
+	}
+
+	/**
+	 * @param b	- a block
+	 * @return the vertex ids of block b
+	 */
+	public int[] getVertices(int b) {
+		return Arrays.copyOfRange(blockVertices, blockVertexOffsets[b], blockVertexOffsets[b+1]);
+	}
+
+	/**
+	 * @param v	- a vertex id
+	 * @return true if removing v disconnects its component
+	 */
+	public boolean isArticulationPoint(int v) {
+		return vertexBlockOffsets[v+1] - vertexBlockOffsets[v] > 1;
+	}
+
+	/**
+	 * @return the ids of all articulation points, in increasing order
+	 */
+	public int[] getArticulationPoints() {
+		int count = 0;
+		int[] points = new int[graph.size()];
+		for( int v=0; v<graph.size(); v++ ) {
+			if( isArticulationPoint(v) ) points[count++] = v;
+		}
+		return Arrays.copyOf(points, count);
+	}
+
+	/**
+	 * @param v	- a vertex id
+	 * @return the blocks that contain v
+	 */
+	public int[] getBlocks(int v) {
+		return Arrays.copyOfRange(vertexBlocks, vertexBlockOffsets[v], vertexBlockOffsets[v+1]);
+	}
+
+	/**
+	 * Builds the subgraph of one block. Vertex ids follow getVertices(b) and the labels are
+	 * those of the whole graph.
+	 *
+	 * @param b			- a block
+	 * @param localId	- scratch array of graph.size() entries, holding the local id of each
+	 * 					  vertex of b on return
+	 * @return the block as a CompactGraph
+	 */
+	public CompactGraph getBlock(int b, int[] localId) {
+		int from = blockVertexOffsets[b], to = blockVertexOffsets[b+1];
+		Object[] labels = new Object[to - from];
+		for( int k=from; k<to; k++ ) {
+			localId[blockVertices[k]] = k - from;
+			labels[k - from] = graph.getLabel(blockVertices[k]);
+		}
+		int m = getEdgeCount(b);
+		int[] sources = new int[m], destinations = new int[m];
+		for( int k=0; k<m; k++ ) {
+			int i = blockEdges[blockOffsets[b] + k];
+			sources[k] = localId[graph.target(graph.twin(i))];
+			destinations[k] = localId[graph.target(i)];
+		}
+		return CompactGraph.fromEdges(labels, sources, destinations, m);
+	}
+
+	/**
+	 * @return the blocks with at least 5 vertices as Graphs, in block order; smaller blocks
+	 * 		   are always planar
+	 */
+	public List<Graph> getBlockGraphs() {
+		List<Graph> blocks = new ArrayList<Graph>();
+		int[] localId = new int[graph.size()];
+		for( int b=0; b<getBlockCount(); b++ ) {
+			if( blockVertexOffsets[b+1] - blockVertexOffsets[b] >= 5 ) blocks.add(new Graph(getBlock(b, localId)));
+		}
+		return blocks;
+	}
+}
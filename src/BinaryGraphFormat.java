@@ -0,0 +1,362 @@
+/**
+ * filename: BinaryGraphFormat.java
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A compact binary file format for graphs, read by memory-mapping the file and decoding it
+ * straight into the arrays of a CompactGraph. All numbers in the header are big endian.
+ *
+ * 		header		- int MAGIC, int VERSION, int vertex count n, long arc count (twice the
+ * 					  edge count, a self loop counts twice), long label bytes, long
+ * 					  adjacency bytes
+ * 		labels		- for every vertex in id order, the varint byte length of its name
+ * 					  followed by the name in UTF-8
+ * 		adjacency	- for every vertex in id order, its varint degree followed by its
+ * 					  neighbor ids in ascending order: the first as a varint, the others as
+ * 					  varint differences from the previous one (0 for the second copy of a
+ * 					  self loop)
+ *
+ * Varints are unsigned LEB128: seven bits per byte, least significant first, with the high
+ * bit set on every byte but the last. Every name is stored once and sorted rows keep the
+ * differences small, so a file is about half the size of the same graph as a text edge
+ * list, and loading it needs no parsing or name lookups. Unlike the text format, isolated
+ * vertices are kept.
+ *
+ * loadOffHeap decodes a file into an OffHeapStorage instead of heap arrays, for graphs too
+ * large for the heap.
+ *
+ * The first byte of MAGIC is not ASCII, so a text edge list is never mistaken for a binary
+ * file (see isBinary). Running this class converts between the two formats:
+ *
+ * usage: java BinaryGraphFormat input output
+ *
+ * A text input is written as binary and a binary input as text.
+ *
+ * @author Trevor Mack		(tmm9274@rit.edu)
+ * @author David Sweeney	(dfs7079@rit.edu)
+ *
+ */
+public class BinaryGraphFormat {
+
+	//"\x89PGB" and the format version
+	static final int MAGIC = 0x89504742;
+	static final int VERSION = 1;
+	//bytes of the header
+	private static final int HEADER = 4 + 4 + 4 + 8 + 8 + 8;
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		if( args.length != 2 ) {
+			System.err.println("usage: java BinaryGraphFormat input output");
+			System.exit(1);
+		}
+		try {
+			File input = new File(args[0]), output = new File(args[1]);
+			if( isBinary(input) ) {
+				GraphGenerator.writeEdgeList(load(input), output);
+			}else {
+				write(EdgeListLoader.load(input), output);
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+
+	private BinaryGraphFormat() {
+	}
+
+	/**
+	 * @param file	- a graph file
+	 * @return true if the file starts with the binary format's magic number
+	 * @throws IOException if the file cannot be read
+	 */
+	public static boolean isBinary(File file) throws IOException {
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		try {
+			return in.length() >= 4 && in.readInt() == MAGIC;
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Writes a graph in the binary format.
+	 *
+	 * @param graph	- the graph
+	 * @param file	- the output file
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void write(CompactGraph graph, File file) throws IOException {
+		int n = graph.size();
+		int arcs = graph.offset(n);
+		byte[][] names = new byte[n][];
+		long labelBytes = 0;
+		for( int v=0; v<n; v++ ) {
+			names[v] = String.valueOf(graph.getLabel(v)).getBytes(StandardCharsets.UTF_8);
+			labelBytes += varintLength(names[v].length) + names[v].length;
+		}
+		int[] sorted = new int[arcs];
+		long adjacencyBytes = 0;
+		for( int v=0; v<n; v++ ) {
+			int start = graph.offset(v), end = graph.offset(v+1);
+			for( int i=start; i<end; i++ ) {
+				sorted[i] = graph.target(i);
+			}
+			Arrays.sort(sorted, start, end);
+			adjacencyBytes += varintLength(end - start);
+			for( int i=start; i<end; i++ ) {
+				adjacencyBytes += varintLength(i == start ? sorted[i] : sorted[i] - sorted[i-1]);
+			}
+		}
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(n);
+			out.writeLong(arcs);
+			out.writeLong(labelBytes);
+			out.writeLong(adjacencyBytes);
+			for( int v=0; v<n; v++ ) {
+				writeVarint(out, names[v].length);
+				out.write(names[v]);
+			}
+			for( int v=0; v<n; v++ ) {
+				int start = graph.offset(v), end = graph.offset(v+1);
+				writeVarint(out, end - start);
+				for( int i=start; i<end; i++ ) {
+					writeVarint(out, i == start ? sorted[i] : sorted[i] - sorted[i-1]);
+				}
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	private static int varintLength(int value) {
+		int length = 1;
+		while( (value >>>= 7) != 0 ) length++;
+		return length;
+	}
+
+	private static void writeVarint(OutputStream out, int value) throws IOException {
+		while( (value & ~0x7f) != 0 ) {
+			out.write((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+
+	/**
+	 * Loads a graph written by write. Vertex labels are read as strings.
+	 *
+	 * @param file	- the binary graph file
+	 * @return the graph
+	 * @throws IOException if the file cannot be read or is not a valid binary graph
+	 */
+	public static CompactGraph load(File file) throws IOException {
+		return load(file, EdgeListLoader.WINDOW);
+	}
+
+	/**
+	 * Loads a binary graph, mapping at most window bytes at once.
+	 *
+	 * @param file		- the binary graph file
+	 * @param window	- the mapping window size, larger than any vertex name
+	 * @return the graph
+	 * @throws IOException if the file cannot be read or is not a valid binary graph
+	 */
+	static CompactGraph load(File file, int window) throws IOException {
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		try {
+			Mapping map = new Mapping(in.getChannel(), window);
+			long[] header = readHeader(map, file);
+			int n = (int)header[0];
+			int arcs = (int)header[1];
+
+			Object[] labels = new Object[n];
+			for( int v=0; v<n; v++ ) {
+				int length = map.varint();
+				if( length < 0 ) throw new IOException("corrupt binary graph: bad name length of vertex " + v);
+				map.require(length);
+				labels[v] = decode(map.buffer, length);
+			}
+
+			int[] offsets = new int[n+1];
+			int[] targets = new int[arcs];
+			int i = 0;
+			for( int v=0; v<n; v++ ) {
+				int degree = map.varint();
+				if( degree < 0 || degree > arcs - i ) throw new IOException("corrupt binary graph: row " + v + " is too long");
+				int w = 0;
+				for( int end=i+degree; i<end; ) {
+					w += map.varint();
+					if( w < 0 || w >= n ) throw new IOException("corrupt binary graph: neighbor out of range in row " + v);
+					targets[i++] = w;
+				}
+				offsets[v+1] = i;
+			}
+			if( i != arcs || map.position() != map.channel.size() ) throw new IOException("corrupt binary graph: " + file);
+			return new CompactGraph(labels, offsets, targets);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Loads a graph written by write into an OffHeapStorage, decoding the file straight into
+	 * it so the heap never holds more than one vertex name at a time. The rows of the file
+	 * are in ascending order, which lets the storage pair up the edge directions in place.
+	 * Vertex labels are the names as strings, as load gives them.
+	 *
+	 * @param file		- the binary graph file
+	 * @param scratch	- the file to map the storage from, or null for direct memory
+	 * @return the storage, to be closed by the caller
+	 * @throws IOException if the file cannot be read or is not a valid binary graph
+	 */
+	public static OffHeapStorage loadOffHeap(File file, File scratch) throws IOException {
+		return loadOffHeap(file, scratch, EdgeListLoader.WINDOW);
+	}
+
+	/**
+	 * Loads a binary graph into off-heap storage, mapping at most window bytes at once.
+	 *
+	 * @param file		- the binary graph file
+	 * @param scratch	- the file to map the storage from, or null for direct memory
+	 * @param window	- the mapping window size, larger than any vertex name
+	 * @return the storage, to be closed by the caller
+	 * @throws IOException if the file cannot be read or is not a valid binary graph
+	 */
+	static OffHeapStorage loadOffHeap(File file, File scratch, int window) throws IOException {
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		OffHeapStorage storage = null;
+		try {
+			Mapping map = new Mapping(in.getChannel(), window);
+			long[] header = readHeader(map, file);
+			int n = (int)header[0];
+			int arcs = (int)header[1];
+			//the name lengths are counted in, so the label section is enough room for the names
+			storage = new OffHeapStorage(n, arcs, header[2], scratch);
+
+			byte[] name = new byte[64];
+			for( int v=0; v<n; v++ ) {
+				int length = map.varint();
+				if( length < 0 ) throw new IOException("corrupt binary graph: bad name length of vertex " + v);
+				map.require(length);
+				if( length > name.length ) name = new byte[Math.max(length, 2*name.length)];
+				map.buffer.get(name, 0, length);
+				storage.putLabel(v, name, length);
+			}
+
+			int i = 0;
+			for( int v=0; v<n; v++ ) {
+				storage.putOffset(v, i);
+				int degree = map.varint();
+				if( degree < 0 || degree > arcs - i ) throw new IOException("corrupt binary graph: row " + v + " is too long");
+				int w = 0;
+				for( int end=i+degree; i<end; ) {
+					w += map.varint();
+					if( w < 0 || w >= n ) throw new IOException("corrupt binary graph: neighbor out of range in row " + v);
+					storage.putTarget(i++, w);
+				}
+			}
+			storage.putOffset(n, i);
+			if( i != arcs || map.position() != map.channel.size() ) throw new IOException("corrupt binary graph: " + file);
+			storage.pairTwins();
+			OffHeapStorage loaded = storage;
+			storage = null;
+			return loaded;
+		} finally {
+			//a storage still held here was not filled completely
+			if( storage != null ) storage.close();
+			in.close();
+		}
+	}
+
+	/**
+	 * Reads and checks the header.
+	 *
+	 * @return {vertex count, arc count, label bytes}
+	 */
+	private static long[] readHeader(Mapping map, File file) throws IOException {
+		map.require(HEADER);
+		if( map.buffer.getInt() != MAGIC ) throw new IOException("not a binary graph: " + file);
+		if( map.buffer.getInt() != VERSION ) throw new IOException("unsupported binary graph version: " + file);
+		int n = map.buffer.getInt();
+		long arcCount = map.buffer.getLong();
+		long labelBytes = map.buffer.getLong();
+		long adjacencyBytes = map.buffer.getLong();
+		if( n < 0 || arcCount < 0 || arcCount > Integer.MAX_VALUE - 8 || labelBytes < 0 || adjacencyBytes < 0
+				|| HEADER + labelBytes + adjacencyBytes != map.channel.size() ) {
+			throw new IOException("corrupt binary graph header: " + file);
+		}
+		return new long[] { n, arcCount, labelBytes };
+	}
+
+	private static String decode(MappedByteBuffer buffer, int length) {
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * A read position in a file that is mapped one window at a time. Before reading a field
+	 * the caller asks for its size with require, which maps a new window starting at the
+	 * current position when the rest of the current one is too short.
+	 */
+	private static class Mapping {
+		final FileChannel channel;
+		final int window;
+		MappedByteBuffer buffer;
+		//file position of the start of buffer
+		long base;
+
+		Mapping(FileChannel channel, int window) throws IOException {
+			this.channel = channel;
+			this.window = window;
+			remap(0);
+		}
+
+		long position() {
+			return base + buffer.position();
+		}
+
+		private void remap(long position) throws IOException {
+			base = position;
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(window, channel.size() - position));
+		}
+
+		void require(int bytes) throws IOException {
+			if( buffer.remaining() >= bytes ) return;
+			if( position() + bytes > channel.size() ) throw new IOException("binary graph is truncated");
+			remap(position());
+			if( buffer.remaining() < bytes ) throw new IOException("binary graph field is larger than the mapping window");
+		}
+
+		int varint() throws IOException {
+			if( buffer.remaining() < 5 ) require((int)Math.min(5, channel.size() - position()));
+			int value = 0;
+			for( int shift=0; shift<35; shift+=7 ) {
+				if( !buffer.hasRemaining() ) throw new IOException("binary graph is truncated");
+				byte b = buffer.get();
+				value |= (b & 0x7f) << shift;
+				if( b >= 0 ) return value;
+			}
+			throw new IOException("corrupt binary graph: varint is too long");
+		}
+	}
+}
@@ -0,0 +1,638 @@
+/**
+ * filename: CompactGraph.java
+ */
+
+import java.util.*;
+
+/**
+ * An immutable, int-indexed representation of a Graph in compressed-sparse-row form.
+ * Vertices are numbered 0..size()-1 and the neighbors of vertex v are stored in
+ * targets[offsets[v]] .. targets[offsets[v+1]-1]. Every undirected edge is stored once
+ * in the row of each of its endpoints. The original vertex objects are kept in a label
+ * table so the Object-keyed Graph API can be answered from this form.
+ *
+ * A CompactGraph can be built as a subgraph of another one (see subgraph), sharing its
+ * vertex objects and keeping the id there of each vertex. The pieces of Graph.isPlanar and
+ * the graphs it recurses on are built this way, rather than as adjacency lists.
+ *
+ * The arrays of a very large graph can be kept off the heap in an OffHeapStorage instead,
+ * which the accessors read through; its vertex objects are the names, decoded on demand.
+ *
+ * @author Trevor Mack		(tmm9274@rit.edu)
+ * @author David Sweeney	(dfs7079@rit.edu)
+ *
+ */
+public class CompactGraph {
+
+	//vertex objects, indexed by vertex id
+	private final Object[] labels;
+	//vertex object -> vertex id, built on first use
+	private volatile HashMap<Object, Integer> ids;
+	//row start of each vertex in targets, plus one trailing entry
+	private final int[] offsets;
+	//neighbor ids of all vertices, row by row
+	private final int[] targets;
+	//position of the opposite direction of each edge in targets, built on first use
+	private volatile int[] twins;
+	//the graph this one is a subgraph of and the id there of each vertex, null if it is
+	//not a subgraph
+	private final CompactGraph base;
+	private final int[] baseIds;
+	//the off-heap arrays, in place of labels, offsets, targets and twins, or null
+	private final OffHeapStorage storage;
+
+	/**
+	 * Create a CompactGraph from raw compressed-sparse-row arrays. The arrays are not copied.
+	 *
+	 * @param labels	- the vertex objects, indexed by vertex id
+	 * @param offsets	- row start of each vertex, of length labels.length+1
+	 * @param targets	- neighbor ids of all vertices, row by row
+	 */
+	public CompactGraph(Object[] labels, int[] offsets, int[] targets) {
+		this(labels, offsets, targets, null, null);
+	}
+
+	private CompactGraph(Object[] labels, int[] offsets, int[] targets, CompactGraph base, int[] baseIds) {
+		if( offsets.length != labels.length+1 || offsets[labels.length] != targets.length )
+			throw new IllegalArgumentException("offsets do not match labels and targets");
+		this.labels = labels;
+		this.offsets = offsets;
+		this.targets = targets;
+		this.base = base;
+		this.baseIds = baseIds;
+		storage = null;
+	}
+
+	/**
+	 * Create a CompactGraph that reads its arrays from off-heap storage.
+	 *
+	 * @param storage	- the storage, see OffHeapStorage.getGraph()
+	 */
+	CompactGraph(OffHeapStorage storage) {
+		labels = null;
+		offsets = null;
+		targets = null;
+		base = null;
+		baseIds = null;
+		this.storage = storage;
+	}
+
+	/**
+	 * Builds a CompactGraph from an edge list in O(n+m). Rows keep the order of the edge
+	 * list, and repeated edges (in either direction) are dropped from the rows of both
+	 * endpoints, as Graph.addEdge does.
+	 *
+	 * @param labels		- the vertex objects, indexed by vertex id
+	 * @param sources		- first endpoint id of each edge
+	 * @param destinations	- second endpoint id of each edge
+	 * @param edgeCount		- number of edges to read from sources and destinations
+	 * @return the compact graph
+	 */
+	public static CompactGraph fromEdges(Object[] labels, int[] sources, int[] destinations, int edgeCount) {
+		return fromEdges(labels, sources, destinations, edgeCount, null, null);
+	}
+
+	private static CompactGraph fromEdges(Object[] labels, int[] sources, int[] destinations, int edgeCount,
+			CompactGraph base, int[] baseIds) {
+		int n = labels.length;
+		int[] offsets = new int[n+1];
+		for( int e=0; e<edgeCount; e++ ) {
+			offsets[sources[e]+1]++;
+			offsets[destinations[e]+1]++;
+		}
+		for( int v=0; v<n; v++ ) {
+			offsets[v+1] += offsets[v];
+		}
+		int[] fill = Arrays.copyOf(offsets, n);
+		int[] targets = new int[offsets[n]];
+		for( int e=0; e<edgeCount; e++ ) {
+			targets[fill[sources[e]]++] = destinations[e];
+			targets[fill[destinations[e]]++] = sources[e];
+		}
+
+		//compact every row in place, skipping neighbors already seen in that row
+		int[] seen = new int[n];
+		int write = 0;
+		for( int v=0; v<n; v++ ) {
+			int start = offsets[v];
+			int rowStart = write;
+			boolean loop = false;
+			for( int i=start; i<offsets[v+1]; i++ ) {
+				int w = targets[i];
+				if( w == v ) {
+					//a self loop is stored twice in its own row
+					if( loop ) continue;
+					loop = true;
+					targets[write++] = v;
+					targets[write++] = v;
+					i++;
+				}else if( seen[w] != v+1 ) {
+					seen[w] = v+1;
+					targets[write++] = w;
+				}
+			}
+			offsets[v] = rowStart;
+		}
+		offsets[n] = write;
+		if( write < targets.length ) targets = Arrays.copyOf(targets, write);
+		return new CompactGraph(labels, offsets, targets, base, baseIds);
+	}
+
+	/**
+	 * Builds a subgraph of this graph from an edge list, as fromEdges does. The subgraph
+	 * shares the vertex objects of this graph and keeps the id here of each of its
+	 * vertices, so it can be mapped back onto this graph without looking up labels.
+	 *
+	 * @param vertices		- the id in this graph of each vertex of the subgraph
+	 * @param size			- the number of vertices of the subgraph
+	 * @param sources		- first endpoint of each edge, a subgraph id
+	 * @param destinations	- second endpoint of each edge, a subgraph id
+	 * @param edgeCount		- number of edges to read from sources and destinations
+	 * @return the subgraph
+	 */
+	public CompactGraph subgraph(int[] vertices, int size, int[] sources, int[] destinations, int edgeCount) {
+		int[] ids = Arrays.copyOf(vertices, size);
+		return fromEdges(labelsOf(ids), sources, destinations, edgeCount, this, ids);
+	}
+
+	/**
+	 * Creates a subgraph of this graph from raw compressed-sparse-row arrays, see
+	 * subgraph(int[], int, int[], int[], int). The arrays are not copied.
+	 *
+	 * @param vertices	- the id in this graph of each vertex of the subgraph
+	 * @param offsets	- row start of each vertex, of length vertices.length+1
+	 * @param targets	- neighbor ids of all vertices, row by row, as subgraph ids
+	 * @return the subgraph
+	 */
+	public CompactGraph subgraph(int[] vertices, int[] offsets, int[] targets) {
+		return new CompactGraph(labelsOf(vertices), offsets, targets, this, vertices);
+	}
+
+	private Object[] labelsOf(int[] ids) {
+		Object[] subLabels = new Object[ids.length];
+		for( int v=0; v<ids.length; v++ ) {
+			subLabels[v] = getLabel(ids[v]);
+		}
+		return subLabels;
+	}
+
+	/**
+	 * @return the graph this one was built as a subgraph of, or null
+	 */
+	public CompactGraph getBase() {
+		return base;
+	}
+
+	/**
+	 * Maps the vertices of this graph onto another graph that holds them. For a subgraph
+	 * of graph the ids are copied from the subgraph, otherwise they are looked up by label.
+	 *
+	 * @param graph	- a graph holding the vertices of this one
+	 * @return the id in graph of every vertex, -1 for the vertices graph does not hold
+	 */
+	public int[] idsIn(CompactGraph graph) {
+		if( graph == base ) return baseIds.clone();
+		int[] ids = new int[size()];
+		for( int v=0; v<ids.length; v++ ) {
+			ids[v] = graph.indexOf(getLabel(v));
+		}
+		return ids;
+	}
+
+	/**
+	 * Create a CompactGraph from an adjacency list. Vertex ids follow the iteration order
+	 * of the map, and neighbors keep the order of their lists.
+	 *
+	 * @param adjacencyMap	- the adjacency list to compress
+	 */
+	CompactGraph(Map<Object, List<Object>> adjacencyMap) {
+		int n = adjacencyMap.size();
+		labels = adjacencyMap.keySet().toArray();
+		HashMap<Object, Integer> ids = new HashMap<Object, Integer>(n*2);
+		offsets = new int[n+1];
+		for( int v=0; v<n; v++ ) {
+			ids.put(labels[v], v);
+			offsets[v+1] = offsets[v] + adjacencyMap.get(labels[v]).size();
+		}
+		targets = new int[offsets[n]];
+		int i = 0;
+		for( int v=0; v<n; v++ ) {
+			for( Object neighbor : adjacencyMap.get(labels[v]) ) {
+				targets[i++] = ids.get(neighbor);
+			}
+		}
+		this.ids = ids;
+		base = null;
+		baseIds = null;
+		storage = null;
+	}
+
+	/**
+	* Determines the number of vertices in this graph.
+	*
+	* @return the number of vertices.
+	*/
+	public int size() {
+		return labels != null ? labels.length : storage.size();
+	}
+
+	/**
+	* Returns the number of edges in this graph.
+	*
+	* @return the number of edges.
+	*/
+	public int getEdgeCount() {
+		return (targets != null ? targets.length : storage.arcCount())/2;
+	}
+
+	/**
+	 * Finds the id of a vertex object.
+	 *
+	 * @param vertex	- the vertex object
+	 * @return the id of the vertex, or -1 if it is not in this graph
+	 */
+	public int indexOf(Object vertex) {
+		HashMap<Object, Integer> map = ids;
+		if( map == null ) {
+			//loaders never look up labels, so the map is only paid for when it is used
+			int n = size();
+			map = new HashMap<Object, Integer>(n*2);
+			for( int v=0; v<n; v++ ) {
+				map.put(getLabel(v), v);
+			}
+			ids = map;
+		}
+		Integer id = map.get(vertex);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * @param v	- a vertex id
+	 * @return the vertex object with id v
+	 */
+	public Object getLabel(int v) {
+		return labels != null ? labels[v] : storage.label(v);
+	}
+
+	/**
+	 * @param v	- a vertex id
+	 * @return the number of neighbors of v
+	 */
+	public int degree(int v) {
+		return offset(v+1) - offset(v);
+	}
+
+	/**
+	 * @param v	- a vertex id, or size() for the end of the last row
+	 * @return the position in the target array where the row of v starts
+	 */
+	public int offset(int v) {
+		return offsets != null ? offsets[v] : storage.offset(v);
+	}
+
+	/**
+	 * @param i	- a position in the target array
+	 * @return the neighbor id stored at position i
+	 */
+	public int target(int i) {
+		return targets != null ? targets[i] : storage.target(i);
+	}
+
+	/**
+	 * Each edge {u,v} is stored twice, once in the row of u and once in the row of v.
+	 * 
+	 * @param i	- a position in the target array
+	 * @return the position of the opposite direction of the edge stored at i
+	 */
+	public int twin(int i) {
+		if( storage != null ) return storage.twin(i);
+		int[] t = twins;
+		if( t == null ) {
+			t = buildTwins();
+			twins = t;
+		}
+		return t[i];
+	}
+
+	/**
+	 * Pairs up both directions of every edge in O(n+m). The rows of all vertices v that
+	 * point to a larger vertex w are bucketed by w, in order of v. Vertex w can then find
+	 * the partner of each of its edges back to a smaller vertex in a scratch slot array.
+	 *
+	 * @return the twin position of every position in the target array
+	 */
+	private int[] buildTwins() {
+		int n = labels.length;
+		int[] twin = new int[targets.length];
+		int[] bucketStart = new int[n+1];
+		for( int v=0; v<n; v++ ) {
+			for( int i=offsets[v]; i<offsets[v+1]; i++ ) {
+				if( targets[i] > v ) bucketStart[targets[i]+1]++;
+			}
+		}
+		for( int w=0; w<n; w++ ) {
+			bucketStart[w+1] += bucketStart[w];
+		}
+		int[] fill = Arrays.copyOf(bucketStart, n);
+		int[] bucket = new int[bucketStart[n]];
+		int[] bucketSource = new int[bucketStart[n]];
+		for( int v=0; v<n; v++ ) {
+			for( int i=offsets[v]; i<offsets[v+1]; i++ ) {
+				if( targets[i] > v ) {
+					bucketSource[fill[targets[i]]] = v;
+					bucket[fill[targets[i]]++] = i;
+				}
+			}
+		}
+		int[] slot = new int[n];
+		for( int w=0; w<n; w++ ) {
+			for( int b=bucketStart[w]; b<bucketStart[w+1]; b++ ) {
+				slot[bucketSource[b]] = bucket[b];
+			}
+			int loop = -1;
+			for( int i=offsets[w]; i<offsets[w+1]; i++ ) {
+				int v = targets[i];
+				if( v < w ) {
+					twin[i] = slot[v];
+					twin[slot[v]] = i;
+				}else if( v == w ) {
+					//a self loop is stored twice in its own row, pair consecutive copies
+					if( loop < 0 ) {
+						loop = i;
+					}else {
+						twin[i] = loop;
+						twin[loop] = i;
+						loop = -1;
+					}
+				}
+			}
+		}
+		return twin;
+	}
+
+	/**
+	 * Get all the nodes in this graph as a list, ordered by id.
+	 *
+	 * @return list of node objects
+	 */
+	public List<Object> getNodes() {
+		if( labels != null ) return Collections.unmodifiableList(Arrays.asList(labels));
+		return new AbstractList<Object>() {
+			public Object get(int v) {
+				if( v < 0 || v >= size() ) throw new IndexOutOfBoundsException(String.valueOf(v));
+				return getLabel(v);
+			}
+			public int size() {
+				return CompactGraph.this.size();
+			}
+		};
+	}
+
+	/**
+	 * Finds all adjacent nodes to a vertex.
+	 *
+	 * @param v		- a vertex id
+	 * @return the ids of the neighbors of v
+	 */
+	public int[] getNeighbors(int v) {
+		int[] neighbors = new int[degree(v)];
+		for( int k=0; k<neighbors.length; k++ ) {
+			neighbors[k] = target(offset(v) + k);
+		}
+		return neighbors;
+	}
+
+	/**
+	 * Finds all adjacent nodes to a vertex object. The returned list is a read-only view
+	 * of the row of the vertex.
+	 *
+	 * @param vertex	- the vertex object
+	 * @return list		- the list of neighbors, or null if vertex is not in this graph
+	 */
+	public List<Object> getNeighbors(Object vertex) {
+		final int v = indexOf(vertex);
+		if( v < 0 ) return null;
+		return new AbstractList<Object>() {
+			public Object get(int i) {
+				if( i < 0 || i >= size() ) throw new IndexOutOfBoundsException(String.valueOf(i));
+				return getLabel(target(offset(v)+i));
+			}
+			public int size() {
+				return degree(v);
+			}
+		};
+	}
+
+	/**
+	 * Tests to see if 2 vertices are adjacent.
+	 *
+	 * @param u	- the first vertex id
+	 * @param v	- the second vertex id
+	 * @return true	- if u and v are connected by an edge
+	 */
+	public boolean isEdge(int u, int v) {
+		//scan the shorter row
+		if( degree(v) < degree(u) ) {
+			int t = u; u = v; v = t;
+		}
+		for( int i=offset(u); i<offset(u+1); i++ ) {
+			if( target(i) == v ) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @return the smallest vertex degree, or 0 for an empty graph
+	 */
+	public int minimumDegree() {
+		if( size() == 0 ) return 0;
+		int min = Integer.MAX_VALUE;
+		for( int v=0; v<size(); v++ ) {
+			min = Math.min(min, degree(v));
+		}
+		return min;
+	}
+
+	/**
+	 * Tests to see if the graph is a path (no vertex has more than 2 neighbors).
+	 *
+	 * @return	true	- if graph is a path
+	 * 			false	- if graph is not a path
+	 */
+	public boolean isPath() {
+		for( int v=0; v<size(); v++ ) {
+			if( degree(v) > 2 ) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Tests whether the graph has a 2-coloring, see Graph.isBipartite().
+	 *
+	 * @return	true	- graph is a bipartite graph
+	 * 			false	- graph is not a bipartite graph
+	 */
+	public boolean isBipartite() {
+		return GraphSearch.forThread().isBipartite(this);
+	}
+
+	/**
+	 * Finds a simple cycle with a depth first search from vertex 0. The search stops as soon
+	 * as the vertex on top of the search stack has the start vertex as a visited neighbor.
+	 *
+	 * @return cycle	- the vertex ids of the cycle in order, or null if none exist
+	 */
+	public int[] simpleCycle() {
+		return GraphSearch.forThread().simpleCycle(this);
+	}
+
+	/**
+	 * Finds a cycle that splits the graph into pieces of similar size, for the divide and
+	 * conquer test. A depth first search from vertex 0 gives every vertex the size of its
+	 * subtree, and the heavy path runs from the root to a leaf, always into the child with
+	 * the largest subtree. A back edge from a vertex u of the heavy path goes to an ancestor
+	 * a, also on the path, and closes a cycle with the path from a to u. Every piece of that
+	 * cycle lies in one of
+	 *
+	 * 		- the vertices outside the subtree of a
+	 * 		- a subtree hanging off the path between a and u, the largest of which is the
+	 * 		  largest light child (not the heavy child) of a path vertex above u, as any
+	 * 		  larger one above a lies outside the subtree of a
+	 * 		- a child subtree of u
+	 *
+	 * (pieces joined by back edges across the cycle may merge). The cycle whose largest such
+	 * part is smallest is chosen, the longer one on ties; the highest back edge of a vertex
+	 * is always the best one. Everything takes O(n+m) time.
+	 *
+	 * @return cycle	- the vertex ids of the cycle in order, or simpleCycle() if the heavy
+	 * 					  path closes no cycle
+	 */
+	public int[] balancedCycle() {
+		int n = size();
+		if( n == 0 ) return null;
+		int[] depth = new int[n];
+		Arrays.fill(depth, -1);
+		int[] parent = new int[n];
+		int[] next = new int[n];
+		int[] stack = new int[n];
+		int[] order = new int[n];
+		int count = 0, top = 0;
+		depth[0] = 0;
+		parent[0] = -1;
+		next[0] = offset(0);
+		stack[top++] = 0;
+		order[count++] = 0;
+		while( top > 0 ) {
+			int u = stack[top-1];
+			if( next[u] == offset(u+1) ) {
+				top--;
+				continue;
+			}
+			int w = target(next[u]++);
+			if( depth[w] < 0 ) {
+				depth[w] = depth[u] + 1;
+				parent[w] = u;
+				next[w] = offset(w);
+				stack[top++] = w;
+				order[count++] = w;
+			}
+		}
+
+		//subtree sizes, and the largest and second largest child subtree of every vertex
+		int[] size = new int[n];
+		int[] heavy = new int[n];
+		int[] largest = new int[n];
+		int[] light = new int[n];
+		Arrays.fill(heavy, -1);
+		for( int k=count-1; k>=0; k-- ) {
+			int v = order[k];
+			size[v]++;
+			if( k == 0 ) break;
+			int p = parent[v];
+			size[p] += size[v];
+			if( size[v] > largest[p] ) {
+				light[p] = largest[p];
+				largest[p] = size[v];
+				heavy[p] = v;
+			}else if( size[v] > light[p] ) {
+				light[p] = size[v];
+			}
+		}
+
+		//position of every vertex on the heavy path, -1 off it
+		int[] position = depth;
+		Arrays.fill(position, -1);
+		int length = 0;
+		for( int v=0; v>=0; v=heavy[v] ) {
+			stack[length] = v;
+			position[v] = length++;
+		}
+		int bestFrom = -1, bestTo = -1, bestBound = Integer.MAX_VALUE;
+		int lightAbove = 0;
+		for( int j=0; j<length; j++ ) {
+			int u = stack[j];
+			int highest = j;
+			for( int i=offset(u); i<offset(u+1); i++ ) {
+				int p = position[target(i)];
+				if( p >= 0 && p < j-1 && p < highest ) highest = p;
+			}
+			if( highest < j ) {
+				int bound = Math.max(Math.max(count - size[stack[highest]], lightAbove), largest[u]);
+				if( bound < bestBound || (bound == bestBound && j - highest > bestTo - bestFrom) ) {
+					bestBound = bound;
+					bestFrom = highest;
+					bestTo = j;
+				}
+			}
+			lightAbove = Math.max(lightAbove, light[u]);
+		}
+		if( bestFrom < 0 ) return simpleCycle();
+		return Arrays.copyOfRange(stack, bestFrom, bestTo+1);
+	}
+
+	/**
+	 * Builds the cycle graph through the given vertices as a subgraph of this graph. Its
+	 * vertices and rows are in the order Graph.fromPath gives them: cycle[1], cycle[0],
+	 * and then the rest of the cycle.
+	 *
+	 * @param cycle	- vertex ids in cycle order
+	 * @return the cycle as a Graph, or null if cycle is null
+	 */
+	public Graph cycleGraph(int[] cycle) {
+		if( cycle == null ) return null;
+		int k = cycle.length;
+		if( k < 2 ) return new Graph(subgraph(new int[0], 0, new int[0], new int[0], 0));
+		int[] vertices = cycle.clone();
+		vertices[0] = cycle[1];
+		vertices[1] = cycle[0];
+		int[] sources = new int[2*k], destinations = new int[2*k];
+		int edges = 0;
+		for( int i=1; i<k; i++ ) {
+			sources[edges] = pathId(i);
+			destinations[edges++] = pathId(i-1);
+			sources[edges] = pathId(i);
+			destinations[edges++] = pathId((i+1) % k);
+		}
+		return new Graph(subgraph(vertices, k, sources, destinations, edges));
+	}
+
+	/**
+	 * @return the id in cycleGraph of the vertex at position i of the cycle
+	 */
+	private static int pathId(int i) {
+		return i < 2 ? 1-i : i;
+	}
+
+	/**
+	 * Tests whether this graph is planar with the divide and conquer algorithm of di Battista
+	 * et al, see Graph.isPlanar(Graph).
+	 *
+	 * @param 	cycle		- vertex ids of a cycle in the graph (seperating), or null
+	 * @return	true		- graph is indeed planar
+	 * 			false		- graph is not planar
+	 * @throws PlanarityException if input graph is not biconnected
+	 */
+	public boolean isPlanar(int[] cycle) throws PlanarityException {
+		return new Graph(this).isPlanar(cycleGraph(cycle));
+	}
+}
@@ -0,0 +1,226 @@
+/**
+ * filename: CyclePieces.java
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The pieces of a CompactGraph with respect to a cycle, as defined by di Battista et al,
+ * computed in one O(n+m) pass. The pieces are
+ *
+ * 		bridges	- a connected component of the graph without the cycle vertices, together
+ * 				  with all edges that attach it to the cycle
+ * 		chords	- an edge between two cycle vertices that is not an edge of the cycle, as
+ * 				  a piece of its own
+ *
+ * The components are labelled with a union-find over the edges between vertices off the
+ * cycle. Bridges are numbered in the order their first attachment is met walking the
+ * cycle vertices, chords after them in edge order. Components that do not touch the cycle
+ * belong to no piece; a biconnected graph has none. Self loops belong to no piece either.
+ *
+ * Edges are numbered as in BiconnectedComponents, by the position of one direction in the
+ * target array, and every piece is kept as an array of its edges and of its vertices, so
+ * the pieces can be built and processed independently of each other.
+ *
+ * @author Trevor Mack		(tmm9274@rit.edu)
+ * @author David Sweeney	(dfs7079@rit.edu)
+ *
+ */
+public class CyclePieces {
+
+	private final CompactGraph graph;
+	private final int bridgeCount;
+	//edges of each piece, as the position of one direction in the target array
+	private final int[] pieceOffsets;
+	private final int[] pieceEdges;
+	//vertices of each piece, in the order they first appear in its edges
+	private final int[] pieceVertexOffsets;
+	private final int[] pieceVertices;
+
+	/**
+	 * Finds the pieces of a graph with respect to a cycle.
+	 *
+	 * @param graph	- the graph
+	 * @param cycle	- a cycle of graph; any subgraph is accepted, its edges count as cycle
+	 * 				  edges
+	 */
+	public CyclePieces(CompactGraph graph, CompactGraph cycle) {
+		this.graph = graph;
+		int n = graph.size();
+		int arcs = graph.offset(n);
+		int[] ids = cycle.idsIn(graph);
+		boolean[] onCycle = new boolean[n];
+		for( int id : ids ) {
+			if( id >= 0 ) onCycle[id] = true;
+		}
+
+		//mark the edges of the cycle, stamping the cycle neighbors of each cycle vertex
+		boolean[] cycleEdge = new boolean[arcs];
+		int[] stamp = new int[n];
+		for( int c=0; c<ids.length; c++ ) {
+			if( ids[c] < 0 ) continue;
+			for( int i=cycle.offset(c); i<cycle.offset(c+1); i++ ) {
+				int d = ids[cycle.target(i)];
+				if( d >= 0 ) stamp[d] = c+1;
+			}
+			for( int i=graph.offset(ids[c]); i<graph.offset(ids[c]+1); i++ ) {
+				if( stamp[graph.target(i)] == c+1 ) cycleEdge[i] = true;
+			}
+		}
+
+		//components off the cycle
+		int[] parent = new int[n];
+		for( int v=0; v<n; v++ ) {
+			parent[v] = v;
+		}
+		for( int v=0; v<n; v++ ) {
+			if( onCycle[v] ) continue;
+			for( int i=graph.offset(v); i<graph.offset(v+1); i++ ) {
+				int w = graph.target(i);
+				if( w > v && !onCycle[w] ) {
+					int a = find(parent, v), b = find(parent, w);
+					if( a != b ) parent[a] = b;
+				}
+			}
+		}
+
+		//number the bridges walking the cycle, keyed by the root of their component
+		int[] bridgeOf = new int[n];
+		Arrays.fill(bridgeOf, -1);
+		int bridges = 0;
+		for( int c=0; c<ids.length; c++ ) {
+			if( ids[c] < 0 ) continue;
+			for( int i=graph.offset(ids[c]); i<graph.offset(ids[c]+1); i++ ) {
+				int w = graph.target(i);
+				if( onCycle[w] ) continue;
+				int root = find(parent, w);
+				if( bridgeOf[root] < 0 ) bridgeOf[root] = bridges++;
+			}
+		}
+		bridgeCount = bridges;
+
+		//the piece of every edge, -1 for cycle edges, loops and unattached components
+		int[] pieceOf = new int[arcs];
+		int pieces = bridges;
+		int[] counts = new int[bridges+1];
+		for( int v=0; v<n; v++ ) {
+			for( int i=graph.offset(v); i<graph.offset(v+1); i++ ) {
+				int w = graph.target(i);
+				pieceOf[i] = -1;
+				if( w == v || i > graph.twin(i) ) continue;
+				if( !onCycle[v] ) pieceOf[i] = bridgeOf[find(parent, v)];
+				else if( !onCycle[w] ) pieceOf[i] = bridgeOf[find(parent, w)];
+				else if( !cycleEdge[i] ) pieceOf[i] = pieces++;
+				if( pieceOf[i] < 0 ) continue;
+				if( pieceOf[i]+1 == counts.length ) counts = Arrays.copyOf(counts, 2*counts.length);
+				counts[pieceOf[i]+1]++;
+			}
+		}
+
+		//edges of each piece, in edge order
+		int[] offsets = Arrays.copyOf(counts, pieces+1);
+		for( int p=0; p<pieces; p++ ) {
+			offsets[p+1] += offsets[p];
+		}
+		int[] edges = new int[offsets[pieces]];
+		int[] fill = Arrays.copyOf(offsets, pieces);
+		for( int i=0; i<arcs; i++ ) {
+			if( pieceOf[i] >= 0 ) edges[fill[pieceOf[i]]++] = i;
+		}
+		pieceOffsets = offsets;
+		pieceEdges = edges;
+
+		//vertices of each piece, found by stamping the endpoints of its edges
+		Arrays.fill(stamp, 0);
+		int[] vertexOffsets = new int[pieces+1];
+		int[] vertices = new int[2*edges.length];
+		int count = 0;
+		for( int p=0; p<pieces; p++ ) {
+			vertexOffsets[p] = count;
+			for( int k=offsets[p]; k<offsets[p+1]; k++ ) {
+				int i = edges[k];
+				int v1 = graph.target(graph.twin(i)), v2 = graph.target(i);
+				if( stamp[v1] != p+1 ) { stamp[v1] = p+1; vertices[count++] = v1; }
+				if( stamp[v2] != p+1 ) { stamp[v2] = p+1; vertices[count++] = v2; }
+			}
+		}
+		vertexOffsets[pieces] = count;
+		pieceVertexOffsets = vertexOffsets;
+		pieceVertices = Arrays.copyOf(vertices, count);
+	}
+
+	private static int find(int[] parent, int v) {
+		while( parent[v] != v ) {
+			parent[v] = parent[parent[v]];
+			v = parent[v];
+		}
+		return v;
+	}
+
+	/**
+	 * @return the number of pieces
+	 */
+	public int getPieceCount() {
+		return pieceOffsets.length-1;
+	}
+
+	/**
+	 * @return the number of bridges; pieces from this index on are chords
+	 */
+	public int getBridgeCount() {
+		return bridgeCount;
+	}
+
+	/**
+	 * @param p	- a piece
+	 * @return the edges of piece p, as positions of one direction in the target array
+	 */
+	public int[] getEdges(int p) {
+		return Arrays.copyOfRange(pieceEdges, pieceOffsets[p], pieceOffsets[p+1]);
+	}
+
+	/**
+	 * @param p	- a piece
+	 * @return the vertex ids of piece p, including its attachments on the cycle
+	 */
+	public int[] getVertices(int p) {
+		return Arrays.copyOfRange(pieceVertices, pieceVertexOffsets[p], pieceVertexOffsets[p+1]);
+	}
+
+	/**
+	 * Builds the subgraph of one piece. Vertex ids follow getVertices(p).
+	 *
+	 * @param p			- a piece
+	 * @param localId	- scratch array of graph.size() entries, holding the local id of each
+	 * 					  vertex of p on return
+	 * @return the piece as a subgraph of the graph
+	 */
+	public CompactGraph getPiece(int p, int[] localId) {
+		int from = pieceVertexOffsets[p], to = pieceVertexOffsets[p+1];
+		for( int k=from; k<to; k++ ) {
+			localId[pieceVertices[k]] = k - from;
+		}
+		int m = pieceOffsets[p+1] - pieceOffsets[p];
+		int[] sources = new int[m], destinations = new int[m];
+		for( int k=0; k<m; k++ ) {
+			int i = pieceEdges[pieceOffsets[p] + k];
+			sources[k] = localId[graph.target(graph.twin(i))];
+			destinations[k] = localId[graph.target(i)];
+		}
+		return graph.subgraph(Arrays.copyOfRange(pieceVertices, from, to), to - from, sources, destinations, m);
+	}
+
+	/**
+	 * @return all pieces as Graphs, bridges first
+	 */
+	public List<Graph> getPieceGraphs() {
+		List<Graph> pieces = new ArrayList<Graph>(getPieceCount());
+		int[] localId = new int[graph.size()];
+		for( int p=0; p<getPieceCount(); p++ ) {
+			pieces.add(new Graph(getPiece(p, localId)));
+		}
+		return pieces;
+	}
+}
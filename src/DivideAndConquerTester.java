@@ -0,0 +1,47 @@
+/**
+ * filename: DivideAndConquerTester.java
+ */
+
+/**
+ * The reference PlanarityTester: the divide and conquer algorithm of di Battista et al,
+ * as implemented by Graph.isPlanar(Graph), started on a cycle that balances the pieces
+ * (see Graph.separatingCycle()).
+ * 
+ * @author Trevor Mack		(tmm9274@rit.edu)
+ * @author David Sweeney	(dfs7079@rit.edu)
+ *
+ */
+public class DivideAndConquerTester implements PlanarityTester {
+
+	//whether blocks and pieces are tested in parallel
+	private final boolean parallel;
+
+	/**
+	 * Create a tester that recurses over blocks and pieces in parallel.
+	 */
+	public DivideAndConquerTester() {
+		this(true);
+	}
+
+	/**
+	 * @param parallel	- whether to test blocks and pieces in parallel, see
+	 * 					  Graph.isPlanar(Graph, boolean)
+	 */
+	public DivideAndConquerTester(boolean parallel) {
+		this.parallel = parallel;
+	}
+
+	/**
+	 * @see PlanarityTester#isPlanar(Graph)
+	 */
+	public boolean isPlanar(Graph graph) throws PlanarityException {
+		return graph.isPlanar(graph.separatingCycle(), parallel);
+	}
+
+	/**
+	 * @see PlanarityTester#getName()
+	 */
+	public String getName() {
+		return "dc";
+	}
+}
@@ -19,9 +19,18 @@ public class Edge {
 		this.v2 = v2;
 	}
 	
-	public boolean equals(Edge edge) {
-		if(v1 == edge.v1 && v2 == edge.v2) return true;
-		if(v1 == edge.v2 && v2 == edge.v1) return true;
+	/**
+	 * Edges are undirected: an edge equals the edge with the same endpoints in either order.
+	 */
+	public boolean equals(Object other) {
+		if(!(other instanceof Edge)) return false;
+		Edge edge = (Edge)other;
+		if(v1.equals(edge.v1) && v2.equals(edge.v2)) return true;
+		if(v1.equals(edge.v2) && v2.equals(edge.v1)) return true;
 		return false;
 	}
+	
+	public int hashCode() {
+		return v1.hashCode() + v2.hashCode();
+	}
 }
@@ -0,0 +1,150 @@
+/**
+ * filename: EdgeIndex.java
+ */
+
+import java.util.Arrays;
+
+/**
+ * An open-addressing hash map from packed long keys to int values, used by Graph to find
+ * the position of an edge in an adjacency list in O(1). Keys are the ids of the two
+ * endpoints packed as (u << 32) | v. Collisions are resolved by linear probing, and removal
+ * shifts the following entries back so that no tombstones are left behind.
+ *
+ * @author Trevor Mack		(tmm9274@rit.edu)
+ * @author David Sweeney	(dfs7079@rit.edu)
+ *
+ */
+public class EdgeIndex {
+
+	//marks an empty slot, never a packed key since vertex ids are not negative
+	private static final long EMPTY = -1L;
+
+	private long[] keys;
+	private int[] values;
+	private int size;
+
+	/**
+	 * Create an empty index.
+	 */
+	public EdgeIndex() {
+		this(16);
+	}
+
+	/**
+	 * @param expected	- number of entries to size the table for
+	 */
+	public EdgeIndex(int expected) {
+		int capacity = 16;
+		while( capacity < 2*expected ) capacity <<= 1;
+		keys = new long[capacity];
+		values = new int[capacity];
+		Arrays.fill(keys, EMPTY);
+	}
+
+	/**
+	 * @param u	- id of the first endpoint
+	 * @param v	- id of the second endpoint
+	 * @return the packed key of the edge from u to v
+	 */
+	public static long key(int u, int v) {
+		return ((long)u << 32) | (v & 0xffffffffL);
+	}
+
+	/**
+	 * @return the number of entries
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @param key	- a packed key
+	 * @return the value stored for key, or -1 if there is none
+	 */
+	public int get(long key) {
+		int mask = keys.length-1;
+		for( int slot = hash(key) & mask; keys[slot] != EMPTY; slot = (slot+1) & mask ) {
+			if( keys[slot] == key ) return values[slot];
+		}
+		return -1;
+	}
+
+	/**
+	 * @param key	- a packed key
+	 * @return true if the index holds key
+	 */
+	public boolean containsKey(long key) {
+		return get(key) != -1;
+	}
+
+	/**
+	 * Stores a value for a key, replacing any previous value.
+	 *
+	 * @param key	- a packed key
+	 * @param value	- a value, not negative
+	 */
+	public void put(long key, int value) {
+		if( 2*(size+1) > keys.length ) grow();
+		int mask = keys.length-1;
+		int slot = hash(key) & mask;
+		while( keys[slot] != EMPTY ) {
+			if( keys[slot] == key ) {
+				values[slot] = value;
+				return;
+			}
+			slot = (slot+1) & mask;
+		}
+		keys[slot] = key;
+		values[slot] = value;
+		size++;
+	}
+
+	/**
+	 * Removes a key.
+	 *
+	 * @param key	- a packed key
+	 * @return the value that was stored for key, or -1 if there was none
+	 */
+	public int remove(long key) {
+		int mask = keys.length-1;
+		int slot = hash(key) & mask;
+		while( keys[slot] != key ) {
+			if( keys[slot] == EMPTY ) return -1;
+			slot = (slot+1) & mask;
+		}
+		int value = values[slot];
+		size--;
+		//shift back the entries of the probe run that follows the freed slot
+		int free = slot;
+		for( slot = (slot+1) & mask; keys[slot] != EMPTY; slot = (slot+1) & mask ) {
+			int home = hash(keys[slot]) & mask;
+			//move the entry unless its home lies cyclically in (free, slot]
+			if( free <= slot ? (home <= free || home > slot) : (home <= free && home > slot) ) {
+				keys[free] = keys[slot];
+				values[free] = values[slot];
+				free = slot;
+			}
+		}
+		keys[free] = EMPTY;
+		return value;
+	}
+
+	private void grow() {
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		keys = new long[2*oldKeys.length];
+		values = new int[2*oldKeys.length];
+		Arrays.fill(keys, EMPTY);
+		size = 0;
+		for( int i=0; i<oldKeys.length; i++ ) {
+			if( oldKeys[i] != EMPTY ) put(oldKeys[i], oldValues[i]);
+		}
+	}
+
+	private static int hash(long key) {
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		return (int)key;
+	}
+}
@@ -0,0 +1,259 @@
+/**
+ * filename: EdgeListLoader.java
+ */
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Reads an edge list file straight into a CompactGraph. The file format is one edge per
+ * line, where an edge is two vertex names separated by the first space of the line (the
+ * second name is the rest of the line). Lines may end in "\n" or "\r\n".
+ *
+ * The file is memory-mapped in windows of at most WINDOW bytes, so files larger than 2 GB
+ * can be read, and its bytes are scanned directly: vertex names are looked up in an open
+ * addressing dictionary over the raw bytes, and edges are collected in int arrays. Only one
+ * String is created per distinct vertex, to serve as its label. Duplicate edges are dropped,
+ * like Graph.addEdge does. An edge list that is already in memory is scanned the same way.
+ *
+ * @author Trevor Mack		(tmm9274@rit.edu)
+ * @author David Sweeney	(dfs7079@rit.edu)
+ *
+ */
+public class EdgeListLoader {
+
+	//largest number of bytes mapped at once
+	static final int WINDOW = 1 << 30;
+
+	//bytes of all distinct vertex names, back to back
+	private byte[] namePool = new byte[1 << 12];
+	private int namePoolSize;
+	//start and length of each vertex name in namePool, indexed by vertex id
+	private int[] nameStart = new int[1 << 8];
+	private int[] nameLength = new int[1 << 8];
+	private int vertexCount;
+	//open addressing table of vertex ids + 1, 0 marks a free slot
+	private int[] table = new int[1 << 9];
+	//endpoints of all edges, in file order
+	private int[] sources = new int[1 << 10];
+	private int[] destinations = new int[1 << 10];
+	private int edgeCount;
+	//number of the line being scanned, for error messages
+	private long line = 1;
+
+	/**
+	 * Loads an edge list file.
+	 *
+	 * @param file	- input file containing a list of edges
+	 * @return the graph described by the file
+	 * @throws Exception - Invalid File Format, with the offending line number
+	 */
+	public static CompactGraph load(File file) throws Exception {
+		return load(file, WINDOW);
+	}
+
+	/**
+	 * Loads an edge list held in memory, such as the body of a request to PlanarityServer.
+	 *
+	 * @param bytes	- the edge list, from its position to its limit
+	 * @return the graph described by the bytes
+	 * @throws Exception - Invalid File Format, with the offending line number
+	 */
+	public static CompactGraph load(ByteBuffer bytes) throws Exception {
+		return parse(bytes).build();
+	}
+
+	/**
+	 * Scans an edge list held in memory without building the graph, so StreamRunner can
+	 * parse and build in separate stages.
+	 *
+	 * @param bytes	- the edge list, from its position to its limit
+	 * @return the loader holding the edges, see build()
+	 * @throws Exception - Invalid File Format, with the offending line number
+	 */
+	static EdgeListLoader parse(ByteBuffer bytes) throws Exception {
+		EdgeListLoader loader = new EdgeListLoader();
+		loader.scan(bytes.slice(), bytes.remaining(), true);
+		return loader;
+	}
+
+	/**
+	 * Loads an edge list file, mapping at most window bytes at once.
+	 *
+	 * @param file		- input file containing a list of edges
+	 * @param window	- the mapping window size, larger than any line of the file
+	 * @return the graph described by the file
+	 * @throws Exception - Invalid File Format, with the offending line number
+	 */
+	static CompactGraph load(File file, int window) throws Exception {
+		EdgeListLoader loader = new EdgeListLoader();
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		try {
+			loader.read(in.getChannel(), window);
+		} finally {
+			in.close();
+		}
+		return loader.build();
+	}
+
+	/**
+	 * Scans the channel window by window. A window always starts at the beginning of a line
+	 * and the unfinished line at its end is scanned again as the start of the next window.
+	 */
+	private void read(FileChannel channel, int window) throws Exception {
+		long size = channel.size();
+		long position = 0;
+		while( position < size ) {
+			int length = (int)Math.min(window, size - position);
+			boolean last = position + length == size;
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+			int consumed = scan(buffer, length, last);
+			if( last ) break;
+			if( consumed == 0 ) throw new Exception("Invalid File Format at line " + line + ": line too long");
+			position += consumed;
+		}
+	}
+
+	/**
+	 * Adds the edges on the complete lines of buffer[0..length), and on the final line
+	 * without line terminator if the buffer holds the end of the input.
+	 *
+	 * @param buffer	- the bytes to scan
+	 * @param length	- the number of bytes to scan
+	 * @param last		- whether the buffer holds the end of the input
+	 * @return the number of bytes scanned, up to the start of the unfinished line
+	 */
+	private int scan(ByteBuffer buffer, int length, boolean last) throws Exception {
+		int lineStart = 0;
+		int space = -1;
+		for( int i=0; i<length; i++ ) {
+			byte b = buffer.get(i);
+			if( b == '\n' ) {
+				parseLine(buffer, lineStart, space, i, line++);
+				lineStart = i+1;
+				space = -1;
+			}else if( b == ' ' && space < 0 ) {
+				space = i;
+			}
+		}
+		if( last && lineStart < length ) {
+			//a final line without line terminator
+			parseLine(buffer, lineStart, space, length, line);
+			return length;
+		}
+		return lineStart;
+	}
+
+	/**
+	 * Adds the edge on one line.
+	 *
+	 * @param buffer	- the mapped window
+	 * @param start		- position of the first byte of the line
+	 * @param space		- position of the first space of the line, or -1
+	 * @param end		- position of the line terminator
+	 * @param line		- line number, for error messages
+	 */
+	private void parseLine(ByteBuffer buffer, int start, int space, int end, long line) throws Exception {
+		if( end > start && buffer.get(end-1) == '\r' ) end--;
+		if( space < 0 || space >= end ) throw new Exception("Invalid File Format at line " + line);
+		int v1 = vertexId(buffer, start, space);
+		int v2 = vertexId(buffer, space+1, end);
+		if( edgeCount == sources.length ) {
+			sources = Arrays.copyOf(sources, grow(edgeCount));
+			destinations = Arrays.copyOf(destinations, grow(edgeCount));
+		}
+		sources[edgeCount] = v1;
+		destinations[edgeCount] = v2;
+		edgeCount++;
+	}
+
+	/**
+	 * Finds the id of the vertex named by buffer[start..end), adding it if it is new.
+	 */
+	private int vertexId(ByteBuffer buffer, int start, int end) {
+		//FNV-1a
+		int hash = 0x811c9dc5;
+		for( int i=start; i<end; i++ ) {
+			hash = (hash ^ buffer.get(i)) * 0x01000193;
+		}
+		int mask = table.length-1;
+		int slot = hash & mask;
+		while( table[slot] != 0 ) {
+			int id = table[slot]-1;
+			if( nameEquals(id, buffer, start, end) ) return id;
+			slot = (slot+1) & mask;
+		}
+		int id = addName(buffer, start, end);
+		table[slot] = id+1;
+		if( 2*vertexCount > table.length ) rehash();
+		return id;
+	}
+
+	private boolean nameEquals(int id, ByteBuffer buffer, int start, int end) {
+		if( nameLength[id] != end - start ) return false;
+		int p = nameStart[id];
+		for( int i=start; i<end; i++ ) {
+			if( namePool[p++] != buffer.get(i) ) return false;
+		}
+		return true;
+	}
+
+	private int addName(ByteBuffer buffer, int start, int end) {
+		int length = end - start;
+		if( namePoolSize + length > namePool.length ) {
+			namePool = Arrays.copyOf(namePool, Math.max(grow(namePool.length), namePoolSize + length));
+		}
+		for( int i=start; i<end; i++ ) {
+			namePool[namePoolSize++] = buffer.get(i);
+		}
+		if( vertexCount == nameStart.length ) {
+			nameStart = Arrays.copyOf(nameStart, grow(vertexCount));
+			nameLength = Arrays.copyOf(nameLength, grow(vertexCount));
+		}
+		nameStart[vertexCount] = namePoolSize - length;
+		nameLength[vertexCount] = length;
+		return vertexCount++;
+	}
+
+	private void rehash() {
+		table = new int[table.length*2];
+		int mask = table.length-1;
+		for( int id=0; id<vertexCount; id++ ) {
+			int hash = 0x811c9dc5;
+			for( int p=nameStart[id]; p<nameStart[id]+nameLength[id]; p++ ) {
+				hash = (hash ^ namePool[p]) * 0x01000193;
+			}
+			int slot = hash & mask;
+			while( table[slot] != 0 ) {
+				slot = (slot+1) & mask;
+			}
+			table[slot] = id+1;
+		}
+	}
+
+	private static int grow(int length) {
+		if( length >= Integer.MAX_VALUE - 8 ) throw new OutOfMemoryError("edge list too large");
+		return (int)Math.min(Integer.MAX_VALUE - 8, length + (length >> 1) + 16L);
+	}
+
+	/**
+	 * Builds the compressed-sparse-row graph from the collected edges. The edge arrays are
+	 * handed over to the graph, so it is built once.
+	 */
+	CompactGraph build() {
+		Charset charset = Charset.defaultCharset();
+		Object[] labels = new Object[vertexCount];
+		for( int v=0; v<vertexCount; v++ ) {
+			labels[v] = new String(namePool, nameStart[v], nameLength[v], charset);
+		}
+		int[] sources = this.sources, destinations = this.destinations;
+		this.sources = null;
+		this.destinations = null;
+		return CompactGraph.fromEdges(labels, sources, destinations, edgeCount);
+	}
+}
@@ -0,0 +1,143 @@
+/**
+ * filename: FilteredTester.java
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A PlanarityTester that tries a chain of PlanarityFilters before running an engine. The
+ * first filter that settles a graph answers for it, and only graphs that no filter settles
+ * reach the engine. Every filter counts the graphs it settled, so getSummary() shows how
+ * much of the input never needed the full test.
+ *
+ * With reduction on, a graph that no filter settles is shrunk to its GraphReduction kernel.
+ * An empty kernel means the graph is planar; otherwise the filters are tried once more on
+ * the kernel, where every vertex has degree 3 or more, and the engine tests the kernel in
+ * place of the graph. The series-parallel filter is then left out of the chain, since it
+ * settles exactly the graphs with an empty kernel.
+ *
+ * @author Trevor Mack		(tmm9274@rit.edu)
+ * @author David Sweeney	(dfs7079@rit.edu)
+ *
+ */
+public class FilteredTester implements PlanarityTester {
+
+	private final PlanarityTester engine;
+	private final PlanarityFilter[] filters;
+	//graphs settled by each filter, and by the engine
+	private final LongAdder[] settled;
+	private final LongAdder tested = new LongAdder();
+	//whether graphs are reduced before the engine runs, and what the reduction did
+	private final boolean reduce;
+	private final LongAdder reducedAway = new LongAdder();
+	private final LongAdder verticesIn = new LongAdder();
+	private final LongAdder verticesOut = new LongAdder();
+
+	/**
+	 * @param engine	- the engine for graphs that no filter settles
+	 * @param filters	- the filters, applied in order
+	 */
+	public FilteredTester(PlanarityTester engine, PlanarityFilter[] filters) {
+		this(engine, filters, false);
+	}
+
+	/**
+	 * @param engine	- the engine for graphs that no filter settles
+	 * @param filters	- the filters, applied in order
+	 * @param reduce	- whether to test the kernel of a GraphReduction in place of the graph
+	 */
+	public FilteredTester(PlanarityTester engine, PlanarityFilter[] filters, boolean reduce) {
+		this.engine = engine;
+		this.reduce = reduce;
+		List<PlanarityFilter> chain = new ArrayList<PlanarityFilter>();
+		for( PlanarityFilter filter : filters ) {
+			if( !reduce || filter != PlanarityFilters.SERIES_PARALLEL ) chain.add(filter);
+		}
+		this.filters = chain.toArray(new PlanarityFilter[chain.size()]);
+		settled = new LongAdder[this.filters.length];
+		for( int f=0; f<settled.length; f++ ) {
+			settled[f] = new LongAdder();
+		}
+	}
+
+	/**
+	 * @see PlanarityTester#isPlanar(Graph)
+	 */
+	public boolean isPlanar(Graph graph) throws PlanarityException {
+		CompactGraph compact = graph.compact();
+		Boolean planar = filter(compact);
+		if( planar != null ) return planar;
+		if( reduce ) {
+			GraphReduction reduction = new GraphReduction(compact);
+			verticesIn.add(compact.size());
+			if( reduction.isComplete() ) {
+				reducedAway.increment();
+				return true;
+			}
+			CompactGraph kernel = reduction.getKernel();
+			verticesOut.add(kernel.size());
+			planar = filter(kernel);
+			if( planar != null ) return planar;
+			graph = new Graph(kernel);
+		}
+		tested.increment();
+		return engine.isPlanar(graph);
+	}
+
+	/**
+	 * @return the answer of the first filter that settles the graph, or null if none does
+	 */
+	private Boolean filter(CompactGraph graph) {
+		for( int f=0; f<filters.length; f++ ) {
+			Boolean planar = filters[f].test(graph);
+			if( planar != null ) {
+				settled[f].increment();
+				return planar;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * The name of the engine, so the filters do not change how results are reported.
+	 *
+	 * @see PlanarityTester#getName()
+	 */
+	public String getName() {
+		return engine.getName();
+	}
+
+	/**
+	 * @return the name of the engine, the filters of the chain and whether graphs are
+	 * 		   reduced, such as "lr+small+edges+reduce"; testers with the same configuration give
+	 * 		   the same answers, so ResultCache keys its answers by it
+	 */
+	public String getConfiguration() {
+		StringBuilder configuration = new StringBuilder(engine.getName());
+		for( PlanarityFilter filter : filters ) {
+			configuration.append('+').append(filter.getName());
+		}
+		if( reduce ) configuration.append("+reduce");
+		return configuration.toString();
+	}
+
+	/**
+	 * @return the number of graphs settled by each filter and by the engine, one line each
+	 */
+	public String getSummary() {
+		StringBuilder summary = new StringBuilder();
+		summary.append(String.format("%-20s %10s%n", "filter", "settled"));
+		for( int f=0; f<filters.length; f++ ) {
+			summary.append(String.format("%-20s %10d%n", filters[f].getName(), settled[f].sum()));
+		}
+		if( reduce ) summary.append(String.format("%-20s %10d%n", "reduction", reducedAway.sum()));
+		summary.append(String.format("%-20s %10d%n", "engine." + engine.getName(), tested.sum()));
+		if( reduce && verticesIn.sum() > 0 ) {
+			summary.append("reduction kept ").append(verticesOut.sum()).append(" of ").append(verticesIn.sum())
+				.append(" vertices").append(String.format("%n"));
+		}
+		return summary.toString();
+	}
+}
@@ -3,59 +3,92 @@
  */
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.util.*;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This class is a data representation and implementation of a Graph. The data
  * structure used for this representation is an adjacency list (a modified adjacency matrix),
  * which only uses space for edges that actually exist in the represented graph.
  * 
+ * Read-only queries are answered from an immutable CompactGraph snapshot of the adjacency
+ * list, which is built on first use and dropped again by any mutation. A Graph can also be
+ * created directly over a CompactGraph, in which case the adjacency list is only built
+ * once the graph is modified.
+ * 
+ * The adjacency list keeps vertices in insertion order, and every vertex has an id. An
+ * EdgeIndex maps each (vertex id, neighbor id) pair to the position of the neighbor in the
+ * list, so isEdge, addEdge and removeEdge take O(1) time. Removing a neighbor moves the
+ * last neighbor of the list into its place; the order of every list therefore depends only
+ * on the sequence of operations, and results stay reproducible.
+ * 
  * @author Trevor Mack		(tmm9274@rit.edu)
  * @author David Sweeney	(dfs7079@rit.edu)
  *
  */
 public class Graph {
 
-	//adjacency list: data structure of graph
+	//adjacency list: mutable data structure of graph, null while only the compact form exists
 	protected HashMap<Object, List<Object>> adjacencyMap;
-	//states to be applied to a node in graph specific methods
-	enum VertexState {
-		//unvisited, visiting, visited
-        White, Gray, Black
-    }
+	//position of each neighbor in the adjacency list, keyed by vertex id and neighbor id
+	private EdgeIndex edgeIndex;
+	//id of the next vertex added
+	private int nextId;
+	//number of edges, a self loop counting once, kept while the adjacency list exists
+	private int edgeCount;
+	//compressed-sparse-row snapshot of the graph, null after a mutation until next needed
+	private CompactGraph compact;
+	/**
+	 * The neighbors of one vertex, together with the id of the vertex in the edge index.
+	 */
+	private static class NeighborList extends ArrayList<Object> {
+		private static final long serialVersionUID = 1L;
+		final int id;
+		
+		NeighborList(int id, int capacity) {
+			super(capacity);
+			this.id = id;
+		}
+	}
+	
+	//pieces with fewer vertices are tested in the calling thread rather than forked
+	private static final int PIECE_CUTOFF = 64;
+	//the cutoff in use, which PlanarityChecks lowers to fork every piece above FORK_DEPTH
+	static int pieceCutoff = PIECE_CUTOFF;
+	//recursion depth below which nothing is forked, keeping the tasks in flight bounded
+	private static final int FORK_DEPTH = 8;
 	
 	/**
 	* Initialize this Graph object to be empty.
 	*/
 	public Graph() {
-		adjacencyMap = new HashMap<Object, List<Object>>();
+		adjacencyMap = new LinkedHashMap<Object, List<Object>>();
+		edgeIndex = new EdgeIndex();
+	}
+	
+	/**
+	 * Create a Graph backed by a CompactGraph. No adjacency list is built until the
+	 * graph is modified.
+	 * 
+	 * @param compact	- the compact graph to wrap
+	 */
+	public Graph( CompactGraph compact ) {
+		this.compact = compact;
 	}
 	
 	/**
 	 * Create a Graph from a file Object. File format are line delimited edges,
-	 * where edges are space delimited vertices.
+	 * where edges are space delimited vertices. The file is read by EdgeListLoader
+	 * and the graph is backed by the resulting CompactGraph. Files in the binary
+	 * format of BinaryGraphFormat are recognized by their magic number and loaded
+	 * by it instead.
 	 * 
 	 * @param file - input file containing a list of edges
 	 * @throws Exception - Invalid File Format
 	 */
 	public Graph( File file ) throws Exception {
-		this();
-		try {
-			Scanner scanner = new Scanner(file);
-			//for each edge
-			while(scanner.hasNextLine()) {
-				//parse edge
-				String[] vertices = (scanner.nextLine()).split(" ", 2);
-				if(vertices.length == 2) {
-					addEdge(vertices[0], vertices[1]);
-				}else {
-					throw new Exception("Invalid File Format");
-				}
-			}
-		} catch (FileNotFoundException e) {
-			throw e;
-		}
+		this(BinaryGraphFormat.isBinary(file) ? BinaryGraphFormat.load(file) : EdgeListLoader.load(file));
 	}
 	
 	/**
@@ -75,13 +108,74 @@ public class Graph {
 		}
 	}
 	
+	/**
+	 * Create a graph from a list of points, see Graph(List).
+	 * 
+	 * @param list	- the list of nodes
+	 * @return the graph connecting adjacent nodes of the list
+	 */
+	static Graph fromPath( List<Object> list ) {
+		return new Graph(list);
+	}
+	
+	/**
+	 * Returns the compressed-sparse-row form of this graph, building it if the graph
+	 * was modified since the last call.
+	 * 
+	 * @return the compact graph
+	 */
+	public CompactGraph compact() {
+		if( compact == null ) {
+			compact = new CompactGraph(adjacencyMap);
+		}
+		return compact;
+	}
+	
+	/**
+	 * Returns the adjacency list for modification, building it from the compact form if
+	 * needed, and invalidates the compact form.
+	 * 
+	 * @return the adjacency list
+	 */
+	private HashMap<Object, List<Object>> mutableAdjacency() {
+		if( adjacencyMap == null ) {
+			//vertex ids follow the compact form
+			int n = compact.size();
+			adjacencyMap = new LinkedHashMap<Object, List<Object>>(n*2);
+			edgeIndex = new EdgeIndex(compact.offset(n));
+			for( int v=0; v<n; v++ ) {
+				NeighborList neighbors = new NeighborList(v, compact.degree(v));
+				boolean loop = false;
+				for( int i=compact.offset(v); i<compact.offset(v+1); i++ ) {
+					int w = compact.target(i);
+					edgeIndex.put(w == v && loop ? loopKey(v) : EdgeIndex.key(v, w), neighbors.size());
+					if( w == v ) loop = true;
+					neighbors.add(compact.getLabel(w));
+				}
+				adjacencyMap.put(compact.getLabel(v), neighbors);
+			}
+			nextId = n;
+			edgeCount = compact.getEdgeCount();
+		}
+		compact = null;
+		return adjacencyMap;
+	}
+	
+	/**
+	 * @return the key of the second copy of the self loop at v, which is stored twice in
+	 * 		   the list of v
+	 */
+	private static long loopKey(int v) {
+		return EdgeIndex.key(v, v) | Long.MIN_VALUE;
+	}
+	
 	/**
 	* Determines if this Graph contains no vertices.
 	*
 	* @return true - if this Graph contains no vertices, otherwise false
 	*/
 	public boolean isEmpty() {
-		return adjacencyMap.isEmpty();
+		return size() == 0;
 	}
 	
 	/**
@@ -90,37 +184,33 @@ public class Graph {
 	* @return the number of vertices.
 	*/
 	public int size() {
+		if( adjacencyMap == null ) return compact.size();
 		return adjacencyMap.size();
 	}
 	
 	/**
-	* Returns the number of edges in this Graph object.
+	* Returns the number of edges in this Graph object, in O(1) time without building the
+	* compact form.
 	*
 	* @return the number of edges.
 	*/
 	public int getEdgeCount() {
-		int count = 0;
-		//iterate over the hashmap's keys counting edges
-		Iterator<Object> it = adjacencyMap.keySet().iterator();
-		while( it.hasNext() ) {
-			List<Object> edges = (ArrayList<Object>)adjacencyMap.get(it.next());
-			count += edges.size();
-		}
-		return count/2;
+		if( adjacencyMap == null ) return compact.getEdgeCount();
+		return edgeCount;
 	}
 	
+	/**
+	 * Lists every edge once, from the endpoint whose row holds it first.
+	 * 
+	 * @return the edges of this graph
+	 */
 	public List<Edge> getEdges() {
-		List<Edge> edges = new ArrayList<Edge>();
-		List<Object> state = new ArrayList<Object>();
-		//iterate over the hashmap's keys counting edges
-		for( Object v1 : getNodes() ) {
-			for( Object v2 : getNeighbors(v1) ) {
-				Edge edge = new Edge(v1, v2);
-				if(edges.contains(edge)) {
-					edges.add(edge);
-				}
+		CompactGraph graph = compact();
+		List<Edge> edges = new ArrayList<Edge>(graph.getEdgeCount());
+		for( int v=0; v<graph.size(); v++ ) {
+			for( int i=graph.offset(v); i<graph.offset(v+1); i++ ) {
+				if( i < graph.twin(i) ) edges.add(new Edge(graph.getLabel(v), graph.getLabel(graph.target(i))));
 			}
-			state.add(v1);
 		}
 		return edges;
 	}
@@ -133,12 +223,22 @@ public class Graph {
 	* 		  false - if the object already exists
 	*/
 	public boolean addVertex (Object vertex) {
-		if (adjacencyMap.containsKey(vertex))
+		if (containsVertex(vertex))
 			return false;
-		adjacencyMap.put (vertex, new ArrayList<Object>());
+		mutableAdjacency().put (vertex, new NeighborList(nextId++, 4));
 		return true;
 	}
 	
+	/**
+	 * @param vertex	- the specified object
+	 * @return true		- if the object is a vertex of this graph
+	 */
+	public boolean containsVertex (Object vertex) {
+		if (adjacencyMap == null)
+			return compact.indexOf(vertex) >= 0;
+		return adjacencyMap.containsKey(vertex);
+	}
+	
 	/**
 	 * Removes a node from the graph, and all cooresponding edges.
 	 * 
@@ -146,16 +246,15 @@ public class Graph {
 	 * @return true		- if the vertex was removed, false otherwise
 	 */
 	public boolean removeVertex (Object vertex) {
-		if (!adjacencyMap.containsKey(vertex))
+		if (!containsVertex(vertex))
 			return false;
 		
-		for(Object node : getNodes()) {
-			List<Object> neighbors = adjacencyMap.get(node);
-			if(neighbors.contains(vertex)) {
-				removeEdge(node, vertex);
-			}
+		HashMap<Object, List<Object>> adjacency = mutableAdjacency();
+		List<Object> neighbors = adjacency.get(vertex);
+		while(!neighbors.isEmpty()) {
+			removeEdge(vertex, neighbors.get(neighbors.size()-1));
 		}
-		adjacencyMap.remove(vertex);
+		adjacency.remove(vertex);
 		return true;
 	}
 	
@@ -169,8 +268,13 @@ public class Graph {
 	public boolean addEdge (Object v1, Object v2) {
 		if(!isEdge(v1, v2)) {
 			addVertex (v1); addVertex (v2);
-			adjacencyMap.get(v1).add(v2);
-			adjacencyMap.get(v2).add(v1);
+			HashMap<Object, List<Object>> adjacency = mutableAdjacency();
+			NeighborList list1 = (NeighborList)adjacency.get(v1), list2 = (NeighborList)adjacency.get(v2);
+			edgeIndex.put(EdgeIndex.key(list1.id, list2.id), list1.size());
+			list1.add(v2);
+			edgeIndex.put(list1 == list2 ? loopKey(list1.id) : EdgeIndex.key(list2.id, list1.id), list2.size());
+			list2.add(v1);
+			edgeCount++;
 			return true;
 		}
 		return false;
@@ -185,15 +289,40 @@ public class Graph {
 	 */
 	public boolean removeEdge (Object v1, Object v2) {
 		if ( this.isEdge(v1, v2) ) {
+			HashMap<Object, List<Object>> adjacency = mutableAdjacency();
+			NeighborList list1 = (NeighborList)adjacency.get(v1), list2 = (NeighborList)adjacency.get(v2);
 			//remove edge from v1
-			adjacencyMap.get(v1).remove(v2);
+			removeNeighbor(list1, EdgeIndex.key(list1.id, list2.id));
 			//remove edge from v2
-			adjacencyMap.get(v2).remove(v1);
+			removeNeighbor(list2, list1 == list2 ? loopKey(list1.id) : EdgeIndex.key(list2.id, list1.id));
+			edgeCount--;
 			return true;
 		}
 		return false;
 	}
 	
+	/**
+	 * Removes one neighbor from an adjacency list in O(1), moving the last neighbor of the
+	 * list into its place.
+	 * 
+	 * @param neighbors	- the adjacency list
+	 * @param key		- the edge index key of the neighbor to remove
+	 */
+	private void removeNeighbor(NeighborList neighbors, long key) {
+		int position = edgeIndex.remove(key);
+		int last = neighbors.size()-1;
+		if( position != last ) {
+			Object moved = neighbors.get(last);
+			int id = ((NeighborList)adjacencyMap.get(moved)).id;
+			long movedKey = EdgeIndex.key(neighbors.id, id);
+			//of the two copies of a self loop, the one at the end may be either
+			if( id == neighbors.id && edgeIndex.get(movedKey) != last ) movedKey = loopKey(id);
+			edgeIndex.put(movedKey, position);
+			neighbors.set(position, moved);
+		}
+		neighbors.remove(last);
+	}
+	
 	/**
 	 * Tests to see if 2 vertices are connected by exacted one edge.
 	 * 
@@ -202,10 +331,12 @@ public class Graph {
 	 * @return true	- if v1 and v2 are connected by 1 edge
 	 */
 	public boolean isEdge (Object v1, Object v2) {
-		if(getNodes().contains(v1) && getNodes().contains(v2) ) {
-			return getNeighbors(v1).contains(v2);
+		if(adjacencyMap == null) {
+			int u = compact.indexOf(v1), v = compact.indexOf(v2);
+			return u >= 0 && v >= 0 && compact.isEdge(u, v);
 		}
-		return false;
+		NeighborList list1 = (NeighborList)adjacencyMap.get(v1), list2 = (NeighborList)adjacencyMap.get(v2);
+		return list1 != null && list2 != null && edgeIndex.containsKey(EdgeIndex.key(list1.id, list2.id));
 	}
 	
 	/**
@@ -227,6 +358,7 @@ public class Graph {
 	 * @return list of node objects
 	 */
 	public List<Object> getNodes() {
+		if( adjacencyMap == null ) return compact.getNodes();
 		return Arrays.asList(adjacencyMap.keySet().toArray());
 	}
 	
@@ -237,6 +369,7 @@ public class Graph {
 	 * @return list	- the list of neighbors
 	 */
 	public List<Object> getNeighbors (Object v) {
+		if( adjacencyMap == null ) return compact.getNeighbors(v);
 		return adjacencyMap.get(v);
 	}
 	
@@ -247,12 +380,7 @@ public class Graph {
 	 * 			false	- if graph is not a path
 	 */
 	public boolean isPath() {
-		for( Object node : getNodes() ) {
-			if( this.getNeighbors(node).size() > 2 ) {
-				return false;
-			}
-		}
-		return true;
+		return compact().isPath();
 	}
 	
 	/**
@@ -265,156 +393,569 @@ public class Graph {
 	 * 			false	- graph is not a bipartite graph
 	 */
 	public boolean isBipartite() {
-		//3 arrays: graphNodes = HashMap.keyset,  
-		//			color=value of graphNodes color (0=>unvisited, 1=>red, 2=>blue)
-		List<Object> graphNodes = Arrays.asList(adjacencyMap.keySet().toArray());
-		int[] color = new int[graphNodes.size()];
-		
-		for( int i=0; i < graphNodes.size(); i++ ) {
-			if( color[i] == 0 ) {
-				Object currentNode = graphNodes.get(i);
-				//mark the currentNode as visited and as color one
-				color[i] = 1;
-				// create stack containing currentNode
-				Stack<Object> nodeStack = new Stack<Object>();
-				nodeStack.push(currentNode);
-				while( !nodeStack.isEmpty() ) {
-					//collect neighboring nodes
-					Object u = nodeStack.pop();
-					int uIndex = graphNodes.indexOf(u);
-					
-					for( Object neighbor : getNeighbors(u) ) {
-						//neighbor of u
-						int index = graphNodes.indexOf(neighbor);
-						if(color[index] == color[uIndex]) {
-							return false;
-						}else if(color[index] == 0) {
-							nodeStack.push(neighbor);
-							color[index] = 3 - color[uIndex];
-						}
-					}
-				}
-			}
-		}
-		return true;
+		return compact().isBipartite();
 	}
 
 	/**
+	 * Finds and creates a simpleCycle is there is one in the graph.
 	 * 
-	 * @return
+	 * @return cycle	- a simpleCycle in the graph, or null if none exist
 	 */
-	private boolean isBiconnected() {
-		for( Object node : getNodes() ) {
-			if( this.getNeighbors(node).size() < 2 ) {
-				return false;
-			}
-		}
-		return true;
+	public Graph simpleCycle() {
+		CompactGraph graph = compact();
+		return graph.cycleGraph(graph.simpleCycle());
 	}
 	
 	/**
-	 * Finds and creates a simpleCycle is there is one in the graph.
+	 * Finds a cycle that splits the graph into pieces of similar size, which keeps the
+	 * recursion of isPlanar shallow, see CompactGraph.balancedCycle().
 	 * 
-	 * @return cycle	- a simpleCycle in the graph, or null if none exist
+	 * @return cycle	- a cycle in the graph, or null if none exist
 	 */
-	public Graph simpleCycle() {
-		List<Object> graphNodes = Arrays.asList(adjacencyMap.keySet().toArray());
-		Stack<Object> stack = new Stack<Object>();
-		VertexState[] state = new VertexState[size()];
-		for( int i=0; i<graphNodes.size(); i++) {
-			//set as unvisited
-			state[i] = VertexState.White;
-		}
-		state[0] = VertexState.Gray; //mark it
-		//System.out.println(graphNodes.get(0)); //display it
-		stack.push(graphNodes.get(0)); //push it
-		
-		while( !stack.isEmpty() ) {
-			//get an unvisited vertex adjacent to stack top
-			List<Object> neighbors = getNeighbors(stack.peek());
-			int unvisited = -1;
-			for (int i = 0; i < neighbors.size(); i++) {
-				int index = graphNodes.indexOf(neighbors.get(i));
-				if(state[index] == VertexState.White) {
-					unvisited = index;
-					i = neighbors.size();
-				}
-				if(graphNodes.get(index) == stack.get(0)) {
-					//System.out.println("loop");
-					//stack.push(graphNodes.get(index));
-					return new Graph(stack);
-				}
-			}
-			if( unvisited == -1 ) {
-				state[graphNodes.indexOf(stack.peek())] = VertexState.Black; //finish it
-				stack.pop();
-			}else {
-				state[unvisited] = VertexState.Gray; //mark it
-				//System.out.println(graphNodes.get(unvisited)); //display it
-				stack.push(graphNodes.get(unvisited)); //push it
-			}
-		}
-		return null;
+	public Graph separatingCycle() {
+		CompactGraph graph = compact();
+		return graph.cycleGraph(graph.balancedCycle());
 	}
 	
 	/**
 	 * The implementation of the planarity algorithm description taken from di Battista et al
-	 * which tests whether or not a graph is planar.
+	 * which tests whether or not a graph is planar. The recursion over pieces runs in
+	 * parallel, see isPlanar(Graph, boolean).
 	 * 
 	 * @param 	cycle		- a cycle in the graph (seperating)
 	 * @return	true		- graph is indeed planar
 	 * 			false		- graph is not planar
-	 * @throws PlanarityException if input graph is not bipartite (algorithm description)
+	 * @throws PlanarityException no longer thrown, a graph that is not biconnected is split
+	 * 			into its blocks instead
 	 */
 	public boolean isPlanar(Graph cycle) throws PlanarityException {
-		if(!this.isBiconnected()) throw new PlanarityException("Graph must be biconnected"); 
+		return isPlanar(cycle, true);
+	}
+	
+	/**
+	 * The implementation of the planarity algorithm description taken from di Battista et al
+	 * which tests whether or not a graph is planar.
+	 * 
+	 * A graph that is not biconnected is split into its blocks, which are tested
+	 * independently; the cycle is then ignored.
+	 * 
+	 * The recursion runs on an explicit stack on the heap (see run), so neither long paths
+	 * nor deep nesting of pieces can overflow the thread stack.
+	 * 
+	 * In parallel, blocks and the pieces of step 3 with at least PIECE_CUTOFF vertices are
+	 * tested as fork-join tasks on the common pool down to FORK_DEPTH, smaller pieces and
+	 * deeper calls in the calling thread. Once a piece is found nonplanar, pieces after it
+	 * in the list are cancelled, down to their own recursive calls. The outcome is then
+	 * taken from the pieces in list order, the first nonplanar piece or failure deciding,
+	 * so a parallel run returns (or throws) exactly what a sequential run does.
+	 * 
+	 * @param 	cycle		- a cycle in the graph (seperating)
+	 * @param 	parallel	- whether to test blocks and pieces in parallel
+	 * @return	true		- graph is indeed planar
+	 * 			false		- graph is not planar
+	 * @throws PlanarityException no longer thrown, a graph that is not biconnected is split
+	 * 			into its blocks instead
+	 */
+	public boolean isPlanar(Graph cycle, boolean parallel) throws PlanarityException {
+		return isPlanar(cycle, parallel, null);
+	}
+	
+	private boolean isPlanar(Graph cycle, boolean parallel, Cancellation cancellation) throws PlanarityException {
+		return run(call(this, cycle, parallel, cancellation));
+	}
+	
+	/**
+	 * Runs calls of isPlanar on an explicit stack of Call frames rather than on the thread
+	 * stack, so the depth of the recursion is bounded by the heap. The frame on top starts
+	 * its next block or piece; a call that needs no recursion answers at once, any other
+	 * is pushed in turn, and a finished frame is popped and hands its outcome to the frame
+	 * below it.
+	 * 
+	 * @param outcome	- what call returned for the first call
+	 * @return the answer of the first call
+	 * @throws PlanarityException no longer thrown, a graph that is not biconnected is split
+	 * 			into its blocks instead
+	 */
+	private static boolean run(Object outcome) throws PlanarityException {
+		ArrayDeque<Call> stack = new ArrayDeque<Call>();
+		while( true ) {
+			if( outcome instanceof Call ) {
+				stack.push((Call)outcome);
+			}else if( stack.isEmpty() ) {
+				return answer(outcome);
+			}else {
+				stack.peek().childDone(outcome);
+			}
+			Call top = stack.peek();
+			outcome = top.nextChild();
+			if( outcome == null ) {
+				stack.pop();
+				outcome = top.finish();
+			}
+		}
+	}
+	
+	/**
+	 * @param outcome	- a Boolean answer, or the Throwable a call failed with
+	 * @return the answer
+	 */
+	private static boolean answer(Object outcome) throws PlanarityException {
+		if( outcome instanceof PlanarityException ) throw (PlanarityException)outcome;
+		if( outcome instanceof RuntimeException ) throw (RuntimeException)outcome;
+		if( outcome instanceof Error ) throw (Error)outcome;
+		return (Boolean)outcome;
+	}
+	
+	/**
+	 * Steps 0 to 2 of isPlanar for one call.
+	 * 
+	 * @return the answer if the call needs no recursion, otherwise its frame
+	 */
+	private static Object call(Graph graph, Graph cycle, boolean parallel, Cancellation cancellation) {
+		if( cancellation != null && cancellation.isCancelled() ) return Boolean.FALSE;
+		int depth = cancellation == null ? 0 : cancellation.depth;
+		// 0. A graph is planar if and only if each of its biconnected components is
+		long start = PlanarityStats.start();
+		BiconnectedComponents blocks = new BiconnectedComponents(graph.compact());
+		PlanarityStats.end(PlanarityStats.BLOCKS, start, depth);
+		if( !blocks.isBiconnected() ) {
+			List<Graph> children = blocks.getBlockGraphs();
+			PlanarityStats.subgraphs(children.size());
+			return new Call(graph, null, null, children, parallel, cancellation);
+		}
 		// 1. If the graph has more than 3n -6 edges, return "nonplanar."
-		if( this.getEdgeCount() > 3*this.size()-6 ) return false;
+		start = PlanarityStats.start();
+		boolean bounded = graph.size() < 3 || graph.getEdgeCount() <= 3*graph.size()-6;
+		PlanarityStats.end(PlanarityStats.BOUND, start, depth);
+		if( !bounded ) return Boolean.FALSE;
 		
 		// 2. Compute the pieces of G with respect to C...if no C then whole graph is 1 peice
 		List<Graph> pieces = new ArrayList<Graph>();
 		if(cycle == null) {
-			pieces.add(this);
+			pieces.add(graph);
 		}else {
-			pieces = TestPlanarity.FindPieces(this, cycle);
-			pieces.addAll(TestPlanarity.FindVertexPieces(this, cycle, pieces));
+			start = PlanarityStats.start();
+			CyclePieces found = new CyclePieces(graph.compact(), cycle.compact());
+			PlanarityStats.end(PlanarityStats.FIND_PIECES, start, depth);
+			start = PlanarityStats.start();
+			pieces = found.getPieceGraphs();
+			PlanarityStats.end(PlanarityStats.BUILD_PIECES, start, depth);
+			PlanarityStats.subgraphs(pieces.size());
+		}
+		if( PlanarityStats.isRecordingPieces() ) {
+			int vertices = 0, largest = 0;
+			for( Graph piece : pieces ) {
+				vertices += piece.size();
+				largest = Math.max(largest, piece.size());
+			}
+			PlanarityStats.pieces(pieces.size(), vertices, largest, depth);
 		}
 		
 		// 3. For each piece P of G that is not a path,
+		List<Graph> recursive = new ArrayList<Graph>();
 		for( Graph piece : pieces ) {
-			if( piece.isPath() ) continue;
-			Graph p1 = new Graph();
-			Graph c1 = new Graph();
-			// 1. let P' be that graph obtained by adding P to C
-			p1.addGraph(piece);
-			p1.addGraph(cycle);
+			if( !piece.isPath() ) recursive.add(piece);
+		}
+		return new Call(graph, cycle, pieces, recursive, parallel, cancellation);
+	}
+	
+	/**
+	 * A call of isPlanar waiting for its children: the blocks of a graph that is not
+	 * biconnected, otherwise the pieces of step 3. In a parallel run above FORK_DEPTH,
+	 * children with at least PIECE_CUTOFF vertices are forked as soon as the frame is made,
+	 * each task running its own explicit stack; run starts the others one at a time.
+	 */
+	private static final class Call {
+		
+		final Graph graph;
+		//the cycle and all pieces of step 2, null if the children are blocks
+		final Graph cycle;
+		final List<Graph> pieces;
+		final List<Graph> children;
+		final boolean parallel;
+		final Cancellation scope;
+		final int depth;
+		//start of step 3
+		final long start;
+		//outcome of each child
+		final boolean[] planar;
+		final Throwable[] failures;
+		final List<RecursiveAction> forked = new ArrayList<RecursiveAction>();
+		//children left to run, and the one running
+		final List<Integer> inline = new ArrayList<Integer>();
+		int next;
+		int current;
+		//the id in graph of each cycle vertex, and the cycle id of each vertex of graph or -1
+		final int[] cycleIds;
+		final int[] cycleIndex;
+		
+		Call(Graph graph, Graph cycle, List<Graph> pieces, final List<Graph> children, boolean parallel,
+				Cancellation cancellation) {
+			this.graph = graph;
+			this.cycle = cycle;
+			this.pieces = pieces;
+			this.children = children;
+			this.parallel = parallel;
+			if( pieces != null ) {
+				cycleIds = cycle.compact().idsIn(graph.compact());
+				cycleIndex = new int[graph.size()];
+				Arrays.fill(cycleIndex, -1);
+				for( int c=0; c<cycleIds.length; c++ ) {
+					if( cycleIds[c] >= 0 ) cycleIndex[cycleIds[c]] = c;
+				}
+			}else {
+				cycleIds = null;
+				cycleIndex = null;
+			}
+			depth = cancellation == null ? 0 : cancellation.depth;
+			start = PlanarityStats.start();
+			boolean concurrent = parallel && depth < FORK_DEPTH;
+			scope = new Cancellation(cancellation, concurrent);
+			planar = new boolean[children.size()];
+			failures = new Throwable[children.size()];
+			for( int i=0; i<children.size(); i++ ) {
+				if( !concurrent || children.get(i).size() < pieceCutoff ) {
+					inline.add(i);
+					continue;
+				}
+				final int index = i;
+				RecursiveAction task = new RecursiveAction() {
+					private static final long serialVersionUID = 1L;
+					protected void compute() {
+						Object outcome = scope.isCancelled(index) ? Boolean.FALSE : start(index);
+						try {
+							planar[index] = run(outcome);
+						} catch (Throwable e) {
+							failures[index] = e;
+						}
+						if( !planar[index] ) scope.fail(index);
+					}
+				};
+				forked.add(task);
+				task.fork();
+			}
+		}
+		
+		/**
+		 * Starts the next child that is not cancelled.
+		 * 
+		 * @return what call returned for the child, a Throwable if it failed, or null if no
+		 * 		   children are left
+		 */
+		Object nextChild() {
+			while( next < inline.size() ) {
+				int index = inline.get(next++);
+				if( scope.isCancelled(index) ) continue;
+				current = index;
+				return start(index);
+			}
+			return null;
+		}
+		
+		private Object start(int index) {
+			try {
+				Graph child = children.get(index);
+				if( pieces == null ) return call(child, child.separatingCycle(), parallel, scope.member(index));
+				PlanarityStats.subgraphs(2);
+				Step step = new Step(child.compact());
+				// 1. let P' be that graph obtained by adding P to C
+				Graph p1 = step.extendedPiece();
+				
+				// 2. let C' be the cycle of P' obtained from C by replacing the portion of C between two consecutive attachments with a path of P between them
+				Graph c1 = step.replacedCycle(p1.compact());
+				
+				// 3. apply the algorithm recursively to graph P' and cycle C'. If P' is nonplanar, return "nonplanar."
+				return call(p1, c1, parallel, scope.child(index));
+			} catch (Throwable e) {
+				return e;
+			}
+		}
+		
+		/**
+		 * Builds P' and C' for one piece without adjacency lists: P' as a subgraph of the
+		 * graph of the call and C' as a subgraph of P', numbered on int ids. The vertices and
+		 * rows of P' come out in the order copying the piece and the cycle with
+		 * Graph.addGraph would give; C' is a simple cycle listed in walking order.
+		 * 
+		 * Every vertex has a slot: cycle vertex c has slot c, and a piece vertex v that is not
+		 * on the cycle has slot k+v, k being the size of the cycle. Both subgraphs are
+		 * numbered by slot, in the order the vertices first appear.
+		 */
+		private final class Step {
 			
-			// 2. let C' be the cycle of P' obtained from C by replacing the portion of C between two consecutive attachments with a path of P between them
-			c1.addGraph(cycle);
+			final CompactGraph piece;
+			final CompactGraph ring;
+			final int k;
+			//the slot of each piece vertex, and the id in graph of each slot
+			final int[] slotOf;
+			final int[] slotIds;
+			//the cycle vertices that are in the piece
+			final boolean[] inPiece;
+			//the id in P' of each slot, -1 until numbered
+			final int[] p1Ids;
 			
-			// replacement with the consecutive attachments of P and C
-			List<Object> attachments=TestPlanarity.Attach(piece.getNodes(), cycle);
-			Stack<Object> interval = TestPlanarity.Intervalize(cycle,attachments.get(0), attachments.get(attachments.size()-1));
+			Step(CompactGraph piece) {
+				this.piece = piece;
+				ring = cycle.compact();
+				k = ring.size();
+				int[] pieceIds = piece.idsIn(graph.compact());
+				slotOf = new int[piece.size()];
+				slotIds = new int[k + piece.size()];
+				inPiece = new boolean[k];
+				System.arraycopy(cycleIds, 0, slotIds, 0, k);
+				for( int v=0; v<piece.size(); v++ ) {
+					int c = cycleIndex[pieceIds[v]];
+					slotOf[v] = c >= 0 ? c : k+v;
+					slotIds[slotOf[v]] = pieceIds[v];
+					if( c >= 0 ) inPiece[c] = true;
+				}
+				p1Ids = new int[k + piece.size()];
+				Arrays.fill(p1Ids, -1);
+			}
 			
-			for (Object node : interval) {
-				if (!attachments.contains(node))
-					c1.removeVertex(node);
+			/**
+			 * @return P', the piece followed by the cycle
+			 */
+			Graph extendedPiece() {
+				int[] vertices = new int[slotIds.length];
+				int arcs = piece.offset(piece.size()) + ring.offset(k);
+				int[] sources = new int[arcs], destinations = new int[arcs];
+				int size = 0, edges = 0;
+				for( int v=0; v<piece.size(); v++ ) {
+					for( int i=piece.offset(v); i<piece.offset(v+1); i++ ) {
+						size = number(slotOf[v], p1Ids, vertices, size);
+						size = number(slotOf[piece.target(i)], p1Ids, vertices, size);
+						sources[edges] = p1Ids[slotOf[v]];
+						destinations[edges++] = p1Ids[slotOf[piece.target(i)]];
+					}
+				}
+				for( int c=0; c<k; c++ ) {
+					for( int i=ring.offset(c); i<ring.offset(c+1); i++ ) {
+						size = number(c, p1Ids, vertices, size);
+						size = number(ring.target(i), p1Ids, vertices, size);
+						sources[edges] = p1Ids[c];
+						destinations[edges++] = p1Ids[ring.target(i)];
+					}
+				}
+				for( int p=0; p<size; p++ ) {
+					vertices[p] = slotIds[vertices[p]];
+				}
+				return new Graph(graph.compact().subgraph(vertices, size, sources, destinations, edges));
 			}
 			
-			c1.addGraph(piece);
+			/**
+			 * Numbers a slot if it is not numbered yet.
+			 * 
+			 * @return the number of slots numbered
+			 */
+			private int number(int slot, int[] ids, int[] slots, int size) {
+				if( ids[slot] >= 0 ) return size;
+				ids[slot] = size;
+				slots[size] = slot;
+				return size+1;
+			}
 			
-			// 3. apply the algorithm recursively to graph P' and cycle C'. If P' is nonplanar, return "nonplanar."
-			if(!p1.isPlanar(c1)) return false; 
+			/**
+			 * Builds C' as a cycle of P': the arc of C between the first two attachments of
+			 * the piece met walking C, which holds no other attachment, is replaced by a
+			 * path of the piece between them through vertices off C. C' is then a cycle
+			 * that separates P', since the arc and the rest of the piece lie on different
+			 * pieces of it, so every call below this one has fewer edges than its parent.
+			 * 
+			 * @param p1	- P', see extendedPiece()
+			 * @return C'
+			 */
+			Graph replacedCycle(CompactGraph p1) {
+				// the cycle in walking order, and its first two attachments
+				int[] order = new int[k];
+				for( int c=1; c<k; c++ ) {
+					int i = ring.offset(order[c-1]);
+					//every cycle vertex has two neighbors, one of them the vertex before it
+					order[c] = c > 1 && ring.target(i) == order[c-2] ? ring.target(i+1) : ring.target(i);
+				}
+				int first = -1, second = -1;
+				for( int c=0; c<k && second < 0; c++ ) {
+					if( !inPiece[order[c]] ) continue;
+					if( first < 0 ) first = c;
+					else second = c;
+				}
+				if( second < 0 ) throw new IllegalStateException("piece with fewer than two attachments");
+				
+				// a path of the piece from the first attachment to the second, by a breadth
+				// first search that leaves the cycle only at its start
+				int n = piece.size();
+				int from = -1, to = -1;
+				for( int v=0; v<n; v++ ) {
+					if( slotOf[v] == order[first] ) from = v;
+					if( slotOf[v] == order[second] ) to = v;
+				}
+				int[] parent = new int[n];
+				Arrays.fill(parent, -1);
+				int[] queue = new int[n];
+				int head = 0, tail = 0;
+				queue[tail++] = from;
+				parent[from] = from;
+				while( head < tail && parent[to] < 0 ) {
+					int v = queue[head++];
+					for( int i=piece.offset(v); i<piece.offset(v+1); i++ ) {
+						int w = piece.target(i);
+						if( parent[w] >= 0 ) continue;
+						if( slotOf[w] < k && w != to ) continue;
+						parent[w] = v;
+						queue[tail++] = w;
+					}
+				}
+				if( parent[to] < 0 ) throw new IllegalStateException("attachments not joined by the piece");
+				
+				// C': the cycle from the second attachment around to the first, then the
+				// path back to the second
+				int[] slots = new int[k + n];
+				int length = 0;
+				for( int c=second; c != first; c=(c+1) % k ) {
+					slots[length++] = order[c];
+				}
+				slots[length++] = order[first];
+				int inner = length;
+				for( int v=parent[to]; v != from; v=parent[v] ) {
+					slots[length++] = slotOf[v];
+				}
+				//the path was collected from its end, so it is reversed to run from first on
+				for( int i=inner, j=length-1; i<j; i++, j-- ) {
+					int swap = slots[i];
+					slots[i] = slots[j];
+					slots[j] = swap;
+				}
+				int[] vertices = new int[length];
+				int[] offsets = new int[length+1];
+				int[] targets = new int[2*length];
+				for( int c=0; c<length; c++ ) {
+					vertices[c] = p1Ids[slots[c]];
+					offsets[c+1] = 2*(c+1);
+					targets[2*c] = (c+length-1) % length;
+					targets[2*c+1] = (c+1) % length;
+				}
+				return new Graph(p1.subgraph(vertices, offsets, targets));
+			}
+		}
+		
+		/**
+		 * Records the outcome of the child started last, cancelling the children after it
+		 * if it is not planar.
+		 */
+		void childDone(Object outcome) {
+			if( outcome instanceof Throwable ) failures[current] = (Throwable)outcome;
+			else planar[current] = (Boolean)outcome;
+			if( !planar[current] ) scope.fail(current);
+		}
+		
+		/**
+		 * Waits for the forked children and completes the call: the first child that is
+		 * nonplanar or failed decides, as it would sequentially, and otherwise steps 4 to 6
+		 * run.
+		 * 
+		 * @return the answer, or the Throwable the call failed with
+		 */
+		Object finish() {
+			try {
+				for( RecursiveAction task : forked ) {
+					task.join();
+				}
+				if( pieces != null ) PlanarityStats.end(PlanarityStats.RECURSION, start, depth);
+				for( int i=0; i<children.size(); i++ ) {
+					if( failures[i] != null ) return failures[i];
+					if( !planar[i] ) return Boolean.FALSE;
+				}
+				if( pieces == null ) return Boolean.TRUE;
+				
+				// 4. Compute the interlacement graph I of the pieces.
+				long start = PlanarityStats.start();
+				Graph interlacement = TestPlanarity.InterlacementGraph(pieces, cycle);
+				PlanarityStats.end(PlanarityStats.INTERLACEMENT, start, depth);
+				PlanarityStats.subgraphs(1);
+				
+				// 5. Test whether I is bipartite. If I is bipartite, return "planar".
+				start = PlanarityStats.start();
+				boolean bipartite = interlacement.isBipartite();
+				PlanarityStats.end(PlanarityStats.BIPARTITE, start, depth);
+				if( bipartite ) return Boolean.TRUE;
+				
+				// 6. Return "non-planar."
+				return Boolean.FALSE;
+			} catch (Throwable e) {
+				return e;
+			}
 		}
+	}
+	
+	/**
+	 * Cancellation state of the children of one call of isPlanar. A child is cancelled once
+	 * a child before it has failed, or once the call it belongs to is cancelled.
+	 * 
+	 * The children of a scope that runs them one after the other cannot be cancelled by a
+	 * sibling while they run, so they skip that scope and watch the scopes above it. Only
+	 * scopes that fork are ever walked by isCancelled(), however deep the recursion goes.
+	 */
+	private static class Cancellation {
 		
-		// 4. Compute the interlacement graph I of the pieces.
-		Graph interlacement = TestPlanarity.InterlacementGraph(pieces, cycle);
+		private final Cancellation parent;
+		//index of the enclosing child in the parent scope
+		private final int index;
+		//recursion depth of the call
+		final int depth;
+		//whether the children of this scope may run at the same time
+		private final boolean concurrent;
+		//lowest index of a failed child in this scope
+		private final AtomicInteger firstFailure = new AtomicInteger(Integer.MAX_VALUE);
 		
-		// 5. Test whether I is bipartite. If I is bipartite, return "planar".
-		if( interlacement.isBipartite() ) return true;
+		Cancellation(Cancellation parent, boolean concurrent) {
+			this(parent, -1, parent == null ? 0 : parent.depth, concurrent);
+		}
 		
-		// 6. Return "non-planar."
-		return false;
+		private Cancellation(Cancellation parent, int index, int depth, boolean concurrent) {
+			this.parent = parent;
+			this.index = index;
+			this.depth = depth;
+			this.concurrent = concurrent;
+		}
+		
+		/**
+		 * @return the cancellation of the recursive call for a piece, one level deeper
+		 */
+		Cancellation child(int piece) {
+			return child(piece, depth+1);
+		}
+		
+		/**
+		 * @return the cancellation of the call for a block, at the same depth
+		 */
+		Cancellation member(int block) {
+			return child(block, depth);
+		}
+		
+		private Cancellation child(int index, int depth) {
+			if( concurrent ) return new Cancellation(this, index, depth, false);
+			//the parent of a scope is the cancellation of its own call
+			if( parent == null ) return new Cancellation(null, -1, depth, false);
+			return new Cancellation(parent.parent, parent.index, depth, false);
+		}
+		
+		boolean isCancelled() {
+			for( Cancellation scope = this; scope.parent != null; scope = scope.parent ) {
+				if( scope.parent.firstFailure.get() < scope.index ) return true;
+			}
+			return false;
+		}
+		
+		boolean isCancelled(int child) {
+			return firstFailure.get() < child || isCancelled();
+		}
+		
+		void fail(int child) {
+			int first;
+			do {
+				first = firstFailure.get();
+			} while( child < first && !firstFailure.compareAndSet(first, child) );
+		}
 	}
 	
-}
\ No newline at end of file
+}
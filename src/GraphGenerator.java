@@ -0,0 +1,244 @@
+/**
+ * filename: GraphGenerator.java
+ */
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Generates graph families of a requested size for benchmarks and tests. All graphs are
+ * built directly as CompactGraphs with Integer vertex labels 0..n-1.
+ *
+ * 		grid			- a k x k grid graph with k = ceil(sqrt(n)), planar
+ * 		triangulation	- a random maximal planar graph (stacked triangulation), planar
+ * 		wheel			- a cycle of n-1 vertices plus a hub joined to all of them, planar
+ * 		k5				- K5 with its edges subdivided into paths, n vertices in total, nonplanar
+ * 		k33				- K3,3 with its edges subdivided into paths, n vertices in total, nonplanar
+ *
+ * Outside the families, random() gives sparse random graphs and nearPlanar() planar graphs
+ * with a few edges dropped and added, which are planar or barely not; TestPlanarity
+ * -crosscheck runs the engines on both.
+ *
+ * @author Trevor Mack		(tmm9274@rit.edu)
+ * @author David Sweeney	(dfs7079@rit.edu)
+ *
+ */
+public class GraphGenerator {
+
+	//names of all generated families
+	public static final String[] FAMILIES = { "grid", "triangulation", "wheel", "k5", "k33" };
+
+	private final Random random;
+	private int[] sources = new int[16];
+	private int[] destinations = new int[16];
+	private int edgeCount;
+
+	/**
+	 * @param seed	- seed for the random families
+	 */
+	public GraphGenerator(long seed) {
+		random = new Random(seed);
+	}
+
+	/**
+	 * Generates a graph of the given family.
+	 *
+	 * @param family	- one of FAMILIES
+	 * @param n			- the requested number of vertices
+	 * @return the generated graph
+	 */
+	public CompactGraph generate(String family, int n) {
+		if( family.equals("grid") ) return grid(n);
+		if( family.equals("triangulation") ) return triangulation(n);
+		if( family.equals("wheel") ) return wheel(n);
+		if( family.equals("k5") ) return subdivided(n, 5, new int[][] {
+			{0,1}, {0,2}, {0,3}, {0,4}, {1,2}, {1,3}, {1,4}, {2,3}, {2,4}, {3,4} });
+		if( family.equals("k33") ) return subdivided(n, 6, new int[][] {
+			{0,3}, {0,4}, {0,5}, {1,3}, {1,4}, {1,5}, {2,3}, {2,4}, {2,5} });
+		throw new IllegalArgumentException("unknown graph family " + family);
+	}
+
+	/**
+	 * @param n	- the requested number of vertices, rounded up to a square
+	 * @return a k x k grid graph
+	 */
+	public CompactGraph grid(int n) {
+		int k = (int)Math.ceil(Math.sqrt(n));
+		edgeCount = 0;
+		for( int i=0; i<k; i++ ) {
+			for( int j=0; j<k; j++ ) {
+				int v = i*k + j;
+				if( j+1 < k ) addEdge(v, v+1);
+				if( i+1 < k ) addEdge(v, v+k);
+			}
+		}
+		return build(k*k);
+	}
+
+	/**
+	 * Starts from a triangle and repeatedly places a new vertex inside a random face,
+	 * joining it to the three corners of the face. Every step keeps the graph maximal planar.
+	 *
+	 * @param n	- the number of vertices, at least 3
+	 * @return a random maximal planar graph with 3n-6 edges
+	 */
+	public CompactGraph triangulation(int n) {
+		n = Math.max(n, 3);
+		edgeCount = 0;
+		addEdge(0, 1); addEdge(1, 2); addEdge(2, 0);
+		//corners of each face, both sides of the starting triangle are faces
+		int[] faces = new int[3*(2*n)];
+		int faceCount = 2;
+		faces[0] = 0; faces[1] = 1; faces[2] = 2;
+		faces[3] = 0; faces[4] = 1; faces[5] = 2;
+		for( int v=3; v<n; v++ ) {
+			int f = random.nextInt(faceCount);
+			int a = faces[3*f], b = faces[3*f+1], c = faces[3*f+2];
+			addEdge(a, v); addEdge(b, v); addEdge(c, v);
+			faces[3*f+2] = v;
+			faces[3*faceCount] = b; faces[3*faceCount+1] = c; faces[3*faceCount+2] = v;
+			faceCount++;
+			faces[3*faceCount] = a; faces[3*faceCount+1] = c; faces[3*faceCount+2] = v;
+			faceCount++;
+		}
+		return shuffled(n);
+	}
+
+	/**
+	 * @param n	- the number of vertices, at least 4
+	 * @return a wheel with hub 0
+	 */
+	public CompactGraph wheel(int n) {
+		n = Math.max(n, 4);
+		edgeCount = 0;
+		for( int v=1; v<n; v++ ) {
+			addEdge(0, v);
+			addEdge(v, v == n-1 ? 1 : v+1);
+		}
+		return build(n);
+	}
+
+	/**
+	 * Replaces every edge of a small base graph with a path, spreading the remaining
+	 * n - branches vertices evenly over the paths.
+	 */
+	private CompactGraph subdivided(int n, int branches, int[][] baseEdges) {
+		n = Math.max(n, branches);
+		edgeCount = 0;
+		int inner = n - branches;
+		int next = branches;
+		for( int e=0; e<baseEdges.length; e++ ) {
+			int length = inner / baseEdges.length + (e < inner % baseEdges.length ? 1 : 0);
+			int previous = baseEdges[e][0];
+			for( int i=0; i<length; i++ ) {
+				addEdge(previous, next);
+				previous = next++;
+			}
+			addEdge(previous, baseEdges[e][1]);
+		}
+		return build(n);
+	}
+
+	/**
+	 * @param n	- the number of vertices
+	 * @param m	- the number of edges drawn; self loops and repeated edges are dropped
+	 * @return a random graph on n vertices
+	 */
+	public CompactGraph random(int n, int m) {
+		edgeCount = 0;
+		for( int e=0; e<m; e++ ) {
+			int v = random.nextInt(n), w = random.nextInt(n);
+			if( v != w ) addEdge(v, w);
+		}
+		return build(n);
+	}
+
+	/**
+	 * Generates a planar family, drops about a tenth of its edges and adds up to two random
+	 * edges, so the graph is planar or only a few edges away from it.
+	 *
+	 * @param family	- one of the planar FAMILIES
+	 * @param n			- the requested number of vertices
+	 * @return the changed graph
+	 */
+	public CompactGraph nearPlanar(String family, int n) {
+		CompactGraph planar = generate(family, n);
+		n = planar.size();
+		edgeCount = 0;
+		for( int v=0; v<n; v++ ) {
+			for( int i=planar.offset(v); i<planar.offset(v+1); i++ ) {
+				int w = planar.target(i);
+				if( w > v && random.nextInt(10) > 0 ) addEdge(v, w);
+			}
+		}
+		int added = random.nextInt(3);
+		for( int e=0; e<added; e++ ) {
+			int v = random.nextInt(n), w = random.nextInt(n);
+			if( v != w ) addEdge(v, w);
+		}
+		return shuffled(n);
+	}
+
+	private void addEdge(int v1, int v2) {
+		if( edgeCount == sources.length ) {
+			sources = Arrays.copyOf(sources, 2*edgeCount);
+			destinations = Arrays.copyOf(destinations, 2*edgeCount);
+		}
+		sources[edgeCount] = v1;
+		destinations[edgeCount] = v2;
+		edgeCount++;
+	}
+
+	private CompactGraph build(int n) {
+		Object[] labels = new Object[n];
+		for( int v=0; v<n; v++ ) {
+			labels[v] = Integer.valueOf(v);
+		}
+		return CompactGraph.fromEdges(labels, sources, destinations, edgeCount);
+	}
+
+	/**
+	 * Builds the graph with its edges in random order, so that searches do not follow
+	 * the construction order.
+	 */
+	private CompactGraph shuffled(int n) {
+		for( int e=edgeCount-1; e>0; e-- ) {
+			int r = random.nextInt(e+1);
+			int t = sources[e]; sources[e] = sources[r]; sources[r] = t;
+			t = destinations[e]; destinations[e] = destinations[r]; destinations[r] = t;
+		}
+		return build(n);
+	}
+
+	/**
+	 * Writes a graph in the edge list format read by Graph(File), one line per edge. A self
+	 * loop is listed twice in the row of its vertex and written once.
+	 *
+	 * @param graph	- the graph to write
+	 * @param file	- the output file
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void writeEdgeList(CompactGraph graph, File file) throws IOException {
+		BufferedWriter out = new BufferedWriter(new FileWriter(file), 1 << 16);
+		try {
+			for( int v=0; v<graph.size(); v++ ) {
+				boolean loop = false;
+				for( int i=graph.offset(v); i<graph.offset(v+1); i++ ) {
+					int w = graph.target(i);
+					if( w < v || (w == v && loop) ) continue;
+					if( w == v ) loop = true;
+					out.write(String.valueOf(graph.getLabel(v)));
+					out.write(' ');
+					out.write(String.valueOf(graph.getLabel(w)));
+					out.write('\n');
+				}
+			}
+		} finally {
+			out.close();
+		}
+	}
+}
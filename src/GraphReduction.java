@@ -0,0 +1,386 @@
+/**
+ * filename: GraphReduction.java
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Shrinks a graph to a kernel with the same planarity before it is tested. Vertices of
+ * degree at most 1 are removed, and each vertex of degree 2 is replaced by an edge between
+ * its two neighbors, merged with that edge if it already exists. Neither step changes
+ * whether the graph is planar, and the steps are repeated until every vertex left has
+ * degree 3 or more. Self loops are dropped. The reduction runs in O(n+m) expected time.
+ *
+ * Each step leaves a minor of the graph, and a graph without a K4 minor always has a vertex
+ * of degree at most 2, so the kernel is empty exactly when the graph has no K4 minor (see
+ * isComplete). Degrees never grow, so every vertex is reduced at most once.
+ *
+ * The steps are logged so that results for the kernel can be mapped back to the graph:
+ *
+ * 		getOriginal		- the vertex of the graph for a vertex of the kernel
+ * 		expand(List)	- the edges of the graph for edges of the kernel, each kernel edge
+ * 						  becoming the path of the graph it stands for, as needed to turn a
+ * 						  Kuratowski subgraph of the kernel into one of the graph
+ * 		expand(PlanarEmbedding)	- an embedding of the graph from one of the kernel, undoing
+ * 						  the steps in reverse: a removed vertex of degree 1 is put back into
+ * 						  a corner of its neighbor, a replaced vertex of degree 2 subdivides
+ * 						  its edge again, and one whose edge was merged is put back next to
+ * 						  that edge, in the face on one of its sides
+ *
+ * @author Trevor Mack		(tmm9274@rit.edu)
+ * @author David Sweeney	(dfs7079@rit.edu)
+ *
+ */
+public class GraphReduction {
+
+	//kinds of reduction steps
+	private static final int ISOLATED = 0, PENDANT = 1, SERIES = 2, PARALLEL = 3;
+
+	private final CompactGraph graph;
+	//live edges between unreduced vertices, keyed by key(u, v)
+	private final EdgeIndex edges;
+	//the vertex each edge added by a SERIES step stands for, keyed by key(a, b)
+	private final EdgeIndex middle;
+	//edges added by SERIES steps, as linked lists per vertex
+	private final int[] addedHead;
+	private final int[] addedNext;
+	private final int[] addedTarget;
+	private final boolean[] reduced;
+	//the steps in order: kind, the reduced vertex and its neighbors (-1 if none)
+	private final int[] stepKind;
+	private final int[] stepVertex;
+	private final int[] stepFirst;
+	private final int[] stepSecond;
+	private int steps;
+	//built on first use
+	private CompactGraph kernel;
+	private int[] original;
+
+	/**
+	 * Reduces a graph. The graph is not modified.
+	 *
+	 * @param graph	- the graph to reduce
+	 */
+	public GraphReduction(CompactGraph graph) {
+		this.graph = graph;
+		int n = graph.size();
+		int[] degree = new int[n];
+		edges = new EdgeIndex(graph.getEdgeCount());
+		for( int v=0; v<n; v++ ) {
+			for( int i=graph.offset(v); i<graph.offset(v+1); i++ ) {
+				int w = graph.target(i);
+				if( w <= v || edges.containsKey(EdgeIndex.key(v, w)) ) continue;
+				edges.put(EdgeIndex.key(v, w), 1);
+				degree[v]++;
+				degree[w]++;
+			}
+		}
+		middle = new EdgeIndex();
+		addedHead = new int[n];
+		Arrays.fill(addedHead, -1);
+		addedNext = new int[2*n];
+		addedTarget = new int[2*n];
+		int added = 0;
+		reduced = new boolean[n];
+		stepKind = new int[n];
+		stepVertex = new int[n];
+		stepFirst = new int[n];
+		stepSecond = new int[n];
+
+		//every vertex is pushed once, at the start or when its degree drops from 3 to 2
+		int[] stack = new int[n];
+		int top = 0;
+		for( int v=0; v<n; v++ ) {
+			if( degree[v] <= 2 ) stack[top++] = v;
+		}
+		int[] neighbors = new int[2];
+		while( top > 0 ) {
+			int v = stack[--top];
+			reduced[v] = true;
+			//collect the live neighbors of v
+			int count = 0;
+			for( int i=graph.offset(v); i<graph.offset(v+1) && count < degree[v]; i++ ) {
+				count = addLive(graph.target(i), v, neighbors, count);
+			}
+			for( int a=addedHead[v]; a != -1 && count < degree[v]; a=addedNext[a] ) {
+				count = addLive(addedTarget[a], v, neighbors, count);
+			}
+			for( int k=0; k<count; k++ ) {
+				edges.remove(key(v, neighbors[k]));
+			}
+			stepVertex[steps] = v;
+			stepFirst[steps] = count > 0 ? neighbors[0] : -1;
+			stepSecond[steps] = count > 1 ? neighbors[1] : -1;
+			if( count == 0 ) {
+				stepKind[steps++] = ISOLATED;
+			}else if( count == 1 ) {
+				stepKind[steps++] = PENDANT;
+				if( --degree[neighbors[0]] == 2 ) stack[top++] = neighbors[0];
+			}else {
+				int a = neighbors[0], b = neighbors[1];
+				long ab = key(a, b);
+				if( edges.containsKey(ab) ) {
+					stepKind[steps++] = PARALLEL;
+					if( --degree[a] == 2 ) stack[top++] = a;
+					if( --degree[b] == 2 ) stack[top++] = b;
+				}else {
+					stepKind[steps++] = SERIES;
+					edges.put(ab, 1);
+					middle.put(ab, v);
+					addedTarget[added] = b;
+					addedNext[added] = addedHead[a];
+					addedHead[a] = added++;
+					addedTarget[added] = a;
+					addedNext[added] = addedHead[b];
+					addedHead[b] = added++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds a neighbor of v to the collected ones if its edge is live. An edge is only
+	 * removed when one of its endpoints is reduced, so a listed neighbor that was not
+	 * reduced is still connected to v.
+	 */
+	private int addLive(int w, int v, int[] neighbors, int count) {
+		if( w == v || reduced[w] ) return count;
+		if( count == 1 && neighbors[0] == w ) return count;
+		neighbors[count] = w;
+		return count+1;
+	}
+
+	private static long key(int u, int v) {
+		return u < v ? EdgeIndex.key(u, v) : EdgeIndex.key(v, u);
+	}
+
+	/**
+	 * @return the reduced graph
+	 */
+	public CompactGraph getGraph() {
+		return graph;
+	}
+
+	/**
+	 * @return true if every vertex was reduced, so the kernel is empty and the graph has no
+	 * 		   K4 minor
+	 */
+	public boolean isComplete() {
+		return steps == graph.size();
+	}
+
+	/**
+	 * Builds the kernel: the vertices that were not reduced, labelled as in the graph, and
+	 * the live edges between them.
+	 *
+	 * @return the kernel, in which every vertex has degree 3 or more
+	 */
+	public synchronized CompactGraph getKernel() {
+		if( kernel != null ) return kernel;
+		int n = graph.size();
+		int[] id = new int[n];
+		original = new int[n - steps];
+		Object[] labels = new Object[n - steps];
+		int k = 0;
+		for( int v=0; v<n; v++ ) {
+			if( reduced[v] ) continue;
+			id[v] = k;
+			original[k] = v;
+			labels[k++] = graph.getLabel(v);
+		}
+		int[] sources = new int[edges.size()], destinations = new int[edges.size()];
+		int m = 0;
+		for( int v=0; v<n; v++ ) {
+			if( reduced[v] ) continue;
+			for( int i=graph.offset(v); i<graph.offset(v+1); i++ ) {
+				m = addKernelEdge(v, graph.target(i), id, sources, destinations, m);
+			}
+			for( int a=addedHead[v]; a != -1; a=addedNext[a] ) {
+				m = addKernelEdge(v, addedTarget[a], id, sources, destinations, m);
+			}
+		}
+		kernel = CompactGraph.fromEdges(labels, sources, destinations, m);
+		return kernel;
+	}
+
+	private int addKernelEdge(int v, int w, int[] id, int[] sources, int[] destinations, int m) {
+		//each live edge once, from its smaller endpoint
+		if( w <= v || reduced[w] ) return m;
+		sources[m] = id[v];
+		destinations[m] = id[w];
+		return m+1;
+	}
+
+	/**
+	 * @param v	- a vertex id of the kernel
+	 * @return the id of the same vertex in the graph
+	 */
+	public int getOriginal(int v) {
+		getKernel();
+		return original[v];
+	}
+
+	/**
+	 * Maps edges of the kernel to the graph. Each kernel edge is replaced by the path of
+	 * the graph it stands for, found by splitting edges added for a vertex of degree 2 back
+	 * into the two edges through that vertex.
+	 *
+	 * @param kernelEdges	- edges between vertex labels of the kernel
+	 * @return the edges of the paths in the graph, between vertex labels of the graph
+	 */
+	public List<Edge> expand(List<Edge> kernelEdges) {
+		List<Edge> expanded = new ArrayList<Edge>(kernelEdges.size());
+		int[] stack = new int[16];
+		for( Edge edge : kernelEdges ) {
+			int top = 0;
+			stack[top++] = graph.indexOf(edge.v1);
+			stack[top++] = graph.indexOf(edge.v2);
+			while( top > 0 ) {
+				int b = stack[--top], a = stack[--top];
+				//an edge of the graph is never added by a step, since it is live until one of
+				//its endpoints is reduced, and an added edge a-b keeps its entry while a and b
+				//are not reduced
+				int v = middle.get(key(a, b));
+				if( v == -1 ) {
+					expanded.add(new Edge(graph.getLabel(a), graph.getLabel(b)));
+					continue;
+				}
+				if( top+4 > stack.length ) stack = Arrays.copyOf(stack, 2*stack.length);
+				stack[top++] = v;
+				stack[top++] = b;
+				stack[top++] = a;
+				stack[top++] = v;
+			}
+		}
+		return expanded;
+	}
+
+	/**
+	 * Maps a planar embedding of the kernel to one of the graph by undoing the reduction
+	 * steps in reverse order on a mutable rotation system. Half edges of the rotation
+	 * system come in pairs h and h^1.
+	 *
+	 * @param embedding	- a planar embedding of getKernel()
+	 * @return a planar embedding of the graph
+	 */
+	public PlanarEmbedding expand(PlanarEmbedding embedding) {
+		CompactGraph core = getKernel();
+		int n = graph.size();
+		int capacity = core.offset(core.size()) + 4*steps;
+		int[] head = new int[capacity];
+		int[] clockwise = new int[capacity];
+		int[] counterClockwise = new int[capacity];
+		//some half edge leaving each vertex, or -1
+		int[] any = new int[n];
+		Arrays.fill(any, -1);
+		//half edge of each directed edge, keyed by EdgeIndex.key(u, v)
+		EdgeIndex half = new EdgeIndex(capacity);
+
+		//half edges of the kernel edges, numbered from the kernel rotation
+		int[] halfOf = new int[core.offset(core.size())];
+		int count = 0;
+		for( int i=0; i<halfOf.length; i++ ) {
+			if( i < core.twin(i) ) {
+				halfOf[i] = count;
+				halfOf[core.twin(i)] = count+1;
+				count += 2;
+			}
+		}
+		for( int v=0; v<core.size(); v++ ) {
+			for( int i=core.offset(v); i<core.offset(v+1); i++ ) {
+				int h = halfOf[i];
+				head[h] = original[core.target(i)];
+				clockwise[h] = halfOf[embedding.clockwise(i)];
+				counterClockwise[clockwise[h]] = h;
+				any[original[v]] = h;
+				half.put(EdgeIndex.key(original[v], head[h]), h);
+			}
+		}
+
+		for( int s=steps-1; s>=0; s-- ) {
+			int v = stepVertex[s], a = stepFirst[s], b = stepSecond[s];
+			if( stepKind[s] == ISOLATED ) continue;
+			int p = count, q = count+2;
+			count += stepKind[s] == PENDANT ? 2 : 4;
+			head[p] = v;
+			head[p^1] = a;
+			half.put(EdgeIndex.key(a, v), p);
+			half.put(EdgeIndex.key(v, a), p^1);
+			if( stepKind[s] == PENDANT ) {
+				//into any corner of a
+				if( any[a] == -1 ) {
+					link(p, p, clockwise, counterClockwise);
+					any[a] = p;
+				}else {
+					insertAfter(any[a], p, clockwise, counterClockwise);
+				}
+				link(p^1, p^1, clockwise, counterClockwise);
+				any[v] = p^1;
+				continue;
+			}
+			head[q] = v;
+			head[q^1] = b;
+			half.put(EdgeIndex.key(b, v), q);
+			half.put(EdgeIndex.key(v, b), q^1);
+			int h = half.get(EdgeIndex.key(a, b)), g = h^1;
+			if( stepKind[s] == SERIES ) {
+				//a-v-b takes the place of the edge a-b
+				replace(h, p, clockwise, counterClockwise);
+				replace(g, q, clockwise, counterClockwise);
+				if( any[a] == h ) any[a] = p;
+				if( any[b] == g ) any[b] = q;
+				half.remove(EdgeIndex.key(a, b));
+				half.remove(EdgeIndex.key(b, a));
+			}else {
+				//a-v-b closes a triangle with a-b, in the face after a-b at a
+				insertAfter(h, p, clockwise, counterClockwise);
+				insertAfter(counterClockwise[g], q, clockwise, counterClockwise);
+			}
+			link(p^1, q^1, clockwise, counterClockwise);
+			link(q^1, p^1, clockwise, counterClockwise);
+			any[v] = p^1;
+		}
+
+		//the rotation, by position in the target array of the graph
+		EdgeIndex position = new EdgeIndex(graph.offset(n));
+		for( int u=0; u<n; u++ ) {
+			for( int i=graph.offset(u); i<graph.offset(u+1); i++ ) {
+				position.put(EdgeIndex.key(u, graph.target(i)), i);
+			}
+		}
+		int[] rotation = new int[graph.offset(n)];
+		for( int u=0; u<n; u++ ) {
+			for( int i=graph.offset(u); i<graph.offset(u+1); i++ ) {
+				int w = graph.target(i);
+				if( w == u ) {
+					rotation[i] = -1;
+				}else {
+					int next = head[clockwise[half.get(EdgeIndex.key(u, w))]];
+					rotation[i] = position.get(EdgeIndex.key(u, next));
+				}
+			}
+		}
+		return new PlanarEmbedding(graph, rotation);
+	}
+
+	private static void link(int h, int next, int[] clockwise, int[] counterClockwise) {
+		clockwise[h] = next;
+		counterClockwise[next] = h;
+	}
+
+	private static void insertAfter(int h, int added, int[] clockwise, int[] counterClockwise) {
+		link(added, clockwise[h], clockwise, counterClockwise);
+		link(h, added, clockwise, counterClockwise);
+	}
+
+	private static void replace(int h, int by, int[] clockwise, int[] counterClockwise) {
+		if( clockwise[h] == h ) {
+			link(by, by, clockwise, counterClockwise);
+			return;
+		}
+		link(counterClockwise[h], by, clockwise, counterClockwise);
+		link(by, clockwise[h], clockwise, counterClockwise);
+	}
+}
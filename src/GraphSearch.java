@@ -0,0 +1,252 @@
+/**
+ * filename: GraphSearch.java
+ */
+
+import java.util.Arrays;
+
+/**
+ * A depth first search over the vertex ids of a CompactGraph, on an explicit stack that
+ * holds each vertex of the search path and the position of its next neighbor. The
+ * traversals of the package (the 2-coloring of isBipartite, simpleCycle and the interval
+ * search of TestPlanarity) all run on it:
+ *
+ * 		begin(graph)	- starts a search, with every vertex unmarked
+ * 		push(v, color)	- marks v with a color and makes it the top of the stack
+ * 		nextArc()		- the position in the target array of the next neighbor of the
+ * 						  top vertex, or -1 once all are taken
+ * 		pop()			- removes the top vertex, which stays marked
+ *
+ * Marks are kept as the number of the search that set them, so begin() clears them in
+ * constant time, and the arrays only grow. A search reused for the next call, as
+ * forThread() reuses one per thread, allocates nothing once it has met the largest graph.
+ * A GraphSearch is not thread safe.
+ *
+ * @author Trevor Mack		(tmm9274@rit.edu)
+ * @author David Sweeney	(dfs7079@rit.edu)
+ *
+ */
+public class GraphSearch {
+
+	private static final ThreadLocal<GraphSearch> SEARCHES = new ThreadLocal<GraphSearch>() {
+		protected GraphSearch initialValue() {
+			return new GraphSearch();
+		}
+	};
+
+	private CompactGraph graph;
+	//the search that marked each vertex, and the color it was given then
+	private int[] mark = new int[0];
+	private int[] color = new int[0];
+	private int search;
+	//vertices of the search path, and the position of the next neighbor of each
+	private int[] stack = new int[0];
+	private int[] next = new int[0];
+	private int top;
+
+	/**
+	 * @return the search of the calling thread, reused by every traversal it runs
+	 */
+	public static GraphSearch forThread() {
+		return SEARCHES.get();
+	}
+
+	/**
+	 * Starts a new search of graph, with every vertex unmarked and an empty stack.
+	 *
+	 * @param graph	- the graph to search
+	 */
+	public void begin(CompactGraph graph) {
+		this.graph = graph;
+		int n = graph.size();
+		if( mark.length < n ) {
+			int capacity = Math.max(n, 2*mark.length);
+			mark = new int[capacity];
+			color = new int[capacity];
+			stack = new int[capacity];
+			next = new int[capacity];
+			search = 0;
+		}
+		if( ++search == Integer.MAX_VALUE ) {
+			Arrays.fill(mark, 0);
+			search = 1;
+		}
+		top = 0;
+	}
+
+	/**
+	 * @param v	- a vertex id
+	 * @return true if v was pushed since begin()
+	 */
+	public boolean isMarked(int v) {
+		return mark[v] == search;
+	}
+
+	/**
+	 * Marks a vertex without pushing it.
+	 *
+	 * @param v	- a vertex id
+	 */
+	public void mark(int v) {
+		mark[v] = search;
+	}
+
+	/**
+	 * @param v	- a marked vertex id
+	 * @return the color v was pushed with
+	 */
+	public int color(int v) {
+		return color[v];
+	}
+
+	/**
+	 * Marks a vertex and pushes it. Every vertex is pushed at most once per search, so the
+	 * stack never holds more than the graph has vertices.
+	 *
+	 * @param v		- an unmarked vertex id
+	 * @param c		- its color
+	 */
+	public void push(int v, int c) {
+		mark[v] = search;
+		color[v] = c;
+		stack[top] = v;
+		next[top++] = graph.offset(v);
+	}
+
+	/**
+	 * Removes the top vertex from the stack.
+	 *
+	 * @return the vertex removed
+	 */
+	public int pop() {
+		return stack[--top];
+	}
+
+	/**
+	 * @return the number of vertices on the stack
+	 */
+	public int depth() {
+		return top;
+	}
+
+	/**
+	 * @param d	- a position on the stack, 0 for the bottom
+	 * @return the vertex at position d
+	 */
+	public int vertex(int d) {
+		return stack[d];
+	}
+
+	/**
+	 * @return the vertex on top of the stack
+	 */
+	public int peek() {
+		return stack[top-1];
+	}
+
+	/**
+	 * Takes the next neighbor of the top vertex.
+	 *
+	 * @return its position in the target array, or -1 if every neighbor was taken
+	 */
+	public int nextArc() {
+		int v = stack[top-1];
+		return next[top-1] < graph.offset(v+1) ? next[top-1]++ : -1;
+	}
+
+	/**
+	 * @return the vertices on the stack, bottom first
+	 */
+	public int[] path() {
+		return Arrays.copyOf(stack, top);
+	}
+
+	/**
+	 * Tests whether a graph has a 2-coloring. The vertices of every component are pushed
+	 * with the color opposite to the vertex they were reached from, and a vertex popped has
+	 * all its neighbors checked at once, as a coloring needs no search order.
+	 *
+	 * @param graph	- the graph to color
+	 * @return true if no edge joins two vertices of the same color
+	 */
+	public boolean isBipartite(CompactGraph graph) {
+		begin(graph);
+		for( int s=0; s<graph.size(); s++ ) {
+			if( isMarked(s) ) continue;
+			push(s, 0);
+			while( top > 0 ) {
+				int u = stack[--top];
+				int c = color[u];
+				for( int i=graph.offset(u), end=graph.offset(u+1); i<end; i++ ) {
+					int w = graph.target(i);
+					if( mark[w] != search ) {
+						mark[w] = search;
+						color[w] = 1 - c;
+						stack[top++] = w;
+					}else if( color[w] == c ) {
+						return false;
+					}
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Searches from vertex 0 until the vertex on top of the stack has vertex 0 as a marked
+	 * neighbor before an unmarked one.
+	 *
+	 * @param graph	- the graph to search
+	 * @return the vertex ids of the stack at that point, or null if it never happens
+	 */
+	public int[] simpleCycle(CompactGraph graph) {
+		if( graph.size() == 0 ) return null;
+		begin(graph);
+		push(0, 0);
+		while( top > 0 ) {
+			int i = nextArc();
+			if( i < 0 ) {
+				pop();
+				continue;
+			}
+			int w = graph.target(i);
+			if( !isMarked(w) ) push(w, 0);
+			else if( w == stack[0] ) return path();
+		}
+		return null;
+	}
+
+	/**
+	 * Searches from first for a path to goal that avoids the marked vertices, keeping the
+	 * marks of earlier searches since begin(). Once goal is found, every vertex of the path
+	 * from the third on is appended to path, starting with goal and going back towards
+	 * first.
+	 *
+	 * @param first		- the vertex to start from
+	 * @param goal		- the vertex to find
+	 * @param path		- the path found so far
+	 * @param length	- the number of vertices in path
+	 * @return the new length of path if goal was found, otherwise -1
+	 */
+	public int pathTo(int first, int goal, int[] path, int length) {
+		top = 0;
+		push(first, 0);
+		while( top > 0 ) {
+			int i = nextArc();
+			if( i < 0 ) {
+				pop();
+				continue;
+			}
+			int w = graph.target(i);
+			if( w == goal ) {
+				if( top > 1 ) path[length++] = goal;
+				for( int d=top-1; d>=2; d-- ) {
+					path[length++] = stack[d];
+				}
+				top = 0;
+				return length;
+			}
+			if( !isMarked(w) ) push(w, 0);
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,485 @@
+/**
+ * filename: IncrementalPlanarGraph.java
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * A graph that stays planar while it is built edge by edge. tryAddEdge(v1, v2) adds an edge
+ * only if the graph remains planar, and reports whether it did.
+ *
+ * The graph keeps a planar embedding as a rotation system over half edges (half edge h and
+ * its twin h^1 form one edge) and the face of every half edge, with faces held in a
+ * union-find so that joining two faces is cheap. An edge is accepted without a planarity
+ * test when
+ *
+ * 		- its endpoints lie in different connected components; the edge is drawn inside a
+ * 		  face of each component, joining the two faces, or
+ * 		- its endpoints lie on a common face; the edge is drawn across that face, splitting
+ * 		  it, and the smaller of the two new faces is relabelled, walking both sides in turn.
+ *
+ * Both walk the rotations of v1 and v2, so they cost O(deg(v1) + deg(v2)) rather than a
+ * constant, plus the relabelling, which is amortized O(log m) per split. Around a vertex of
+ * high degree this adds up: joining a hub to the n vertices of a cycle one edge at a time
+ * costs O(n^2) in all. An edge that would break the bound m <= 3n-6 of its component is
+ * rejected in O(1).
+ * Otherwise the current embedding cannot take the edge and the whole graph is tested with
+ * the LeftRightTester in O(n+m); if the graph stays planar the edge is accepted and the
+ * embedding is rebuilt from the test, so later edges see the new embedding.
+ *
+ * tryAddEdges(List) inserts a batch with the same result as adding its edges one by one:
+ * a batch that keeps the graph planar is accepted with a single test, otherwise it is split
+ * in halves that are inserted in order.
+ *
+ * @author Trevor Mack		(tmm9274@rit.edu)
+ * @author David Sweeney	(dfs7079@rit.edu)
+ *
+ */
+public class IncrementalPlanarGraph {
+
+	//batches up to this size are inserted edge by edge
+	private static final int BATCH_CUTOFF = 16;
+	//outcomes of tryEmbed
+	private static final int REJECTED = 0, ACCEPTED = 1, UNDECIDED = 2;
+
+	private final LeftRightTester tester = new LeftRightTester();
+
+	//vertex objects, indexed by vertex id
+	private final List<Object> vertices = new ArrayList<Object>();
+	private final HashMap<Object, Integer> ids = new HashMap<Object, Integer>();
+	//every edge once, self loops included, in insertion order
+	private int[] sources = new int[16];
+	private int[] destinations = new int[16];
+	private int edgeCount;
+	private final HashSet<Long> edgeKeys = new HashSet<Long>();
+
+	//connected components: union-find over vertex ids, with vertex and edge counts per root
+	private int[] component = new int[16];
+	private int[] componentVertices = new int[16];
+	private int[] componentEdges = new int[16];
+
+	//the rotation system: head vertex of each half edge, its clockwise and counterclockwise
+	//neighbors around its tail, and one outgoing half edge of each vertex (-1 if isolated)
+	private int[] head = new int[32];
+	private int[] clockwise = new int[32];
+	private int[] counterClockwise = new int[32];
+	private int[] anyHalfEdge = new int[16];
+	private int halfEdges;
+
+	//faces: union-find node of each half edge, and the union-find over face nodes
+	private int[] faceNode = new int[32];
+	private int[] face = new int[32];
+	private int faceNodes;
+	//scratch marks for finding a common face
+	private int[] faceMark = new int[32];
+	private int mark;
+
+	//how edges were decided
+	private int fastAccepted, testedAccepted, rejected;
+
+	/**
+	 * Adds a vertex.
+	 *
+	 * @param vertex	- the vertex object
+	 * @return true		- if the vertex was added by this call
+	 */
+	public boolean addVertex(Object vertex) {
+		if( ids.containsKey(vertex) ) return false;
+		int v = vertices.size();
+		if( v == component.length ) {
+			component = Arrays.copyOf(component, 2*v);
+			componentVertices = Arrays.copyOf(componentVertices, 2*v);
+			componentEdges = Arrays.copyOf(componentEdges, 2*v);
+			anyHalfEdge = Arrays.copyOf(anyHalfEdge, 2*v);
+		}
+		vertices.add(vertex);
+		ids.put(vertex, v);
+		component[v] = v;
+		componentVertices[v] = 1;
+		componentEdges[v] = 0;
+		anyHalfEdge[v] = -1;
+		return true;
+	}
+
+	/**
+	 * @return the number of vertices
+	 */
+	public int size() {
+		return vertices.size();
+	}
+
+	/**
+	 * @return the number of edges, self loops included
+	 */
+	public int getEdgeCount() {
+		return edgeCount;
+	}
+
+	/**
+	 * @param v1	- a vertex object
+	 * @param v2	- another vertex object
+	 * @return true	- if v1 and v2 are joined by an edge
+	 */
+	public boolean isEdge(Object v1, Object v2) {
+		Integer u = ids.get(v1), v = ids.get(v2);
+		return u != null && v != null && edgeKeys.contains(key(u, v));
+	}
+
+	/**
+	 * Adds an edge, and its vertices if not already present, if the graph stays planar.
+	 *
+	 * @param v1	- the beginning vertex object of the edge
+	 * @param v2	- the ending vertex object of the edge
+	 * @return true	- if the graph with the edge is planar; the edge is then in the graph
+	 * 		   false	- if the edge would make the graph nonplanar; the graph is unchanged
+	 */
+	public boolean tryAddEdge(Object v1, Object v2) {
+		addVertex(v1); addVertex(v2);
+		int u = ids.get(v1), v = ids.get(v2);
+		int decided = tryEmbed(u, v);
+		if( decided != UNDECIDED ) return decided == ACCEPTED;
+		//the embedding has no room for the edge, but another embedding may have
+		int cu = findComponent(u);
+		addToEdgeList(u, v);
+		PlanarEmbedding embedding = tester.embed(compact());
+		if( embedding == null ) {
+			edgeCount--;
+			edgeKeys.remove(key(u, v));
+			rejected++;
+			return false;
+		}
+		componentEdges[cu]++;
+		rebuild(embedding);
+		testedAccepted++;
+		return true;
+	}
+
+	/**
+	 * Decides an edge without a planarity test, if the current embedding allows it.
+	 *
+	 * @return ACCEPTED if the edge is in the graph, REJECTED if it cannot be, or UNDECIDED
+	 * 		   if the embedding has no face for it
+	 */
+	private int tryEmbed(int u, int v) {
+		if( edgeKeys.contains(key(u, v)) ) return ACCEPTED;
+		if( u == v ) {
+			//self loops never affect planarity and are not embedded
+			addToEdgeList(u, v);
+			fastAccepted++;
+			return ACCEPTED;
+		}
+		int cu = findComponent(u), cv = findComponent(v);
+		if( cu != cv ) {
+			joinComponents(u, v);
+			addToEdgeList(u, v);
+			fastAccepted++;
+			return ACCEPTED;
+		}
+		if( componentVertices[cu] >= 3 && componentEdges[cu] + 1 > 3*componentVertices[cu] - 6 ) {
+			rejected++;
+			return REJECTED;
+		}
+		if( splitCommonFace(u, v) ) {
+			componentEdges[cu]++;
+			addToEdgeList(u, v);
+			fastAccepted++;
+			return ACCEPTED;
+		}
+		return UNDECIDED;
+	}
+
+	/**
+	 * Adds a batch of edges in order, each one only if the graph stays planar. The result is
+	 * the same as calling tryAddEdge for every edge in turn.
+	 *
+	 * @param edges	- the edges to add
+	 * @return for each edge, true if it is in the graph after the call
+	 */
+	public boolean[] tryAddEdges(List<Edge> edges) {
+		boolean[] accepted = new boolean[edges.size()];
+		tryAddEdges(edges, 0, edges.size(), accepted);
+		return accepted;
+	}
+
+	private void tryAddEdges(List<Edge> edges, int from, int to, boolean[] accepted) {
+		if( to - from <= BATCH_CUTOFF ) {
+			for( int e=from; e<to; e++ ) {
+				accepted[e] = tryAddEdge(edges.get(e).v1, edges.get(e).v2);
+			}
+			return;
+		}
+		//test the graph with the whole batch, and keep it if it is planar
+		int first = edgeCount;
+		for( int e=from; e<to; e++ ) {
+			Edge edge = edges.get(e);
+			addVertex(edge.v1); addVertex(edge.v2);
+			int u = ids.get(edge.v1), v = ids.get(edge.v2);
+			if( !edgeKeys.contains(key(u, v)) ) addToEdgeList(u, v);
+		}
+		int added = edgeCount - first;
+		PlanarEmbedding embedding = added == 0 ? null : tester.embed(compact());
+		if( added == 0 || embedding != null ) {
+			for( int k=0; k<added; k++ ) {
+				int u = sources[first+k], v = destinations[first+k];
+				if( u == v ) continue;
+				if( findComponent(u) != findComponent(v) ) {
+					unionComponents(u, v);
+				}
+				componentEdges[findComponent(u)]++;
+			}
+			if( added > 0 ) rebuild(embedding);
+			testedAccepted += added;
+			Arrays.fill(accepted, from, to, true);
+			return;
+		}
+		for( int k=0; k<added; k++ ) {
+			edgeKeys.remove(key(sources[first+k], destinations[first+k]));
+		}
+		edgeCount = first;
+		int mid = (from + to) >>> 1;
+		tryAddEdges(edges, from, mid, accepted);
+		tryAddEdges(edges, mid, to, accepted);
+	}
+
+	/**
+	 * @return the number of edges accepted without a planarity test, accepted after a test,
+	 * 		   and rejected, in that order
+	 */
+	public int[] getStatistics() {
+		return new int[] { fastAccepted, testedAccepted, rejected };
+	}
+
+	/**
+	 * @return the current graph as a Graph
+	 */
+	public Graph toGraph() {
+		return new Graph(compact());
+	}
+
+	/**
+	 * Greedily builds a maximal planar subgraph. Edges that fit the current embedding are
+	 * added in a first pass; the others are then added in order as a batch, each one unless
+	 * it would make the subgraph nonplanar. Every vertex of graph is kept.
+	 *
+	 * @param graph	- the graph
+	 * @return a planar subgraph to which no further edge of graph can be added
+	 */
+	public static Graph maximalPlanarSubgraph(Graph graph) {
+		CompactGraph compact = graph.compact();
+		IncrementalPlanarGraph subgraph = new IncrementalPlanarGraph();
+		for( int v=0; v<compact.size(); v++ ) {
+			subgraph.addVertex(compact.getLabel(v));
+		}
+		//vertex ids of the subgraph follow those of compact
+		List<Edge> deferred = new ArrayList<Edge>();
+		for( int v=0; v<compact.size(); v++ ) {
+			for( int i=compact.offset(v); i<compact.offset(v+1); i++ ) {
+				if( i < compact.twin(i) && subgraph.tryEmbed(v, compact.target(i)) == UNDECIDED )
+					deferred.add(new Edge(compact.getLabel(v), compact.getLabel(compact.target(i))));
+			}
+		}
+		subgraph.tryAddEdges(deferred);
+		return subgraph.toGraph();
+	}
+
+	private static Long key(int u, int v) {
+		return Long.valueOf(((long)Math.min(u, v) << 32) | Math.max(u, v));
+	}
+
+	private void addToEdgeList(int u, int v) {
+		if( edgeCount == sources.length ) {
+			sources = Arrays.copyOf(sources, 2*edgeCount);
+			destinations = Arrays.copyOf(destinations, 2*edgeCount);
+		}
+		sources[edgeCount] = u;
+		destinations[edgeCount++] = v;
+		edgeKeys.add(key(u, v));
+	}
+
+	private CompactGraph compact() {
+		return CompactGraph.fromEdges(vertices.toArray(), sources, destinations, edgeCount);
+	}
+
+	private int findComponent(int v) {
+		while( component[v] != v ) {
+			component[v] = component[component[v]];
+			v = component[v];
+		}
+		return v;
+	}
+
+	private void unionComponents(int u, int v) {
+		int cu = findComponent(u), cv = findComponent(v);
+		if( componentVertices[cu] < componentVertices[cv] ) { int t = cu; cu = cv; cv = t; }
+		component[cv] = cu;
+		componentVertices[cu] += componentVertices[cv];
+		componentEdges[cu] += componentEdges[cv];
+	}
+
+	private int findFace(int node) {
+		while( face[node] != node ) {
+			face[node] = face[face[node]];
+			node = face[node];
+		}
+		return node;
+	}
+
+	private int newFace() {
+		if( faceNodes == face.length ) {
+			face = Arrays.copyOf(face, 2*faceNodes);
+			faceMark = Arrays.copyOf(faceMark, 2*faceNodes);
+		}
+		face[faceNodes] = faceNodes;
+		faceMark[faceNodes] = 0;
+		return faceNodes++;
+	}
+
+	/**
+	 * Creates the two half edges u->v and v->u, unlinked.
+	 *
+	 * @return the half edge u->v, its twin is the returned value + 1
+	 */
+	private int newEdge(int u, int v) {
+		if( halfEdges+2 > head.length ) {
+			int capacity = 2*head.length;
+			head = Arrays.copyOf(head, capacity);
+			clockwise = Arrays.copyOf(clockwise, capacity);
+			counterClockwise = Arrays.copyOf(counterClockwise, capacity);
+			faceNode = Arrays.copyOf(faceNode, capacity);
+		}
+		head[halfEdges] = v;
+		head[halfEdges+1] = u;
+		halfEdges += 2;
+		return halfEdges-2;
+	}
+
+	/**
+	 * Places half edge h leaving v directly counterclockwise of half edge before, in the
+	 * corner of the face of before, or alone if v has no half edges.
+	 */
+	private void insertBefore(int v, int h, int before) {
+		if( before == -1 ) {
+			clockwise[h] = counterClockwise[h] = h;
+			anyHalfEdge[v] = h;
+			return;
+		}
+		int after = counterClockwise[before];
+		clockwise[after] = h;
+		counterClockwise[h] = after;
+		clockwise[h] = before;
+		counterClockwise[before] = h;
+	}
+
+	/**
+	 * Draws an edge between two components inside one face of each, joining the faces.
+	 */
+	private void joinComponents(int u, int v) {
+		int a = anyHalfEdge[u], b = anyHalfEdge[v];
+		int x = newEdge(u, v);
+		insertBefore(u, x, a);
+		insertBefore(v, x^1, b);
+		int node;
+		if( a == -1 && b == -1 ) {
+			node = newFace();
+		}else if( a == -1 || b == -1 ) {
+			node = findFace(faceNode[a == -1 ? b : a]);
+		}else {
+			int fa = findFace(faceNode[a]), fb = findFace(faceNode[b]);
+			face[fb] = fa;
+			node = fa;
+		}
+		faceNode[x] = faceNode[x^1] = node;
+		unionComponents(u, v);
+		componentEdges[findComponent(u)]++;
+	}
+
+	/**
+	 * Looks for a face on which both u and v lie and draws the edge across it.
+	 *
+	 * @return true if the edge was drawn
+	 */
+	private boolean splitCommonFace(int u, int v) {
+		if( ++mark == 0 ) {
+			Arrays.fill(faceMark, 0);
+			mark = 1;
+		}
+		int start = anyHalfEdge[u], h = start;
+		do {
+			faceMark[findFace(faceNode[h])] = mark;
+			h = clockwise[h];
+		} while( h != start );
+		int b = -1;
+		start = anyHalfEdge[v];
+		h = start;
+		do {
+			if( faceMark[findFace(faceNode[h])] == mark ) b = h;
+			h = clockwise[h];
+		} while( h != start && b == -1 );
+		if( b == -1 ) return false;
+		int common = findFace(faceNode[b]);
+		int a = anyHalfEdge[u];
+		while( findFace(faceNode[a]) != common ) a = clockwise[a];
+
+		int x = newEdge(u, v), y = x^1;
+		insertBefore(u, x, a);
+		insertBefore(v, y, b);
+		faceNode[x] = faceNode[y] = common;
+		//walk both new faces in turn, and give the shorter one a new face node
+		int p = x, q = y;
+		while( true ) {
+			p = clockwise[p^1];
+			if( p == x ) break;
+			q = clockwise[q^1];
+			if( q == y ) {
+				p = y;
+				break;
+			}
+		}
+		int node = newFace();
+		h = p;
+		do {
+			faceNode[h] = node;
+			h = clockwise[h^1];
+		} while( h != p );
+		return true;
+	}
+
+	/**
+	 * Replaces the rotation system with an embedding of the current graph.
+	 */
+	private void rebuild(PlanarEmbedding embedding) {
+		CompactGraph graph = embedding.getGraph();
+		int arcs = graph.offset(graph.size());
+		int[] halfOf = new int[arcs];
+		halfEdges = 0;
+		for( int v=0; v<graph.size(); v++ ) {
+			for( int i=graph.offset(v); i<graph.offset(v+1); i++ ) {
+				int j = graph.twin(i);
+				if( i < j && graph.target(i) != v ) {
+					halfOf[i] = newEdge(v, graph.target(i));
+					halfOf[j] = halfOf[i]+1;
+				}
+			}
+		}
+		for( int v=0; v<graph.size(); v++ ) {
+			anyHalfEdge[v] = -1;
+			for( int i=graph.offset(v); i<graph.offset(v+1); i++ ) {
+				if( embedding.clockwise(i) == -1 ) continue;
+				clockwise[halfOf[i]] = halfOf[embedding.clockwise(i)];
+				counterClockwise[clockwise[halfOf[i]]] = halfOf[i];
+				anyHalfEdge[v] = halfOf[i];
+			}
+		}
+		faceNodes = 0;
+		for( int f=0; f<embedding.getFaceCount(); f++ ) {
+			int node = newFace();
+			for( int i : embedding.getFace(f) ) {
+				faceNode[halfOf[i]] = node;
+			}
+		}
+	}
+}
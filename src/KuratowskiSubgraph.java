@@ -0,0 +1,332 @@
+/**
+ * filename: KuratowskiSubgraph.java
+ */
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A certificate of nonplanarity: a subgraph of a Graph that is a subdivision of K5 or K3,3.
+ * By Kuratowski's theorem every nonplanar graph contains one.
+ *
+ * find(Graph) extracts a certificate by shrinking a nonplanar block to an edge-minimal
+ * nonplanar subgraph, which is always a Kuratowski subdivision. Paths through vertices of
+ * degree 2 are contracted first, since they are kept or dropped as a whole. Each remaining
+ * certificate edge is then found with a binary search over the candidate edges, using the
+ * linear left-right test, so extraction costs O(k log m) tests for a certificate of k
+ * contracted edges.
+ *
+ * verify(Graph, List) checks a certificate in O(n+k) without testing planarity: every edge
+ * must belong to the graph, and contracting the vertices of degree 2 must leave exactly K5
+ * or K3,3.
+ *
+ * @author Trevor Mack		(tmm9274@rit.edu)
+ * @author David Sweeney	(dfs7079@rit.edu)
+ *
+ */
+public class KuratowskiSubgraph {
+
+	//the certificate edges, between vertex objects of the original graph
+	private final List<Edge> edges;
+	//"K5" or "K3,3"
+	private final String type;
+
+	private KuratowskiSubgraph(List<Edge> edges, String type) {
+		this.edges = edges;
+		this.type = type;
+	}
+
+	/**
+	 * @return the edges of the subdivision, between vertex objects of the original graph
+	 */
+	public List<Edge> getEdges() {
+		return edges;
+	}
+
+	/**
+	 * @return "K5" or "K3,3"
+	 */
+	public String getType() {
+		return type;
+	}
+
+	/**
+	 * Maps a certificate found in the kernel of a reduction back to the reduced graph, each
+	 * kernel edge becoming the path it stands for. A subdivision of a subdivision of K5 or
+	 * K3,3 is still one, of the same type.
+	 *
+	 * @param reduction	- the reduction whose kernel this certificate was found in
+	 * @return the certificate in the reduced graph
+	 */
+	public KuratowskiSubgraph expand(GraphReduction reduction) {
+		return new KuratowskiSubgraph(reduction.expand(edges), type);
+	}
+
+	/**
+	 * Writes the certificate in the edge list format read by Graph(File).
+	 *
+	 * @param file	- the output file
+	 * @throws IOException if the file cannot be written
+	 */
+	public void write(File file) throws IOException {
+		BufferedWriter out = new BufferedWriter(new FileWriter(file));
+		try {
+			for( Edge edge : edges ) {
+				out.write(edge.v1 + " " + edge.v2);
+				out.newLine();
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Reads certificate edges written by write(File).
+	 *
+	 * @param file	- the certificate file
+	 * @return the certificate edges
+	 * @throws Exception - Invalid File Format
+	 */
+	public static List<Edge> read(File file) throws Exception {
+		CompactGraph graph = EdgeListLoader.load(file);
+		List<Edge> edges = new ArrayList<Edge>(graph.getEdgeCount());
+		for( int v=0; v<graph.size(); v++ ) {
+			for( int i=graph.offset(v); i<graph.offset(v+1); i++ ) {
+				if( i < graph.twin(i) ) edges.add(new Edge(graph.getLabel(v), graph.getLabel(graph.target(i))));
+			}
+		}
+		return edges;
+	}
+
+	/**
+	 * Finds a Kuratowski subdivision in a graph.
+	 *
+	 * @param graph	- the graph
+	 * @return the certificate, or null if the graph is planar
+	 */
+	public static KuratowskiSubgraph find(Graph graph) {
+		CompactGraph compact = graph.compact();
+		LeftRightTester tester = new LeftRightTester();
+		//a graph is nonplanar if and only if one of its blocks is
+		BiconnectedComponents blocks = new BiconnectedComponents(compact);
+		CompactGraph block = null;
+		int[] localId = new int[compact.size()];
+		for( int b=0; b<blocks.getBlockCount() && block == null; b++ ) {
+			if( blocks.getVertices(b).length < 5 ) continue;
+			CompactGraph candidate = blocks.getBlock(b, localId);
+			if( !tester.isPlanar(candidate) ) block = candidate;
+		}
+		if( block == null ) return null;
+
+		//a vertex of degree 2 is either inside a certificate path or not in the certificate,
+		//so every maximal path through degree 2 vertices is kept or dropped as a whole
+		int n = block.size();
+		int chains = 0;
+		int[] chainSource = new int[block.getEdgeCount()], chainTarget = new int[block.getEdgeCount()];
+		int[] chainOffsets = new int[block.getEdgeCount()+1];
+		int[] chainEdges = new int[block.getEdgeCount()];
+		int chainEdgeCount = 0;
+		boolean[] walked = new boolean[block.offset(n)];
+		for( int a=0; a<n; a++ ) {
+			if( block.degree(a) == 2 ) continue;
+			for( int i=block.offset(a); i<block.offset(a+1); i++ ) {
+				if( walked[i] ) continue;
+				chainOffsets[chains] = chainEdgeCount;
+				int arc = i;
+				while( true ) {
+					walked[arc] = walked[block.twin(arc)] = true;
+					chainEdges[chainEdgeCount++] = arc;
+					int v = block.target(arc);
+					if( block.degree(v) != 2 ) break;
+					arc = block.offset(v) == block.twin(arc) ? block.offset(v)+1 : block.offset(v);
+				}
+				chainSource[chains] = a;
+				chainTarget[chains++] = block.target(arc);
+			}
+		}
+		chainOffsets[chains] = chainEdgeCount;
+
+		//required holds the certificate chains found so far, candidates[0..length) the rest;
+		//together they always form a nonplanar graph
+		Object[] ids = new Object[n];
+		for( int v=0; v<n; v++ ) {
+			ids[v] = Integer.valueOf(v);
+		}
+		int[] candidates = new int[chains];
+		for( int c=0; c<chains; c++ ) {
+			candidates[c] = c;
+		}
+		int[] required = new int[chains];
+		int requiredCount = 0;
+		int length = chains;
+		int[] sources = new int[chains], destinations = new int[chains];
+		while( isPlanar(ids, chainSource, chainTarget, tester, required, requiredCount, candidates, 0, sources, destinations) ) {
+			//the shortest prefix of the candidates that makes the required chains nonplanar
+			int lo = 1, hi = length;
+			while( lo < hi ) {
+				int mid = (lo + hi) >>> 1;
+				if( isPlanar(ids, chainSource, chainTarget, tester, required, requiredCount, candidates, mid, sources, destinations) ) lo = mid+1;
+				else hi = mid;
+			}
+			//its last chain is needed, and later candidates are not
+			required[requiredCount++] = candidates[lo-1];
+			length = lo-1;
+		}
+
+		List<Edge> edges = new ArrayList<Edge>();
+		int[] certificate = new int[chainEdgeCount];
+		int count = 0;
+		for( int k=0; k<requiredCount; k++ ) {
+			int c = required[k];
+			for( int e=chainOffsets[c]; e<chainOffsets[c+1]; e++ ) {
+				int i = chainEdges[e];
+				certificate[count++] = i;
+				edges.add(new Edge(block.getLabel(block.target(block.twin(i))), block.getLabel(block.target(i))));
+			}
+		}
+		return new KuratowskiSubgraph(edges, classify(block, certificate, count));
+	}
+
+	/**
+	 * Tests the graph made of the required chains and a prefix of the candidate chains,
+	 * each chain contracted to a single edge between its ends.
+	 */
+	private static boolean isPlanar(Object[] ids, int[] chainSource, int[] chainTarget, LeftRightTester tester,
+			int[] required, int requiredCount, int[] candidates, int prefix, int[] sources, int[] destinations) {
+		int m = 0;
+		for( int k=0; k<requiredCount; k++ ) {
+			sources[m] = chainSource[required[k]];
+			destinations[m++] = chainTarget[required[k]];
+		}
+		for( int k=0; k<prefix; k++ ) {
+			sources[m] = chainSource[candidates[k]];
+			destinations[m++] = chainTarget[candidates[k]];
+		}
+		return tester.isPlanar(CompactGraph.fromEdges(ids, sources, destinations, m));
+	}
+
+	/**
+	 * Builds the subgraph spanned by a set of edges, keeping the original vertex ids as labels.
+	 */
+	private static CompactGraph subgraph(CompactGraph graph, int[] sources, int[] destinations, int m) {
+		//renumber the touched vertices densely
+		int[] localId = new int[graph.size()];
+		Arrays.fill(localId, -1);
+		Object[] labels = new Object[2*m];
+		int n = 0;
+		int[] s = new int[m], d = new int[m];
+		for( int e=0; e<m; e++ ) {
+			if( localId[sources[e]] < 0 ) { labels[n] = sources[e]; localId[sources[e]] = n++; }
+			if( localId[destinations[e]] < 0 ) { labels[n] = destinations[e]; localId[destinations[e]] = n++; }
+			s[e] = localId[sources[e]];
+			d[e] = localId[destinations[e]];
+		}
+		return CompactGraph.fromEdges(Arrays.copyOf(labels, n), s, d, m);
+	}
+
+	private static String classify(CompactGraph graph, int[] edges, int count) {
+		int[] sources = new int[count], destinations = new int[count];
+		for( int k=0; k<count; k++ ) {
+			sources[k] = graph.target(graph.twin(edges[k]));
+			destinations[k] = graph.target(edges[k]);
+		}
+		return contract(subgraph(graph, sources, destinations, count));
+	}
+
+	/**
+	 * Checks a certificate against a graph without testing planarity.
+	 *
+	 * @param graph			- the graph the certificate claims to belong to
+	 * @param certificate	- the certificate edges
+	 * @return true	- if every edge is an edge of graph and the edges form a subdivision
+	 * 				  of K5 or K3,3
+	 */
+	public static boolean verify(Graph graph, List<Edge> certificate) {
+		CompactGraph compact = graph.compact();
+		int m = certificate.size();
+		int[] sources = new int[m], destinations = new int[m];
+		for( int e=0; e<m; e++ ) {
+			int u = compact.indexOf(certificate.get(e).v1), v = compact.indexOf(certificate.get(e).v2);
+			if( u < 0 || v < 0 || u == v || !compact.isEdge(u, v) ) return false;
+			sources[e] = u;
+			destinations[e] = v;
+		}
+		CompactGraph subdivision = subgraph(compact, sources, destinations, m);
+		//repeated edges are merged by the subgraph, and are not allowed
+		if( subdivision.getEdgeCount() != m ) return false;
+		return contract(subdivision) != null;
+	}
+
+	/**
+	 * Contracts the paths between the vertices of degree greater than 2.
+	 *
+	 * @param graph	- a simple graph
+	 * @return "K5" or "K3,3" if the contraction is exactly that graph, otherwise null
+	 */
+	private static String contract(CompactGraph graph) {
+		int n = graph.size();
+		int[] branchIndex = new int[n];
+		int branches = 0;
+		int[] branch = new int[6];
+		for( int v=0; v<n; v++ ) {
+			int degree = graph.degree(v);
+			branchIndex[v] = -1;
+			if( degree == 2 ) continue;
+			if( degree < 2 || branches == 6 ) return null;
+			branch[branches] = v;
+			branchIndex[v] = branches++;
+		}
+		int degree;
+		if( branches == 5 ) degree = 4;
+		else if( branches == 6 ) degree = 3;
+		else return null;
+
+		//walk every path from a branch vertex to the next one
+		boolean[][] adjacent = new boolean[branches][branches];
+		boolean[] visited = new boolean[n];
+		int visitedCount = branches;
+		for( int b=0; b<branches; b++ ) {
+			int v = branch[b];
+			if( graph.degree(v) != degree ) return null;
+			visited[v] = true;
+			for( int i=graph.offset(v); i<graph.offset(v+1); i++ ) {
+				int previous = v, current = graph.target(i);
+				while( branchIndex[current] < 0 ) {
+					int next = graph.target(graph.offset(current));
+					if( next == previous ) next = graph.target(graph.offset(current)+1);
+					if( !visited[current] ) {
+						visited[current] = true;
+						visitedCount++;
+					}
+					previous = current;
+					current = next;
+				}
+				int c = branchIndex[current];
+				//paths to itself or a second path to the same branch vertex
+				if( c == b || (c > b && adjacent[b][c]) ) return null;
+				adjacent[b][c] = adjacent[c][b] = true;
+			}
+		}
+		//a cycle of degree 2 vertices apart from the paths
+		if( visitedCount != n ) return null;
+		if( branches == 5 ) return "K5";
+		//6 branch vertices of degree 3 and distinct paths: K3,3 if the branch graph is bipartite
+		int[] side = new int[6];
+		side[0] = 1;
+		for( int round=0; round<6; round++ ) {
+			for( int a=0; a<6; a++ ) {
+				for( int b=0; b<6; b++ ) {
+					if( !adjacent[a][b] || side[a] == 0 ) continue;
+					if( side[b] == side[a] ) return null;
+					side[b] = 3 - side[a];
+				}
+			}
+		}
+		return "K3,3";
+	}
+}
@@ -0,0 +1,135 @@
+/**
+ * filename: LatencyHistogram.java
+ */
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of durations in nanoseconds with a bounded relative error, safe to record
+ * into from many threads at once.
+ *
+ * Values below 2*SUB_BUCKETS have a bucket each. Above that, every power of two is split
+ * into SUB_BUCKETS equal buckets, so a bucket is never wider than 1/SUB_BUCKETS of the
+ * values in it (about 3%) and the whole range of a long fits in under 2000 buckets.
+ * Percentiles report the upper end of the bucket they fall in.
+ *
+ * @author Trevor Mack		(tmm9274@rit.edu)
+ * @author David Sweeney	(dfs7079@rit.edu)
+ *
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+	private final AtomicLongArray counts = new AtomicLongArray((64 - SUB_BITS) * SUB_BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder total = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * @param nanos	- a duration, negative values count as 0
+	 */
+	public void record(long nanos) {
+		if( nanos < 0 ) nanos = 0;
+		counts.incrementAndGet(bucket(nanos));
+		count.increment();
+		total.add(nanos);
+		long seen;
+		while( nanos > (seen = max.get()) && !max.compareAndSet(seen, nanos) );
+	}
+
+	private static int bucket(long value) {
+		int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - SUB_BITS);
+		return shift * SUB_BUCKETS + (int)(value >>> shift);
+	}
+
+	/**
+	 * @return the smallest value in bucket b
+	 */
+	private static long lowest(int b) {
+		if( b < 2 * SUB_BUCKETS ) return b;
+		int shift = b / SUB_BUCKETS - 1;
+		return (long)(b - shift * SUB_BUCKETS) << shift;
+	}
+
+	/**
+	 * @return the largest value in bucket b
+	 */
+	private static long highest(int b) {
+		if( b < 2 * SUB_BUCKETS ) return b;
+		int shift = b / SUB_BUCKETS - 1;
+		return lowest(b) + (1L << shift) - 1;
+	}
+
+	/**
+	 * @return the number of values recorded
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * @return the mean of the values recorded, 0 if there are none
+	 */
+	public double getMean() {
+		long n = count.sum();
+		return n == 0 ? 0 : (double)total.sum() / n;
+	}
+
+	/**
+	 * @return the largest value recorded
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * @param percentile	- between 0 and 100
+	 * @return a value that at least percentile percent of the recorded values do not exceed,
+	 * 		   0 if there are none
+	 */
+	public long getPercentile(double percentile) {
+		long n = count.sum();
+		if( n == 0 ) return 0;
+		long rank = Math.max(1, (long)Math.ceil(percentile / 100 * n));
+		long seen = 0;
+		for( int b=0; b<counts.length(); b++ ) {
+			seen += counts.get(b);
+			if( seen >= rank ) return Math.min(highest(b), getMax());
+		}
+		return getMax();
+	}
+
+	/**
+	 * @return the column names of getSummary
+	 */
+	public static String getHeader() {
+		return String.format("%-10s %10s %10s %10s %10s %10s %10s", "ms", "count", "mean", "p50", "p90", "p99", "max");
+	}
+
+	/**
+	 * @param name	- the name of the measured phase
+	 * @return count, mean, p50, p90, p99 and max in milliseconds, on one line
+	 */
+	public String getSummary(String name) {
+		return String.format("%-10s %10d %10.3f %10.3f %10.3f %10.3f %10.3f", name, getCount(), getMean() / 1e6,
+			getPercentile(50) / 1e6, getPercentile(90) / 1e6, getPercentile(99) / 1e6, getMax() / 1e6);
+	}
+
+	/**
+	 * @return every bucket that holds values, one line each: its range in milliseconds and
+	 * 		   its count
+	 */
+	public String getBuckets() {
+		StringBuilder buckets = new StringBuilder();
+		for( int b=0; b<counts.length(); b++ ) {
+			long n = counts.get(b);
+			if( n == 0 ) continue;
+			buckets.append(String.format("  %12.4f - %12.4f %10d%n", lowest(b) / 1e6, highest(b) / 1e6, n));
+		}
+		return buckets.toString();
+	}
+}
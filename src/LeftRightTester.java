@@ -0,0 +1,557 @@
+/**
+ * filename: LeftRightTester.java
+ */
+
+import java.util.Arrays;
+
+/**
+ * A linear time PlanarityTester implementing the left-right planarity test of de Fraysseix
+ * and Rosenstiehl, in the formulation of U. Brandes, "The Left-Right Planarity Test" (2009).
+ *
+ * The test runs on the CompactGraph form of the graph. A first depth first search orients
+ * every edge and computes lowpoints and nesting depths, a second one, visiting the edges of
+ * each vertex by nesting depth, checks that the return edges of the graph can be split into
+ * a left and a right side without conflicts. For a planar graph a third search turns the
+ * sides into a rotation system (see PlanarEmbedding). All searches use explicit stacks, and
+ * edges are identified by their position in the target array of the CompactGraph. Graphs
+ * need not be connected or biconnected, and self loops are ignored.
+ *
+ * @author Trevor Mack		(tmm9274@rit.edu)
+ * @author David Sweeney	(dfs7079@rit.edu)
+ *
+ */
+public class LeftRightTester implements PlanarityTester {
+
+	/**
+	 * @see PlanarityTester#isPlanar(Graph)
+	 */
+	public boolean isPlanar(Graph graph) {
+		return isPlanar(graph.compact());
+	}
+
+	/**
+	 * Tests whether or not a compact graph is planar.
+	 *
+	 * @param 	graph		- the graph to test
+	 * @return	true		- graph is indeed planar
+	 * 			false		- graph is not planar
+	 */
+	public boolean isPlanar(CompactGraph graph) {
+		return new Run(graph).test();
+	}
+
+	/**
+	 * Tests a graph and computes a planar embedding of it.
+	 *
+	 * @param graph	- the graph to embed
+	 * @return the embedding, or null if the graph is not planar
+	 */
+	public PlanarEmbedding embed(Graph graph) {
+		return embed(graph.compact());
+	}
+
+	/**
+	 * Tests a compact graph and computes a planar embedding of it.
+	 *
+	 * @param graph	- the graph to embed
+	 * @return the embedding, or null if the graph is not planar
+	 */
+	public PlanarEmbedding embed(CompactGraph graph) {
+		Run run = new Run(graph);
+		if( !run.test() ) return null;
+		return run.embed();
+	}
+
+	/**
+	 * @see PlanarityTester#getName()
+	 */
+	public String getName() {
+		return "lr";
+	}
+
+	/**
+	 * The state of one run of the left-right test. All per edge arrays are indexed by the
+	 * position of the oriented direction of the edge in the target array.
+	 */
+	static class Run {
+		final CompactGraph graph;
+		final int n;
+		//distance from the dfs root, -1 while unvisited
+		final int[] height;
+		//tree edge leading into each vertex, -1 for roots
+		final int[] parentEdge;
+		//dfs roots, one per connected component
+		final int[] roots;
+		int rootCount;
+		//true for the direction each edge was oriented in
+		final boolean[] oriented;
+		final int[] lowpt;
+		final int[] lowpt2;
+		final int[] nestingDepth;
+		//oriented out edges of each vertex, sorted by nesting depth, in rows like CompactGraph
+		int[] orderedOffsets;
+		int[] orderedEdges;
+		//left-right constraints between return edges
+		final int[] ref;
+		final int[] side;
+		final int[] lowptEdge;
+		//conflict pair stack height when each edge was first visited
+		final int[] stackBottom;
+		//conflict pair stack: left and right interval of each pair, -1 for no edge
+		final int[] leftLow, leftHigh, rightLow, rightHigh;
+		int top;
+		//work stack of vertices and per vertex position of the next edge to visit
+		final int[] dfsStack;
+		final int[] next;
+		final boolean[] resumed;
+
+		Run(CompactGraph graph) {
+			this.graph = graph;
+			this.n = graph.size();
+			int arcs = graph.offset(n);
+			height = new int[n];
+			parentEdge = new int[n];
+			roots = new int[n];
+			oriented = new boolean[arcs];
+			lowpt = new int[arcs];
+			lowpt2 = new int[arcs];
+			nestingDepth = new int[arcs];
+			ref = new int[arcs];
+			side = new int[arcs];
+			lowptEdge = new int[arcs];
+			stackBottom = new int[arcs];
+			//every pushed pair holds at least one back edge that is not in any other pair
+			int pairs = arcs/2 + 1;
+			leftLow = new int[pairs];
+			leftHigh = new int[pairs];
+			rightLow = new int[pairs];
+			rightHigh = new int[pairs];
+			dfsStack = new int[n+1];
+			next = new int[n];
+			resumed = new boolean[arcs];
+			Arrays.fill(height, -1);
+			Arrays.fill(parentEdge, -1);
+			Arrays.fill(ref, -1);
+			Arrays.fill(side, 1);
+		}
+
+		/**
+		 * Runs the orientation and the testing phase.
+		 *
+		 * @return true if the graph is planar
+		 */
+		boolean test() {
+			//self loops do not count towards the edge bound
+			int edges = 0;
+			for( int v=0; v<n; v++ ) {
+				for( int i=graph.offset(v); i<graph.offset(v+1); i++ ) {
+					if( graph.target(i) != v ) edges++;
+				}
+			}
+			edges /= 2;
+			if( n > 2 && edges > 3*n-6 ) return false;
+
+			long start = PlanarityStats.start();
+			for( int v=0; v<n; v++ ) {
+				if( height[v] == -1 ) {
+					height[v] = 0;
+					roots[rootCount++] = v;
+					orient(v);
+				}
+			}
+			PlanarityStats.end(PlanarityStats.LR_ORIENT, start, 0);
+			start = PlanarityStats.start();
+			sortByNestingDepth();
+			Arrays.fill(next, 0);
+			Arrays.fill(resumed, false);
+			boolean planar = true;
+			for( int r=0; r<rootCount && planar; r++ ) {
+				planar = testFrom(roots[r]);
+			}
+			PlanarityStats.end(PlanarityStats.LR_TEST, start, 0);
+			return planar;
+		}
+
+		/**
+		 * Orients the edges reachable from a root away from it, and computes the lowpoints
+		 * and the nesting depth of every edge.
+		 */
+		private void orient(int root) {
+			int sp = 0;
+			dfsStack[sp++] = root;
+			while( sp > 0 ) {
+				int v = dfsStack[--sp];
+				int e = parentEdge[v];
+				int end = graph.offset(v+1);
+				for( ; graph.offset(v) + next[v] < end; next[v]++ ) {
+					int vw = graph.offset(v) + next[v];
+					int w = graph.target(vw);
+					if( w == v ) continue;
+					if( !resumed[vw] ) {
+						//the edge was already oriented from the other side
+						if( oriented[vw] || oriented[graph.twin(vw)] ) continue;
+						oriented[vw] = true;
+						lowpt[vw] = height[v];
+						lowpt2[vw] = height[v];
+						if( height[w] == -1 ) {
+							//tree edge: finish w first, then come back to this edge
+							parentEdge[w] = vw;
+							height[w] = height[v] + 1;
+							resumed[vw] = true;
+							dfsStack[sp++] = v;
+							dfsStack[sp++] = w;
+							break;
+						}else {
+							//back edge
+							lowpt[vw] = height[w];
+						}
+					}
+					//determine nesting graph
+					nestingDepth[vw] = 2*lowpt[vw];
+					if( lowpt2[vw] < height[v] ) nestingDepth[vw]++; //chordal
+					//update lowpoints of parent edge e
+					if( e != -1 ) {
+						if( lowpt[vw] < lowpt[e] ) {
+							lowpt2[e] = Math.min(lowpt[e], lowpt2[vw]);
+							lowpt[e] = lowpt[vw];
+						}else if( lowpt[vw] > lowpt[e] ) {
+							lowpt2[e] = Math.min(lowpt2[e], lowpt[vw]);
+						}else {
+							lowpt2[e] = Math.min(lowpt2[e], lowpt2[vw]);
+						}
+					}
+				}
+			}
+		}
+
+		/**
+		 * Orders the oriented out edges of every vertex by nesting depth with a counting sort.
+		 * Nesting depths lie in -(2n+1)..2n+1, they are only negative once signed for the
+		 * embedding.
+		 */
+		void sortByNestingDepth() {
+			int arcs = graph.offset(n);
+			int shift = 2*n+1;
+			int[] count = new int[2*shift+2];
+			int edges = 0;
+			for( int i=0; i<arcs; i++ ) {
+				if( oriented[i] ) {
+					count[nestingDepth[i]+shift+1]++;
+					edges++;
+				}
+			}
+			for( int d=1; d<count.length; d++ ) {
+				count[d] += count[d-1];
+			}
+			int[] byDepth = new int[edges];
+			for( int i=0; i<arcs; i++ ) {
+				if( oriented[i] ) byDepth[count[nestingDepth[i]+shift]++] = i;
+			}
+			//distribute into rows by source, keeping the depth order within each row
+			orderedOffsets = new int[n+1];
+			int[] source = new int[edges];
+			for( int k=0; k<edges; k++ ) {
+				source[k] = graph.target(graph.twin(byDepth[k]));
+				orderedOffsets[source[k]+1]++;
+			}
+			for( int v=0; v<n; v++ ) {
+				orderedOffsets[v+1] += orderedOffsets[v];
+			}
+			int[] fill = Arrays.copyOf(orderedOffsets, n);
+			orderedEdges = new int[edges];
+			for( int k=0; k<edges; k++ ) {
+				orderedEdges[fill[source[k]]++] = byDepth[k];
+			}
+		}
+
+		/**
+		 * Visits the edges reachable from a root in nesting order and merges the constraints
+		 * between their return edges.
+		 *
+		 * @return false if the constraints cannot be satisfied
+		 */
+		private boolean testFrom(int root) {
+			int sp = 0;
+			dfsStack[sp++] = root;
+			while( sp > 0 ) {
+				int v = dfsStack[--sp];
+				int e = parentEdge[v];
+				boolean descended = false;
+				int first = orderedOffsets[v];
+				for( ; first + next[v] < orderedOffsets[v+1]; next[v]++ ) {
+					int k = first + next[v];
+					int ei = orderedEdges[k];
+					int w = graph.target(ei);
+					if( !resumed[ei] ) {
+						stackBottom[ei] = top;
+						if( ei == parentEdge[w] ) {
+							//tree edge: finish w first, then come back to this edge
+							resumed[ei] = true;
+							descended = true;
+							dfsStack[sp++] = v;
+							dfsStack[sp++] = w;
+							break;
+						}else {
+							//back edge
+							lowptEdge[ei] = ei;
+							push(-1, -1, ei, ei);
+						}
+					}
+					//integrate new return edges
+					if( lowpt[ei] < height[v] ) {
+						if( k == first ) {
+							lowptEdge[e] = lowptEdge[ei];
+						}else if( !addConstraints(ei, e) ) {
+							return false;
+						}
+					}
+				}
+				if( !descended && e != -1 ) removeBackEdges(e);
+			}
+			return true;
+		}
+
+		private void push(int ll, int lh, int rl, int rh) {
+			leftLow[top] = ll;
+			leftHigh[top] = lh;
+			rightLow[top] = rl;
+			rightHigh[top] = rh;
+			top++;
+		}
+
+		private boolean conflicting(int high, int b) {
+			return high != -1 && lowpt[high] > lowpt[b];
+		}
+
+		private int lowest(int p) {
+			if( leftLow[p] == -1 && leftHigh[p] == -1 ) return lowpt[rightLow[p]];
+			if( rightLow[p] == -1 && rightHigh[p] == -1 ) return lowpt[leftLow[p]];
+			return Math.min(lowpt[leftLow[p]], lowpt[rightLow[p]]);
+		}
+
+		/**
+		 * Merges the conflict pairs of the return edges of ei with those of its earlier
+		 * siblings below the parent edge e.
+		 *
+		 * @return false if the merged pairs cannot be satisfied
+		 */
+		private boolean addConstraints(int ei, int e) {
+			int pll = -1, plh = -1, prl = -1, prh = -1;
+			//merge return edges of ei into the right interval of P
+			do {
+				top--;
+				int qll = leftLow[top], qlh = leftHigh[top], qrl = rightLow[top], qrh = rightHigh[top];
+				if( qll != -1 || qlh != -1 ) {
+					int t;
+					t = qll; qll = qrl; qrl = t;
+					t = qlh; qlh = qrh; qrh = t;
+				}
+				if( qll != -1 || qlh != -1 ) return false;
+				if( lowpt[qrl] > lowpt[e] ) {
+					//merge intervals
+					if( prl == -1 && prh == -1 ) {
+						prh = qrh;
+					}else {
+						ref[prl] = qrh;
+					}
+					prl = qrl;
+				}else {
+					//align
+					ref[qrl] = lowptEdge[e];
+				}
+			} while( top != stackBottom[ei] );
+
+			//merge conflicting return edges of the earlier siblings into the left interval of P
+			while( top > 0 && (conflicting(leftHigh[top-1], ei) || conflicting(rightHigh[top-1], ei)) ) {
+				top--;
+				int qll = leftLow[top], qlh = leftHigh[top], qrl = rightLow[top], qrh = rightHigh[top];
+				if( conflicting(qrh, ei) ) {
+					int t;
+					t = qll; qll = qrl; qrl = t;
+					t = qlh; qlh = qrh; qrh = t;
+				}
+				if( conflicting(qrh, ei) ) return false;
+				//merge interval below lowpt(ei) into the right interval of P
+				if( prl != -1 ) ref[prl] = qrh;
+				if( qrl != -1 ) prl = qrl;
+				if( pll == -1 && plh == -1 ) {
+					plh = qlh;
+				}else {
+					ref[pll] = qlh;
+				}
+				pll = qll;
+			}
+			if( pll != -1 || plh != -1 || prl != -1 || prh != -1 ) push(pll, plh, prl, prh);
+			return true;
+		}
+
+		/**
+		 * Drops the back edges that return to the source of the tree edge e once the
+		 * subtree below e is finished, and records the side of e.
+		 */
+		private void removeBackEdges(int e) {
+			int u = graph.target(graph.twin(e));
+			//drop entire conflict pairs
+			while( top > 0 && lowest(top-1) == height[u] ) {
+				top--;
+				if( leftLow[top] != -1 ) side[leftLow[top]] = -1;
+			}
+			//one more conflict pair to consider
+			if( top > 0 ) {
+				int p = top-1;
+				//trim left interval
+				while( leftHigh[p] != -1 && graph.target(leftHigh[p]) == u ) {
+					leftHigh[p] = ref[leftHigh[p]];
+				}
+				if( leftHigh[p] == -1 && leftLow[p] != -1 ) {
+					//just emptied
+					ref[leftLow[p]] = rightLow[p];
+					side[leftLow[p]] = -1;
+					leftLow[p] = -1;
+				}
+				//trim right interval
+				while( rightHigh[p] != -1 && graph.target(rightHigh[p]) == u ) {
+					rightHigh[p] = ref[rightHigh[p]];
+				}
+				if( rightHigh[p] == -1 && rightLow[p] != -1 ) {
+					//just emptied
+					ref[rightLow[p]] = leftLow[p];
+					side[rightLow[p]] = -1;
+					rightLow[p] = -1;
+				}
+			}
+			//side of e is side of a highest return edge
+			if( lowpt[e] < height[u] && top > 0 ) {
+				int hl = leftHigh[top-1], hr = rightHigh[top-1];
+				if( hl != -1 && (hr == -1 || lowpt[hl] > lowpt[hr]) ) {
+					ref[e] = hl;
+				}else {
+					ref[e] = hr;
+				}
+			}
+		}
+	
+		/**
+		 * Runs the embedding phase after a successful test: every edge gets the sign of its
+		 * side, the out edges of every vertex are placed clockwise by signed nesting depth,
+		 * and a last depth first search inserts the reverse of every edge around its head.
+		 *
+		 * @return the embedding
+		 */
+		PlanarEmbedding embed() {
+			long start = PlanarityStats.start();
+			int arcs = graph.offset(n);
+			int[] oldRef = new int[arcs];
+			int[] work = new int[arcs/2 + 1];
+			Arrays.fill(oldRef, -1);
+			for( int i=0; i<arcs; i++ ) {
+				if( oriented[i] ) nestingDepth[i] *= sign(i, oldRef, work);
+			}
+			sortByNestingDepth();
+
+			//clockwise and counterclockwise neighbor of each half edge around its source
+			int[] clockwise = new int[arcs];
+			int[] counterClockwise = new int[arcs];
+			int[] first = new int[n];
+			Arrays.fill(clockwise, -1);
+			Arrays.fill(first, -1);
+			for( int v=0; v<n; v++ ) {
+				int previous = -1;
+				for( int k=orderedOffsets[v]; k<orderedOffsets[v+1]; k++ ) {
+					addClockwise(first, clockwise, counterClockwise, v, orderedEdges[k], previous);
+					previous = orderedEdges[k];
+				}
+			}
+
+			//half edge towards the leftmost and rightmost child processed so far
+			int[] leftRef = new int[n];
+			int[] rightRef = new int[n];
+			Arrays.fill(next, 0);
+			for( int r=0; r<rootCount; r++ ) {
+				int sp = 0;
+				dfsStack[sp++] = roots[r];
+				while( sp > 0 ) {
+					int v = dfsStack[--sp];
+					while( orderedOffsets[v] + next[v] < orderedOffsets[v+1] ) {
+						int ei = orderedEdges[orderedOffsets[v] + next[v]++];
+						int w = graph.target(ei);
+						int reverse = graph.twin(ei);
+						if( ei == parentEdge[w] ) {
+							//tree edge
+							addCounterClockwise(first, clockwise, counterClockwise, w, reverse, first[w]);
+							leftRef[v] = ei;
+							rightRef[v] = ei;
+							dfsStack[sp++] = v;
+							dfsStack[sp++] = w;
+							break;
+						}else if( side[ei] == 1 ) {
+							addClockwise(first, clockwise, counterClockwise, w, reverse, rightRef[w]);
+						}else {
+							addCounterClockwise(first, clockwise, counterClockwise, w, reverse, leftRef[w]);
+							leftRef[w] = reverse;
+						}
+					}
+				}
+			}
+			PlanarEmbedding embedding = new PlanarEmbedding(graph, clockwise);
+			PlanarityStats.end(PlanarityStats.LR_EMBED, start, 0);
+			return embedding;
+		}
+
+		/**
+		 * Resolves the side of an edge relative to the edges it was referred to, with the
+		 * references followed on an explicit stack.
+		 *
+		 * @return the side of e, 1 or -1
+		 */
+		private int sign(int e, int[] oldRef, int[] work) {
+			int sp = 0;
+			work[sp++] = e;
+			while( sp > 0 ) {
+				int f = work[--sp];
+				if( ref[f] != -1 ) {
+					//revisit f after resolving its reference
+					if( sp+2 > work.length ) work = Arrays.copyOf(work, 2*work.length);
+					work[sp++] = f;
+					work[sp++] = ref[f];
+					oldRef[f] = ref[f];
+					ref[f] = -1;
+				}else if( oldRef[f] != -1 ) {
+					side[f] *= side[oldRef[f]];
+					oldRef[f] = -1;
+				}
+			}
+			return side[e];
+		}
+
+		/**
+		 * Inserts half edge h around v, clockwise after reference, or as the only half edge
+		 * if reference is -1.
+		 */
+		private static void addClockwise(int[] first, int[] clockwise, int[] counterClockwise, int v, int h, int reference) {
+			if( reference == -1 ) {
+				clockwise[h] = counterClockwise[h] = h;
+				first[v] = h;
+			}else {
+				int after = clockwise[reference];
+				clockwise[h] = after;
+				counterClockwise[h] = reference;
+				clockwise[reference] = h;
+				counterClockwise[after] = h;
+			}
+		}
+
+		/**
+		 * Inserts half edge h around v, counterclockwise before reference, or as the only half
+		 * edge if reference is -1.
+		 */
+		private static void addCounterClockwise(int[] first, int[] clockwise, int[] counterClockwise, int v, int h, int reference) {
+			if( reference == -1 ) {
+				addClockwise(first, clockwise, counterClockwise, v, h, -1);
+			}else {
+				addClockwise(first, clockwise, counterClockwise, v, h, counterClockwise[reference]);
+				if( reference == first[v] ) first[v] = h;
+			}
+		}
+	}
+}
@@ -0,0 +1,161 @@
+/**
+ * filename: LoadGenerator.java
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A load generator for PlanarityServer. A number of clients post the given graph files to
+ * the server in turn, each sending its next request as soon as the answer to the last one
+ * has arrived. A warmup round is run and discarded first, so the server code is compiled
+ * before latency is measured. The client side latency of every request is recorded in a
+ * LatencyHistogram and summarized with the throughput and the status codes seen; refused
+ * requests (status 503) are counted, not retried.
+ *
+ * usage: java LoadGenerator [-url url] [-clients n] [-requests n] [-warmup n] file...
+ *
+ * @author Trevor Mack		(tmm9274@rit.edu)
+ * @author David Sweeney	(dfs7079@rit.edu)
+ *
+ */
+public class LoadGenerator {
+
+	private String url = "http://127.0.0.1:8080/planarity";
+	private int clients = 4;
+	private int requests = 1000;
+	private int warmup = 200;
+	private final List<byte[]> bodies = new ArrayList<byte[]>();
+	//status codes seen, -1 for requests that failed without one
+	private final LongAdder[] statuses = new LongAdder[600];
+	private final LongAdder failures = new LongAdder();
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		LoadGenerator generator = new LoadGenerator();
+		try {
+			int i = 0;
+			for( ; i<args.length && args[i].startsWith("-"); i++ ) {
+				if( i+1 >= args.length ) throw new IllegalArgumentException(args[i]);
+				String value = args[++i];
+				if( args[i-1].equals("-url") ) generator.url = value;
+				else if( args[i-1].equals("-clients") ) generator.clients = Integer.parseInt(value);
+				else if( args[i-1].equals("-requests") ) generator.requests = Integer.parseInt(value);
+				else if( args[i-1].equals("-warmup") ) generator.warmup = Integer.parseInt(value);
+				else throw new IllegalArgumentException(args[i-1]);
+			}
+			if( i == args.length || generator.clients < 1 || generator.requests < 1 || generator.warmup < 0 ) {
+				throw new IllegalArgumentException();
+			}
+			for( ; i<args.length; i++ ) {
+				generator.bodies.add(Files.readAllBytes(new File(args[i]).toPath()));
+			}
+		} catch (IllegalArgumentException e) {
+			System.err.println("usage: java LoadGenerator [-url url] [-clients n] [-requests n] [-warmup n] file...");
+			System.exit(1);
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+		try {
+			generator.run();
+		} catch (InterruptedException e) {
+			System.exit(1);
+		}
+	}
+
+	private LoadGenerator() {
+		for( int s=0; s<statuses.length; s++ ) {
+			statuses[s] = new LongAdder();
+		}
+	}
+
+	/**
+	 * Runs the warmup and the measured round, and prints the results.
+	 */
+	void run() throws InterruptedException {
+		round(warmup, new LatencyHistogram());
+		for( LongAdder status : statuses ) {
+			status.reset();
+		}
+		failures.reset();
+		LatencyHistogram latency = new LatencyHistogram();
+		long start = System.nanoTime();
+		round(requests, latency);
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.println(String.format("%d requests from %d clients in %.2f s, %.1f requests/s", requests, clients, seconds,
+			requests / seconds));
+		StringBuilder seen = new StringBuilder();
+		for( int s=0; s<statuses.length; s++ ) {
+			if( statuses[s].sum() > 0 ) seen.append(" ").append(s).append(": ").append(statuses[s].sum());
+		}
+		if( failures.sum() > 0 ) seen.append(" failed: ").append(failures.sum());
+		System.out.println("status" + seen);
+		System.out.println(LatencyHistogram.getHeader());
+		System.out.println(latency.getSummary("latency"));
+		System.out.print(latency.getBuckets());
+	}
+
+	/**
+	 * Sends count requests from all clients and waits for the answers.
+	 */
+	private void round(final int count, final LatencyHistogram latency) throws InterruptedException {
+		final AtomicInteger next = new AtomicInteger();
+		Thread[] threads = new Thread[clients];
+		for( int c=0; c<clients; c++ ) {
+			threads[c] = new Thread("client-" + c) {
+				public void run() {
+					for( int r=next.getAndIncrement(); r<count; r=next.getAndIncrement() ) {
+						long start = System.nanoTime();
+						int status = send(bodies.get(r % bodies.size()));
+						latency.record(System.nanoTime() - start);
+						if( status < 0 || status >= statuses.length ) failures.increment();
+						else statuses[status].increment();
+					}
+				}
+			};
+			threads[c].start();
+		}
+		for( Thread thread : threads ) {
+			thread.join();
+		}
+	}
+
+	/**
+	 * Posts one edge list and reads the whole answer, so the connection can be kept alive.
+	 *
+	 * @return the status code, or -1 if the request failed
+	 */
+	private int send(byte[] body) {
+		try {
+			HttpURLConnection connection = (HttpURLConnection)new URL(url).openConnection();
+			connection.setRequestMethod("POST");
+			connection.setDoOutput(true);
+			connection.setFixedLengthStreamingMode(body.length);
+			OutputStream out = connection.getOutputStream();
+			out.write(body);
+			out.close();
+			int status = connection.getResponseCode();
+			InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+			if( in != null ) {
+				byte[] buffer = new byte[4096];
+				while( in.read(buffer) >= 0 );
+				in.close();
+			}
+			return status;
+		} catch (IOException e) {
+			return -1;
+		}
+	}
+}
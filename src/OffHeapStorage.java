@@ -0,0 +1,294 @@
+/**
+ * filename: OffHeapStorage.java
+ */
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The compressed-sparse-row arrays of a CompactGraph kept outside the Java heap, so a graph
+ * with a billion edges needs no heap of its size and adds nothing for the garbage
+ * collector to scan. The storage is laid out in five regions:
+ *
+ * 		offsets		- int row start of each vertex, plus one trailing entry
+ * 		targets		- int neighbor ids of all vertices, row by row
+ * 		twins		- int position of the opposite direction of each edge
+ * 		labelStarts	- long start of the name of each vertex in names, plus one trailing entry
+ * 		names		- the UTF-8 bytes of all vertex names
+ *
+ * Every region is a series of direct ByteBuffers of at most 1 GB, or of mappings of a
+ * scratch file when one is given, which the operating system may page out. A CompactGraph
+ * built on the storage (see getGraph) reads its rows from here and decodes a vertex name
+ * only when getLabel asks for it, so the engines run on it unchanged.
+ *
+ * The storage is filled once by its loader (see BinaryGraphFormat.loadOffHeap), row by row
+ * in ascending order, and is read only afterwards. close() releases the memory and deletes
+ * the scratch file at once instead of waiting for the buffers to be collected; neither the
+ * storage nor its graph may be used after that, and it must not be closed while an engine
+ * still runs on it.
+ *
+ * @author Trevor Mack		(tmm9274@rit.edu)
+ * @author David Sweeney	(dfs7079@rit.edu)
+ *
+ */
+public class OffHeapStorage implements Closeable {
+
+	//bytes per buffer, a multiple of 8 so no int or long crosses two buffers
+	private static final int CHUNK_SHIFT = 30;
+	private static final int CHUNK_MASK = (1 << CHUNK_SHIFT) - 1;
+
+	private final int n;
+	private final int arcs;
+	private final File file;
+	private final RandomAccessFile channelFile;
+	private final Region offsets;
+	private final Region targets;
+	private final Region twins;
+	private final Region labelStarts;
+	private final Region names;
+	private final CompactGraph graph;
+	private boolean closed;
+
+	/**
+	 * A range of bytes spread over buffers of at most 1 GB each.
+	 */
+	private static final class Region {
+		ByteBuffer[] chunks;
+
+		Region(FileChannel channel, long start, long bytes) throws IOException {
+			chunks = new ByteBuffer[(int)((bytes + CHUNK_MASK) >>> CHUNK_SHIFT)];
+			for( int c=0; c<chunks.length; c++ ) {
+				int size = (int)Math.min(1L << CHUNK_SHIFT, bytes - ((long)c << CHUNK_SHIFT));
+				chunks[c] = channel == null ? ByteBuffer.allocateDirect(size)
+					: channel.map(FileChannel.MapMode.READ_WRITE, start + ((long)c << CHUNK_SHIFT), size);
+				chunks[c].order(ByteOrder.nativeOrder());
+			}
+		}
+
+		int getInt(long position) {
+			return chunks[(int)(position >>> CHUNK_SHIFT)].getInt((int)position & CHUNK_MASK);
+		}
+
+		void putInt(long position, int value) {
+			chunks[(int)(position >>> CHUNK_SHIFT)].putInt((int)position & CHUNK_MASK, value);
+		}
+
+		long getLong(long position) {
+			return chunks[(int)(position >>> CHUNK_SHIFT)].getLong((int)position & CHUNK_MASK);
+		}
+
+		void putLong(long position, long value) {
+			chunks[(int)(position >>> CHUNK_SHIFT)].putLong((int)position & CHUNK_MASK, value);
+		}
+
+		//copies length bytes starting at position, in pieces where they cross a buffer
+		void get(long position, byte[] bytes, int length) {
+			for( int k=0; k<length; ) {
+				long at = position + k;
+				int piece = Math.min(length - k, (1 << CHUNK_SHIFT) - ((int)at & CHUNK_MASK));
+				chunks[(int)(at >>> CHUNK_SHIFT)].get((int)at & CHUNK_MASK, bytes, k, piece);
+				k += piece;
+			}
+		}
+
+		void put(long position, byte[] bytes, int length) {
+			for( int k=0; k<length; ) {
+				long at = position + k;
+				int piece = Math.min(length - k, (1 << CHUNK_SHIFT) - ((int)at & CHUNK_MASK));
+				chunks[(int)(at >>> CHUNK_SHIFT)].put((int)at & CHUNK_MASK, bytes, k, piece);
+				k += piece;
+			}
+		}
+
+		void release() {
+			ByteBuffer[] released = chunks;
+			//reads after close fail on an empty region instead of touching freed memory
+			chunks = new ByteBuffer[0];
+			for( ByteBuffer chunk : released ) {
+				free(chunk);
+			}
+		}
+	}
+
+	/**
+	 * Allocates storage for a graph.
+	 *
+	 * @param n				- the number of vertices
+	 * @param arcs			- the length of the target array, twice the number of edges
+	 * @param nameBytes		- room for the UTF-8 bytes of all vertex names
+	 * @param file			- the scratch file to map the storage from, or null for direct
+	 * 						  memory; it is replaced if it exists and deleted by close()
+	 * @throws IOException if the scratch file cannot be created or mapped
+	 */
+	OffHeapStorage(int n, int arcs, long nameBytes, File file) throws IOException {
+		this.n = n;
+		this.arcs = arcs;
+		this.file = file;
+		long offsetBytes = 4L*(n+1), arcBytes = 4L*arcs, startBytes = 8L*(n+1);
+		FileChannel channel = null;
+		if( file != null ) {
+			//also removed if the JVM exits without closing the storage
+			file.deleteOnExit();
+			channelFile = new RandomAccessFile(file, "rw");
+			channelFile.setLength(0);
+			channelFile.setLength(offsetBytes + 2*arcBytes + startBytes + nameBytes);
+			channel = channelFile.getChannel();
+		}else {
+			channelFile = null;
+		}
+		long start = 0;
+		offsets = new Region(channel, start, offsetBytes);
+		targets = new Region(channel, start += offsetBytes, arcBytes);
+		twins = new Region(channel, start += arcBytes, arcBytes);
+		labelStarts = new Region(channel, start += arcBytes, startBytes);
+		names = new Region(channel, start += startBytes, nameBytes);
+		graph = new CompactGraph(this);
+	}
+
+	/**
+	 * @return the graph stored here
+	 */
+	public CompactGraph getGraph() {
+		return graph;
+	}
+
+	/**
+	 * @return true if the storage is a mapped file rather than direct memory
+	 */
+	public boolean isMapped() {
+		return file != null;
+	}
+
+	int size() {
+		return n;
+	}
+
+	int arcCount() {
+		return arcs;
+	}
+
+	int offset(int v) {
+		return offsets.getInt(4L*v);
+	}
+
+	int target(int i) {
+		return targets.getInt(4L*i);
+	}
+
+	int twin(int i) {
+		return twins.getInt(4L*i);
+	}
+
+	/**
+	 * @return the name of vertex v, decoded on every call
+	 */
+	String label(int v) {
+		long start = labelStarts.getLong(8L*v);
+		byte[] bytes = new byte[(int)(labelStarts.getLong(8L*(v+1)) - start)];
+		names.get(start, bytes, bytes.length);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Stores the name of the next vertex; names are added in vertex order.
+	 *
+	 * @param v			- the vertex
+	 * @param name		- its name in UTF-8
+	 * @param length	- the number of bytes of name to store
+	 */
+	void putLabel(int v, byte[] name, int length) {
+		long start = labelStarts.getLong(8L*v);
+		names.put(start, name, length);
+		labelStarts.putLong(8L*(v+1), start + length);
+	}
+
+	/**
+	 * @param v		- the vertex, or n for the end of the last row
+	 * @param start	- the position where its row starts
+	 */
+	void putOffset(int v, int start) {
+		offsets.putInt(4L*v, start);
+	}
+
+	void putTarget(int i, int w) {
+		targets.putInt(4L*i, w);
+	}
+
+	/**
+	 * Pairs up both directions of every edge once all rows are stored. The rows must be in
+	 * ascending order without repeated neighbors, apart from the two copies of a self loop:
+	 * the twin of a position in the row of v pointing to w is then found by a binary search
+	 * for v in the row of w, without scratch memory of the graph's size.
+	 *
+	 * @throws IOException if a row is not in order or an edge is stored in one direction
+	 */
+	void pairTwins() throws IOException {
+		for( int v=0; v<n; v++ ) {
+			int end = offset(v+1);
+			for( int i=offset(v); i<end; i++ ) {
+				int w = target(i);
+				if( i > offset(v) && w <= target(i-1) ) throw new IOException("row " + v + " is not in ascending order");
+				if( w == v ) {
+					//the first copy of a self loop pairs with the second
+					if( i+1 >= end || target(i+1) != v ) throw new IOException("self loop of vertex " + v + " is stored once");
+					twins.putInt(4L*i, i+1);
+					twins.putInt(4L*(i+1), i);
+					i++;
+					continue;
+				}
+				int lo = offset(w), hi = offset(w+1) - 1;
+				while( lo < hi ) {
+					int mid = (lo + hi) >>> 1;
+					if( target(mid) < v ) lo = mid+1; else hi = mid;
+				}
+				if( lo > hi || target(lo) != v ) throw new IOException("edge " + v + " " + w + " is stored in one direction");
+				twins.putInt(4L*i, lo);
+			}
+		}
+	}
+
+	/**
+	 * Releases the memory and deletes the scratch file. The storage and its graph may not
+	 * be used afterwards.
+	 *
+	 * @throws IOException if the scratch file cannot be closed
+	 */
+	public synchronized void close() throws IOException {
+		if( closed ) return;
+		closed = true;
+		offsets.release();
+		targets.release();
+		twins.release();
+		labelStarts.release();
+		names.release();
+		if( channelFile != null ) {
+			channelFile.close();
+			file.delete();
+		}
+	}
+
+	/**
+	 * Frees a direct or mapped buffer at once with the cleaner of the JDK, the only way to
+	 * do so before the Foreign Memory API. Where that is not available the buffer is left
+	 * to the garbage collector.
+	 */
+	private static void free(ByteBuffer buffer) {
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Field field = unsafeClass.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			invokeCleaner.invoke(field.get(null), buffer);
+		} catch (Exception e) {
+			//freed when the buffer is collected
+		}
+	}
+}
@@ -0,0 +1,263 @@
+/**
+ * filename: PlanarEmbedding.java
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A combinatorial planar embedding (rotation system) of a CompactGraph, as computed by
+ * LeftRightTester.embed. Half edges are the positions in the target array of the graph:
+ * half edge i leaves graph.target(graph.twin(i)) and enters graph.target(i).
+ *
+ * The rotation is stored as the clockwise successor of every half edge around its source.
+ * Walking the faces follows next(h) = clockwise(twin(h)), so every half edge lies on exactly
+ * one face. Faces, their boundaries and the dual graph are built from the rotation in
+ * O(n+m) and kept in primitive arrays. Self loops are not part of the embedding.
+ *
+ * The embedding can be written next to its input with write(File) and read back with
+ * read(File), so later stages do not have to test the graph again.
+ *
+ * @author Trevor Mack		(tmm9274@rit.edu)
+ * @author David Sweeney	(dfs7079@rit.edu)
+ *
+ */
+public class PlanarEmbedding {
+
+	//"PEMB" and the format version of write(File)
+	private static final int MAGIC = 0x50454d42;
+	private static final int VERSION = 1;
+
+	private final CompactGraph graph;
+	//clockwise successor of each half edge around its source, -1 for self loops
+	private final int[] clockwise;
+	//face of each half edge, -1 for self loops
+	private final int[] faceOf;
+	//half edges of each face, in boundary walk order
+	private final int[] faceOffsets;
+	private final int[] faceHalfEdges;
+
+	/**
+	 * Builds the faces of a rotation system. The clockwise array is not copied.
+	 *
+	 * @param graph		- the embedded graph
+	 * @param clockwise	- clockwise successor of each half edge around its source, or -1
+	 * 					  for the half edges of self loops
+	 */
+	public PlanarEmbedding(CompactGraph graph, int[] clockwise) {
+		int arcs = graph.offset(graph.size());
+		if( clockwise.length != arcs ) throw new IllegalArgumentException("rotation does not match graph");
+		this.graph = graph;
+		this.clockwise = clockwise;
+		faceOf = new int[arcs];
+		Arrays.fill(faceOf, -1);
+		int[] offsets = new int[16];
+		int[] boundary = new int[arcs];
+		int faces = 0, count = 0;
+		for( int i=0; i<arcs; i++ ) {
+			if( faceOf[i] != -1 || clockwise[i] == -1 ) continue;
+			if( faces+2 > offsets.length ) offsets = Arrays.copyOf(offsets, 2*offsets.length);
+			offsets[faces] = count;
+			int h = i;
+			do {
+				faceOf[h] = faces;
+				boundary[count++] = h;
+				h = clockwise[graph.twin(h)];
+			} while( h != i );
+			faces++;
+		}
+		offsets[faces] = count;
+		faceOffsets = Arrays.copyOf(offsets, faces+1);
+		faceHalfEdges = count == arcs ? boundary : Arrays.copyOf(boundary, count);
+	}
+
+	/**
+	 * @return the embedded graph
+	 */
+	public CompactGraph getGraph() {
+		return graph;
+	}
+
+	/**
+	 * @param h	- a half edge
+	 * @return the next half edge clockwise around the source of h, or -1 for a self loop
+	 */
+	public int clockwise(int h) {
+		return clockwise[h];
+	}
+
+	/**
+	 * @param h	- a half edge
+	 * @return the half edge following h on its face
+	 */
+	public int nextOnFace(int h) {
+		return clockwise[graph.twin(h)];
+	}
+
+	/**
+	 * @param v	- a vertex id
+	 * @return the neighbor ids of v in clockwise order, starting at its first row entry
+	 */
+	public int[] clockwiseNeighbors(int v) {
+		int[] neighbors = new int[graph.degree(v)];
+		int count = 0;
+		int start = -1;
+		for( int i=graph.offset(v); i<graph.offset(v+1) && start == -1; i++ ) {
+			if( clockwise[i] != -1 ) start = i;
+		}
+		if( start == -1 ) return new int[0];
+		int h = start;
+		do {
+			neighbors[count++] = graph.target(h);
+			h = clockwise[h];
+		} while( h != start );
+		return count == neighbors.length ? neighbors : Arrays.copyOf(neighbors, count);
+	}
+
+	/**
+	 * @return the number of faces, summed over all connected components
+	 */
+	public int getFaceCount() {
+		return faceOffsets.length-1;
+	}
+
+	/**
+	 * @param h	- a half edge
+	 * @return the face on which h lies, or -1 for a self loop
+	 */
+	public int getFaceOf(int h) {
+		return faceOf[h];
+	}
+
+	/**
+	 * @param f	- a face
+	 * @return the half edges bounding f, in boundary walk order
+	 */
+	public int[] getFace(int f) {
+		return Arrays.copyOfRange(faceHalfEdges, faceOffsets[f], faceOffsets[f+1]);
+	}
+
+	/**
+	 * @param f	- a face
+	 * @return the vertex ids met walking around f, a vertex repeats where the boundary
+	 * 		   passes it more than once
+	 */
+	public int[] getFaceVertices(int f) {
+		int[] vertices = new int[faceOffsets[f+1] - faceOffsets[f]];
+		for( int k=faceOffsets[f]; k<faceOffsets[f+1]; k++ ) {
+			vertices[k - faceOffsets[f]] = graph.target(faceHalfEdges[k]);
+		}
+		return vertices;
+	}
+
+	/**
+	 * Builds the dual graph: one vertex per face (labelled with its face number) and one edge
+	 * per edge of the graph, between the faces on its two sides. The dual is a multigraph,
+	 * which CompactGraph does not hold, so it is returned as parallel endpoint arrays indexed
+	 * by the half edge i < twin(i) of each edge.
+	 *
+	 * @return {sources, destinations}, the faces on both sides of every edge
+	 */
+	public int[][] getDualEdges() {
+		int m = 0;
+		for( int i=0; i<faceOf.length; i++ ) {
+			if( faceOf[i] != -1 && i < graph.twin(i) ) m++;
+		}
+		int[] sources = new int[m], destinations = new int[m];
+		int e = 0;
+		for( int i=0; i<faceOf.length; i++ ) {
+			if( faceOf[i] == -1 || i > graph.twin(i) ) continue;
+			sources[e] = faceOf[i];
+			destinations[e++] = faceOf[graph.twin(i)];
+		}
+		return new int[][] { sources, destinations };
+	}
+
+	/**
+	 * @return the dual graph with repeated edges merged, for callers that only need face
+	 * 		   adjacency
+	 */
+	public CompactGraph getDual() {
+		int[][] edges = getDualEdges();
+		Object[] labels = new Object[getFaceCount()];
+		for( int f=0; f<labels.length; f++ ) {
+			labels[f] = Integer.valueOf(f);
+		}
+		return CompactGraph.fromEdges(labels, edges[0], edges[1], edges[0].length);
+	}
+
+	/**
+	 * Writes the graph and its rotation in a binary format. Vertex labels are written as
+	 * strings; faces are rebuilt when the file is read.
+	 *
+	 * @param file	- the output file
+	 * @throws IOException if the file cannot be written
+	 */
+	public void write(File file) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+		try {
+			int n = graph.size();
+			int arcs = graph.offset(n);
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(n);
+			out.writeInt(arcs);
+			for( int v=0; v<n; v++ ) {
+				out.writeUTF(String.valueOf(graph.getLabel(v)));
+			}
+			for( int v=0; v<=n; v++ ) {
+				out.writeInt(graph.offset(v));
+			}
+			for( int i=0; i<arcs; i++ ) {
+				out.writeInt(graph.target(i));
+			}
+			for( int i=0; i<arcs; i++ ) {
+				out.writeInt(clockwise[i]);
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Reads an embedding written by write(File). Vertex labels are read back as strings.
+	 *
+	 * @param file	- the embedding file
+	 * @return the embedding
+	 * @throws IOException if the file cannot be read or is not an embedding
+	 */
+	public static PlanarEmbedding read(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+		try {
+			if( in.readInt() != MAGIC || in.readInt() != VERSION ) throw new IOException("not an embedding file: " + file);
+			int n = in.readInt();
+			int arcs = in.readInt();
+			Object[] labels = new Object[n];
+			for( int v=0; v<n; v++ ) {
+				labels[v] = in.readUTF();
+			}
+			int[] offsets = new int[n+1];
+			for( int v=0; v<=n; v++ ) {
+				offsets[v] = in.readInt();
+			}
+			int[] targets = new int[arcs];
+			for( int i=0; i<arcs; i++ ) {
+				targets[i] = in.readInt();
+			}
+			int[] clockwise = new int[arcs];
+			for( int i=0; i<arcs; i++ ) {
+				clockwise[i] = in.readInt();
+			}
+			return new PlanarEmbedding(new CompactGraph(labels, offsets, targets), clockwise);
+		} finally {
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,232 @@
+/**
+ * filename: PlanarityBenchmark.java
+ */
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Micro benchmarks for the planarity pipeline over generated graph families (see
+ * GraphGenerator). For every family and size the benchmarks below are measured with a
+ * number of warmup and measurement iterations; an iteration repeats its operation until
+ * it has run for at least the iteration time, and reports the mean time per operation.
+ *
+ * 		parse				- Graph(File) on the graph written as an edge list
+ * 		simpleCycle			- Graph.simpleCycle()
+ * 		separatingCycle		- Graph.separatingCycle()
+ * 		isBipartite			- Graph.isBipartite()
+ * 		getEdgeCount		- Graph.getEdgeCount() after an edge of a Graph is removed and
+ * 							  added back, answered from its edge counter
+ * 		FindPieces			- TestPlanarity.FindPieces for the separating cycle
+ * 		InterlacementGraph	- TestPlanarity.InterlacementGraph of those pieces
+ * 		isPlanar.<engine>	- a full test by each PlanarityTester
+ *
+ * The divide and conquer benchmarks (FindPieces, InterlacementGraph and isPlanar.dc) are
+ * superlinear, so they only run up to -dclimit vertices. Results are written as a JSON array
+ * with one object per benchmark, family and size, to compare runs between releases; by
+ * default to planarity-benchmark.json in the temporary directory.
+ *
+ * usage: java PlanarityBenchmark [-families grid,triangulation,wheel,k5,k33]
+ *            [-sizes 100,1000,...] [-warmup n] [-iterations n] [-time ms] [-dclimit n]
+ *            [-seed n] [-out file.json]
+ *
+ * @author Trevor Mack		(tmm9274@rit.edu)
+ * @author David Sweeney	(dfs7079@rit.edu)
+ *
+ */
+public class PlanarityBenchmark {
+
+	/**
+	 * One benchmarked operation. The result is kept so the JIT cannot drop the work.
+	 */
+	interface Operation {
+		Object run() throws Exception;
+	}
+
+	private String[] families = GraphGenerator.FAMILIES;
+	private int[] sizes = { 100, 1000, 10000, 100000, 1000000 };
+	private int warmup = 3;
+	private int iterations = 5;
+	private long iterationNanos = 200000000L;
+	private int dcLimit = 1000;
+	private long seed = 515;
+	private String out = new File(System.getProperty("java.io.tmpdir"), "planarity-benchmark.json").getPath();
+	//consumes operation results
+	private volatile int sink;
+	private final List<String> results = new ArrayList<String>();
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		PlanarityBenchmark benchmark = new PlanarityBenchmark();
+		try {
+			for( int i=0; i<args.length; i++ ) {
+				if( i+1 >= args.length ) throw new IllegalArgumentException(args[i]);
+				String value = args[++i];
+				if( args[i-1].equals("-families") ) benchmark.families = value.split(",");
+				else if( args[i-1].equals("-sizes") ) benchmark.sizes = parseInts(value);
+				else if( args[i-1].equals("-warmup") ) benchmark.warmup = Integer.parseInt(value);
+				else if( args[i-1].equals("-iterations") ) benchmark.iterations = Integer.parseInt(value);
+				else if( args[i-1].equals("-time") ) benchmark.iterationNanos = Long.parseLong(value) * 1000000L;
+				else if( args[i-1].equals("-dclimit") ) benchmark.dcLimit = Integer.parseInt(value);
+				else if( args[i-1].equals("-seed") ) benchmark.seed = Long.parseLong(value);
+				else if( args[i-1].equals("-out") ) benchmark.out = value;
+				else throw new IllegalArgumentException(args[i-1]);
+			}
+		} catch (IllegalArgumentException e) {
+			System.err.println("usage: java PlanarityBenchmark [-families grid,triangulation,wheel,k5,k33]");
+			System.err.println("           [-sizes 100,1000,...] [-warmup n] [-iterations n] [-time ms] [-dclimit n]");
+			System.err.println("           [-seed n] [-out file.json]");
+			System.exit(1);
+		}
+		try {
+			benchmark.runAll();
+		} catch (Exception e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+
+	private static int[] parseInts(String list) {
+		String[] parts = list.split(",");
+		int[] values = new int[parts.length];
+		for( int i=0; i<parts.length; i++ ) {
+			values[i] = Integer.parseInt(parts[i].trim());
+		}
+		return values;
+	}
+
+	/**
+	 * Runs all benchmarks for all families and sizes and writes the JSON results.
+	 */
+	void runAll() throws Exception {
+		for( String family : families ) {
+			for( int size : sizes ) {
+				final CompactGraph compact = new GraphGenerator(seed).generate(family, size);
+				final File file = File.createTempFile("planarity-" + family + "-" + size, ".txt");
+				file.deleteOnExit();
+				GraphGenerator.writeEdgeList(compact, file);
+				final Graph graph = new Graph(compact);
+				final Graph cycle = graph.separatingCycle();
+				boolean dc = compact.size() <= dcLimit;
+
+				measure("parse", family, compact, new Operation() {
+					public Object run() throws Exception { return new Graph(file); }
+				});
+				measure("simpleCycle", family, compact, new Operation() {
+					public Object run() { return graph.simpleCycle(); }
+				});
+				measure("separatingCycle", family, compact, new Operation() {
+					public Object run() { return graph.separatingCycle(); }
+				});
+				measure("isBipartite", family, compact, new Operation() {
+					public Object run() { return graph.isBipartite(); }
+				});
+				//an edge of the first vertex that has one
+				int u = 0;
+				while( u < compact.size() && compact.degree(u) == 0 ) u++;
+				if( u < compact.size() ) {
+					final Graph mutable = new Graph(compact);
+					final Object v1 = compact.getLabel(u), v2 = compact.getLabel(compact.target(compact.offset(u)));
+					measure("getEdgeCount", family, compact, new Operation() {
+						public Object run() {
+							mutable.removeEdge(v1, v2);
+							mutable.addEdge(v1, v2);
+							return mutable.getEdgeCount();
+						}
+					});
+				}
+				if( dc ) {
+					final List<Graph> pieces = TestPlanarity.FindPieces(graph, cycle);
+					measure("FindPieces", family, compact, new Operation() {
+						public Object run() { return TestPlanarity.FindPieces(graph, cycle); }
+					});
+					measure("InterlacementGraph", family, compact, new Operation() {
+						public Object run() { return TestPlanarity.InterlacementGraph(pieces, cycle); }
+					});
+				}
+				for( String name : new String[] { "dc", "lr" } ) {
+					final PlanarityTester engine = TestPlanarity.getEngine(name);
+					if( engine == null || (name.equals("dc") && !dc) ) continue;
+					measure("isPlanar." + name, family, compact, new Operation() {
+						public Object run() throws Exception { return engine.isPlanar(new Graph(compact)); }
+					});
+				}
+				file.delete();
+			}
+		}
+		writeResults();
+	}
+
+	/**
+	 * Measures one operation and records its result. An operation that throws is recorded
+	 * with its error message instead of timings.
+	 */
+	private void measure(String benchmark, String family, CompactGraph graph, Operation operation) {
+		double[] nanosPerOp = new double[iterations];
+		long operations = 0;
+		String error = null;
+		try {
+			for( int it=-warmup; it<iterations; it++ ) {
+				long count = 0;
+				long start = System.nanoTime();
+				long elapsed;
+				do {
+					Object result = operation.run();
+					sink += result == null ? 0 : 1;
+					count++;
+					elapsed = System.nanoTime() - start;
+				} while( elapsed < iterationNanos );
+				if( it >= 0 ) {
+					nanosPerOp[it] = (double)elapsed / count;
+					operations += count;
+				}
+			}
+		} catch (Throwable e) {
+			error = e.toString();
+		}
+		StringBuilder json = new StringBuilder();
+		json.append("  {\"benchmark\": \"").append(benchmark).append("\", \"family\": \"").append(family)
+			.append("\", \"vertices\": ").append(graph.size()).append(", \"edges\": ").append(graph.getEdgeCount());
+		if( error != null ) {
+			json.append(", \"error\": \"").append(error.replace("\\", "\\\\").replace("\"", "\\\"")).append("\"}");
+			System.err.println(benchmark + " " + family + " " + graph.size() + ": " + error);
+		}else {
+			double mean = 0, min = Double.MAX_VALUE, max = 0;
+			for( double t : nanosPerOp ) {
+				mean += t / iterations;
+				min = Math.min(min, t);
+				max = Math.max(max, t);
+			}
+			double variance = 0;
+			for( double t : nanosPerOp ) {
+				variance += (t - mean) * (t - mean) / Math.max(1, iterations-1);
+			}
+			json.append(", \"iterations\": ").append(iterations).append(", \"operations\": ").append(operations)
+				.append(", \"meanNanos\": ").append(Math.round(mean)).append(", \"minNanos\": ").append(Math.round(min))
+				.append(", \"maxNanos\": ").append(Math.round(max))
+				.append(", \"stdevNanos\": ").append(Math.round(Math.sqrt(variance))).append("}");
+			System.err.println(benchmark + " " + family + " " + graph.size() + ": " + Math.round(mean) + " ns/op");
+		}
+		results.add(json.toString());
+	}
+
+	private void writeResults() throws IOException {
+		PrintWriter writer = new PrintWriter(new FileWriter(out));
+		try {
+			writer.println("[");
+			for( int i=0; i<results.size(); i++ ) {
+				writer.println(results.get(i) + (i+1 < results.size() ? "," : ""));
+			}
+			writer.println("]");
+		} finally {
+			writer.close();
+		}
+		System.err.println("results written to " + out);
+	}
+}
@@ -0,0 +1,1004 @@
+/**
+ * filename: PlanarityChecks.java
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Self checks of the package, run as a program since the tree has no build tool to run unit
+ * tests with. The checks use the graphs of the test_cases directory, whose file names tell
+ * the expected answer (the nonplanar ones start with "nonplanar"), generated graphs (see
+ * GraphGenerator) and small graphs written in place:
+ *
+ * 		engines			- both engines, bare and behind the filters with and without
+ * 						  reduction, give the expected answer for every test case and
+ * 						  large generated graph, and agree with each other on random and
+ * 						  near planar generated graphs
+ * 		loaders			- EdgeListLoader reads a file whole, in small windows and from a
+ * 						  buffer into the graph its lines describe, and BinaryGraphFormat
+ * 						  reads back what it writes, also into an OffHeapStorage, and
+ * 						  GraphGenerator writes a self loop once
+ * 		loader errors	- a malformed edge list, in a file or a buffer, names its line, and
+ * 						  a binary file with a wrong magic number or version is refused
+ * 		batch inputs	- BatchRunner.listInputs finds the test cases by directory and by
+ * 						  relative and absolute globs
+ * 		certificates	- KuratowskiSubgraph finds a certificate that verify accepts, also
+ * 						  after write and read, and verify refuses broken certificates
+ * 		embeddings		- LeftRightTester.embed gives rotation systems that satisfy Euler's
+ * 						  formula, also after write and read
+ * 		parallel		- the divide and conquer engine answers random and generated graphs
+ * 						  alike in parallel, with every piece above the fork depth forked,
+ * 						  and sequentially
+ * 		mutation		- Graph answers like a plain adjacency model through random additions
+ * 						  and removals of edges, self loops and vertices, also right after
+ * 						  it was backed by a CompactGraph, and EdgeIndex like a HashMap
+ * 		incremental		- IncrementalPlanarGraph rejects exactly the edges that would make the
+ * 						  graph nonplanar, with tryAddEdges giving the same answers
+ * 		cache			- ResultCache evicts the least recently used answer, keeps answers of
+ * 						  different engines and filter chains apart and persists them
+ * 		filters			- every PlanarityFilter accepts, rejects or passes on graphs written
+ * 						  in place as its rule says
+ * 		reduction		- GraphReduction.expand turns a planar embedding of the kernel into a
+ * 						  planar embedding of the whole graph, on graphs whose kernel is
+ * 						  smaller and on graphs that reduce away
+ * 		server			- PlanarityServer answers 200, 400, 405, 500 and 503
+ * 		stream			- StreamRunner prints every record in input order, also records that
+ * 						  are malformed or that the engine fails on with an Error
+ *
+ * Every check prints "ok" or "FAIL" and the reason.
+ *
+ * usage: java PlanarityChecks [test_cases]
+ *
+ * The exit status is 1 if any check failed.
+ *
+ * @author Trevor Mack		(tmm9274@rit.edu)
+ * @author David Sweeney	(dfs7079@rit.edu)
+ *
+ */
+public class PlanarityChecks {
+
+	/**
+	 * One check; it fails by throwing.
+	 */
+	interface Check {
+		void run() throws Exception;
+	}
+
+	private final List<File> cases;
+	private int failures;
+
+	/**
+	 * @param cases	- the test case files
+	 */
+	PlanarityChecks(List<File> cases) {
+		this.cases = cases;
+	}
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		File directory = new File(args.length > 0 ? args[0] : "test_cases");
+		List<File> cases = new ArrayList<File>();
+		File[] files = directory.listFiles();
+		if( files != null ) {
+			Arrays.sort(files);
+			for( File file : files ) {
+				if( file.isFile() ) cases.add(file);
+			}
+		}
+		if( cases.isEmpty() ) {
+			System.err.println("usage: java PlanarityChecks [test_cases]");
+			System.exit(1);
+		}
+		PlanarityChecks checks = new PlanarityChecks(cases);
+		int failed = checks.runAll();
+		System.out.println(failed == 0 ? "all checks passed" : failed + " check(s) failed");
+		System.exit(failed == 0 ? 0 : 1);
+	}
+
+	/**
+	 * Runs every check.
+	 *
+	 * @return the number of checks that failed
+	 */
+	int runAll() {
+		check("engines", new Check() {
+			public void run() throws Exception { checkEngines(); }
+		});
+		check("loaders", new Check() {
+			public void run() throws Exception { checkLoaders(); }
+		});
+		check("loader errors", new Check() {
+			public void run() throws Exception { checkLoaderErrors(); }
+		});
+		check("batch inputs", new Check() {
+			public void run() throws Exception { checkBatchInputs(); }
+		});
+		check("certificates", new Check() {
+			public void run() throws Exception { checkCertificates(); }
+		});
+		check("embeddings", new Check() {
+			public void run() throws Exception { checkEmbeddings(); }
+		});
+		check("parallel", new Check() {
+			public void run() throws Exception { checkParallel(); }
+		});
+		check("mutation", new Check() {
+			public void run() throws Exception { checkMutation(); }
+		});
+		check("incremental", new Check() {
+			public void run() throws Exception { checkIncremental(); }
+		});
+		check("cache", new Check() {
+			public void run() throws Exception { checkCache(); }
+		});
+		check("filters", new Check() {
+			public void run() throws Exception { checkFilters(); }
+		});
+		check("reduction", new Check() {
+			public void run() throws Exception { checkReduction(); }
+		});
+		check("server", new Check() {
+			public void run() throws Exception { checkServer(); }
+		});
+		check("stream", new Check() {
+			public void run() throws Exception { checkStream(); }
+		});
+		return failures;
+	}
+
+	private void check(String name, Check check) {
+		try {
+			check.run();
+			System.out.println("ok      " + name);
+		} catch (Throwable e) {
+			failures++;
+			System.out.println("FAIL    " + name + ": " + e);
+		}
+	}
+
+	private static void expect(boolean condition, String message) {
+		if( !condition ) throw new AssertionError(message);
+	}
+
+	/**
+	 * @return the expected answer for a test case, from its name
+	 */
+	private static boolean isPlanarCase(File file) {
+		return !file.getName().startsWith("nonplanar");
+	}
+
+	private void checkEngines() throws Exception {
+		for( File file : cases ) {
+			for( String name : new String[] { "lr", "dc" } ) {
+				for( PlanarityTester engine : engines(name) ) {
+					expect(engine.isPlanar(new Graph(file)) == isPlanarCase(file), engine.getName() + " is wrong on " + file);
+				}
+			}
+		}
+		for( String family : GraphGenerator.FAMILIES ) {
+			CompactGraph graph = new GraphGenerator(515).generate(family, 1000);
+			boolean planar = !family.startsWith("k");
+			for( String name : new String[] { "lr", "dc" } ) {
+				for( PlanarityTester engine : engines(name) ) {
+					expect(engine.isPlanar(new Graph(graph)) == planar, engine.getName() + " is wrong on " + family);
+				}
+			}
+		}
+		//the engines agree on sparse random graphs and on graphs a few edges from planar
+		GraphGenerator generator = new GraphGenerator(515);
+		Random random = new Random(515);
+		PlanarityTester lr = TestPlanarity.getEngine("lr"), dc = TestPlanarity.getEngine("dc");
+		for( int g=0; g<400; g++ ) {
+			CompactGraph graph;
+			if( g % 2 == 0 ) {
+				int n = 5 + random.nextInt(36);
+				graph = generator.random(n, n + random.nextInt(2*n));
+			}else {
+				graph = generator.nearPlanar(g % 4 == 1 ? "triangulation" : "grid", 100 + random.nextInt(401));
+			}
+			expect(dc.isPlanar(new Graph(graph)) == lr.isPlanar(new Graph(graph)), "dc and lr disagree on generated graph " + g);
+		}
+	}
+
+	/**
+	 * @return the engine of the given name, bare and behind all filters with and without
+	 * 		   reduction
+	 */
+	private static PlanarityTester[] engines(String name) {
+		PlanarityTester engine = TestPlanarity.getEngine(name);
+		return new PlanarityTester[] { engine, new FilteredTester(engine, PlanarityFilters.FILTERS, false),
+			new FilteredTester(engine, PlanarityFilters.FILTERS, true) };
+	}
+
+	private void checkLoaders() throws Exception {
+		for( File file : cases ) {
+			//the graph the lines describe, built edge by edge
+			Graph lines = new Graph();
+			for( String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8) ) {
+				int space = line.indexOf(' ');
+				lines.addEdge(line.substring(0, space), line.substring(space+1));
+			}
+			CompactGraph text = EdgeListLoader.load(file);
+			sameGraph(lines.compact(), text, file.toString());
+			sameGraph(text, EdgeListLoader.load(ByteBuffer.wrap(Files.readAllBytes(file.toPath()))), "buffer of " + file);
+			sameGraph(text, EdgeListLoader.load(file, 64), "windows of " + file);
+			File binary = File.createTempFile("planarity-check", ".pgb");
+			try {
+				BinaryGraphFormat.write(text, binary);
+				expect(BinaryGraphFormat.isBinary(binary) && !BinaryGraphFormat.isBinary(file), "isBinary is wrong on " + file);
+				sameGraph(text, BinaryGraphFormat.load(binary), "binary of " + file);
+				sameGraph(text, BinaryGraphFormat.load(binary, 64), "windows of binary of " + file);
+				sameGraph(text, new Graph(binary).compact(), "Graph of binary of " + file);
+				OffHeapStorage storage = BinaryGraphFormat.loadOffHeap(binary, null);
+				try {
+					sameGraph(text, storage.getGraph(), "off heap binary of " + file);
+				} finally {
+					storage.close();
+				}
+			} finally {
+				binary.delete();
+			}
+		}
+		//GraphGenerator.writeEdgeList writes a self loop once, though its row lists it twice
+		Graph looped = new Graph();
+		looped.addEdge("a", "b");
+		looped.addEdge("b", "b");
+		File written = File.createTempFile("planarity-check", ".txt");
+		try {
+			GraphGenerator.writeEdgeList(looped.compact(), written);
+			List<String> lines = Files.readAllLines(written.toPath(), StandardCharsets.UTF_8);
+			expect(lines.size() == 2, "a graph with a self loop was written as " + lines);
+			sameGraph(looped.compact(), EdgeListLoader.load(written), "written graph with a self loop");
+		} finally {
+			written.delete();
+		}
+	}
+
+	/**
+	 * Compares two graphs by their vertex names and edges, whatever their vertex ids.
+	 */
+	private static void sameGraph(CompactGraph expected, CompactGraph actual, String what) {
+		expect(expected.size() == actual.size() && expected.getEdgeCount() == actual.getEdgeCount(),
+			what + " has " + actual.size() + " vertices and " + actual.getEdgeCount() + " edges");
+		for( int v=0; v<expected.size(); v++ ) {
+			int u = actual.indexOf(String.valueOf(expected.getLabel(v)));
+			expect(u >= 0, what + " lacks vertex " + expected.getLabel(v));
+			Set<String> neighbors = new HashSet<String>();
+			for( int i=expected.offset(v); i<expected.offset(v+1); i++ ) {
+				neighbors.add(String.valueOf(expected.getLabel(expected.target(i))));
+			}
+			Set<String> found = new HashSet<String>();
+			for( int i=actual.offset(u); i<actual.offset(u+1); i++ ) {
+				found.add(String.valueOf(actual.getLabel(actual.target(i))));
+			}
+			expect(neighbors.equals(found), what + " has other neighbors of " + expected.getLabel(v));
+		}
+	}
+
+	private void checkLoaderErrors() throws Exception {
+		File file = File.createTempFile("planarity-check", ".txt");
+		try {
+			Files.write(file.toPath(), "a b\r\nb c\nbad\nc d\n".getBytes(StandardCharsets.UTF_8));
+			EdgeListLoader.load(file);
+			expect(false, "a line without an edge was accepted");
+		} catch (Exception e) {
+			expect(e.getMessage().contains("line 3"), "error does not name line 3: " + e.getMessage());
+		} finally {
+			file.delete();
+		}
+		try {
+			EdgeListLoader.load(ByteBuffer.wrap("a b\r\nb c\nbad\nc d\n".getBytes(StandardCharsets.UTF_8)));
+			expect(false, "a line without an edge was accepted from a buffer");
+		} catch (Exception e) {
+			expect(e.getMessage().contains("line 3"), "error does not name line 3: " + e.getMessage());
+		}
+		File binary = File.createTempFile("planarity-check", ".pgb");
+		try {
+			BinaryGraphFormat.write(EdgeListLoader.load(cases.get(0)), binary);
+			corrupt(binary, 0, 0x12345678);
+			expect(!BinaryGraphFormat.isBinary(binary), "a wrong magic number is taken for a binary graph");
+			expectRefused(binary, "a wrong magic number");
+			corrupt(binary, 0, BinaryGraphFormat.MAGIC);
+			corrupt(binary, 4, BinaryGraphFormat.VERSION + 1);
+			expectRefused(binary, "a wrong version");
+		} finally {
+			binary.delete();
+		}
+	}
+
+	private static void corrupt(File file, long position, int value) throws IOException {
+		RandomAccessFile out = new RandomAccessFile(file, "rw");
+		try {
+			out.seek(position);
+			out.writeInt(value);
+		} finally {
+			out.close();
+		}
+	}
+
+	private static void expectRefused(File binary, String what) {
+		try {
+			BinaryGraphFormat.load(binary);
+			expect(false, "a binary graph with " + what + " was loaded");
+		} catch (IOException e) {
+			//refused
+		}
+	}
+
+	private void checkBatchInputs() throws Exception {
+		File directory = cases.get(0).getParentFile();
+		Set<File> expected = canonical(cases);
+		List<String> specs = new ArrayList<String>();
+		specs.add(directory.getPath());
+		specs.add(directory.getPath() + File.separator + "*.txt");
+		if( !directory.isAbsolute() ) specs.add("." + File.separator + directory.getPath() + File.separator + "*.txt");
+		specs.add(directory.getAbsolutePath() + File.separator + "*.txt");
+		for( String spec : specs ) {
+			expect(canonical(BatchRunner.listInputs(spec)).equals(expected), spec + " does not list the test cases");
+		}
+	}
+
+	private static Set<File> canonical(List<File> files) throws IOException {
+		Set<File> set = new HashSet<File>();
+		for( File file : files ) {
+			set.add(file.getCanonicalFile());
+		}
+		return set;
+	}
+
+	private void checkCertificates() throws Exception {
+		for( File file : cases ) {
+			Graph graph = new Graph(file);
+			KuratowskiSubgraph certificate = KuratowskiSubgraph.find(graph);
+			if( isPlanarCase(file) ) {
+				expect(certificate == null, "certificate found for planar " + file);
+				continue;
+			}
+			expect(certificate != null, "no certificate for " + file);
+			List<Edge> edges = certificate.getEdges();
+			expect(KuratowskiSubgraph.verify(graph, edges), "certificate of " + file + " is refused");
+			File written = File.createTempFile("planarity-check", ".cert");
+			try {
+				certificate.write(written);
+				expect(KuratowskiSubgraph.verify(graph, KuratowskiSubgraph.read(written)), "certificate of " + file + " is refused after read");
+			} finally {
+				written.delete();
+			}
+			List<Edge> shorter = new ArrayList<Edge>(edges);
+			shorter.remove(shorter.size() - 1);
+			expect(!KuratowskiSubgraph.verify(graph, shorter), "certificate of " + file + " without an edge is accepted");
+			List<Edge> foreign = new ArrayList<Edge>(edges);
+			foreign.set(0, new Edge("no such vertex", foreign.get(0).v2));
+			expect(!KuratowskiSubgraph.verify(graph, foreign), "certificate of " + file + " with a foreign edge is accepted");
+		}
+	}
+
+	private void checkEmbeddings() throws Exception {
+		LeftRightTester tester = new LeftRightTester();
+		for( File file : cases ) {
+			PlanarEmbedding embedding = tester.embed(new Graph(file));
+			if( !isPlanarCase(file) ) {
+				expect(embedding == null, "embedding found for nonplanar " + file);
+				continue;
+			}
+			expect(embedding != null && isPlanarEmbedding(embedding), "no planar embedding of " + file);
+			File written = File.createTempFile("planarity-check", ".emb");
+			try {
+				embedding.write(written);
+				PlanarEmbedding read = PlanarEmbedding.read(written);
+				expect(read.getFaceCount() == embedding.getFaceCount() && isPlanarEmbedding(read), "embedding of " + file + " changed after read");
+			} finally {
+				written.delete();
+			}
+		}
+		for( String family : new String[] { "grid", "triangulation", "wheel" } ) {
+			PlanarEmbedding embedding = tester.embed(new GraphGenerator(515).generate(family, 1000));
+			expect(embedding != null && isPlanarEmbedding(embedding), "no planar embedding of " + family);
+		}
+		//a triangulation has one embedding up to reflection, so turning one vertex around breaks it
+		CompactGraph graph = new GraphGenerator(515).generate("triangulation", 100);
+		PlanarEmbedding embedding = tester.embed(graph);
+		graph = embedding.getGraph();
+		int[] clockwise = new int[graph.offset(graph.size())];
+		for( int h=0; h<clockwise.length; h++ ) {
+			clockwise[h] = embedding.clockwise(h);
+		}
+		for( int h=graph.offset(0); h<graph.offset(1); h++ ) {
+			clockwise[embedding.clockwise(h)] = h;
+		}
+		expect(!isPlanarEmbedding(new PlanarEmbedding(graph, clockwise)), "a broken rotation passes as planar");
+	}
+
+	/**
+	 * Checks that the rotation at every vertex is one cycle through its half edges, and that
+	 * the faces satisfy Euler's formula n - m + f = 2 for every component with an edge.
+	 * Self loops are not part of an embedding and are left out.
+	 */
+	static boolean isPlanarEmbedding(PlanarEmbedding embedding) {
+		CompactGraph graph = embedding.getGraph();
+		int n = graph.size();
+		int[] component = new int[n];
+		for( int v=0; v<n; v++ ) {
+			component[v] = v;
+		}
+		long halfEdges = 0;
+		for( int v=0; v<n; v++ ) {
+			int start = -1, count = 0;
+			for( int i=graph.offset(v); i<graph.offset(v+1); i++ ) {
+				if( graph.target(i) == v ) continue;
+				if( start < 0 ) start = i;
+				count++;
+				int a = find(component, v), b = find(component, graph.target(i));
+				component[a] = b;
+			}
+			halfEdges += count;
+			int h = start;
+			for( int k=0; k<count; k++ ) {
+				h = embedding.clockwise(h);
+				if( h < graph.offset(v) || h >= graph.offset(v+1) || graph.target(h) == v ) return false;
+				if( h == start && k < count-1 ) return false;
+			}
+			if( h != start ) return false;
+		}
+		int components = 0, isolated = 0;
+		for( int v=0; v<n; v++ ) {
+			if( find(component, v) != v ) continue;
+			components++;
+			boolean edge = false;
+			for( int i=graph.offset(v); i<graph.offset(v+1) && !edge; i++ ) {
+				edge = graph.target(i) != v;
+			}
+			if( !edge ) isolated++;
+		}
+		return n - halfEdges/2 + embedding.getFaceCount() == 2L*(components - isolated) + isolated;
+	}
+
+	private static int find(int[] component, int v) {
+		while( component[v] != v ) {
+			component[v] = component[component[v]];
+			v = component[v];
+		}
+		return v;
+	}
+
+	private void checkParallel() throws Exception {
+		List<CompactGraph> graphs = new ArrayList<CompactGraph>();
+		Random random = new Random(515);
+		for( int g=0; g<300; g++ ) {
+			int n = 5 + random.nextInt(25);
+			int m = n + random.nextInt(2*n);
+			Graph graph = new Graph();
+			for( int e=0; e<m; e++ ) {
+				int a = random.nextInt(n), b = random.nextInt(n);
+				if( a != b ) graph.addEdge(a, b);
+			}
+			graphs.add(graph.compact());
+		}
+		for( String family : GraphGenerator.FAMILIES ) {
+			graphs.add(new GraphGenerator(515).generate(family, 200));
+		}
+		PlanarityTester sequential = new DivideAndConquerTester(false);
+		PlanarityTester parallel = new DivideAndConquerTester(true);
+		int cutoff = Graph.pieceCutoff;
+		Graph.pieceCutoff = 1;
+		try {
+			for( int g=0; g<graphs.size(); g++ ) {
+				String expected = answer(sequential, graphs.get(g));
+				for( int run=0; run<3; run++ ) {
+					String found = answer(parallel, graphs.get(g));
+					expect(found.equals(expected), "graph " + g + " is " + found + " in parallel and " + expected + " sequentially");
+				}
+			}
+		} finally {
+			Graph.pieceCutoff = cutoff;
+		}
+	}
+
+	/**
+	 * @return planar, nonplanar or the class of the exception the tester threw
+	 */
+	private static String answer(PlanarityTester tester, CompactGraph graph) {
+		try {
+			return tester.isPlanar(new Graph(graph)) ? "planar" : "nonplanar";
+		} catch (Exception e) {
+			return e.getClass().getName();
+		}
+	}
+
+	private void checkMutation() throws Exception {
+		Random random = new Random(515);
+		for( int round=0; round<200; round++ ) {
+			//the model: the neighbors of each vertex, a self loop making a vertex its own neighbor
+			Map<Object, Set<Object>> model = new HashMap<Object, Set<Object>>();
+			Graph graph = new Graph();
+			for( int op=0; op<100; op++ ) {
+				Integer a = random.nextInt(12), b = random.nextInt(12);
+				if( random.nextInt(10) == 0 ) b = a;
+				int kind = random.nextInt(10);
+				if( kind < 5 ) {
+					boolean added = !(model.containsKey(a) && model.get(a).contains(b));
+					expect(graph.addEdge(a, b) == added, "addEdge " + a + " " + b + " returned " + !added);
+					if( !model.containsKey(a) ) model.put(a, new HashSet<Object>());
+					if( !model.containsKey(b) ) model.put(b, new HashSet<Object>());
+					model.get(a).add(b);
+					model.get(b).add(a);
+				}else if( kind < 8 ) {
+					boolean removed = model.containsKey(a) && model.get(a).contains(b);
+					expect(graph.removeEdge(a, b) == removed, "removeEdge " + a + " " + b + " returned " + !removed);
+					if( removed ) {
+						model.get(a).remove(b);
+						model.get(b).remove(a);
+					}
+				}else if( kind < 9 ) {
+					boolean removed = model.containsKey(a);
+					expect(graph.removeVertex(a) == removed, "removeVertex " + a + " returned " + !removed);
+					if( removed ) {
+						for( Object w : model.remove(a) ) {
+							if( !w.equals(a) ) model.get(w).remove(a);
+						}
+					}
+				}else {
+					//go on from the compact form, as a graph loaded from a file does
+					graph = new Graph(graph.compact());
+				}
+				sameAsModel(graph, model, "round " + round + " operation " + op);
+			}
+		}
+		//keys in a small range collide, so removals shift the entries after them back
+		EdgeIndex index = new EdgeIndex();
+		Map<Long, Integer> map = new HashMap<Long, Integer>();
+		for( int op=0; op<100000; op++ ) {
+			long key = EdgeIndex.key(random.nextInt(40), random.nextInt(40));
+			if( random.nextBoolean() ) {
+				index.put(key, op);
+				map.put(key, op);
+			}else {
+				Integer value = map.remove(key);
+				expect(index.remove(key) == (value == null ? -1 : value), "EdgeIndex.remove is wrong at operation " + op);
+			}
+			long probe = EdgeIndex.key(random.nextInt(40), random.nextInt(40));
+			Integer value = map.get(probe);
+			expect(index.get(probe) == (value == null ? -1 : value) && index.containsKey(probe) == (value != null),
+				"EdgeIndex.get is wrong at operation " + op);
+			expect(index.size() == map.size(), "EdgeIndex has " + index.size() + " entries for " + map.size());
+		}
+	}
+
+	/**
+	 * Compares a graph with the adjacency model, through its own queries and its compact form.
+	 */
+	private static void sameAsModel(Graph graph, Map<Object, Set<Object>> model, String when) {
+		expect(graph.size() == model.size(), when + ": " + graph.size() + " vertices for " + model.size());
+		int edges = 0;
+		for( Object v : model.keySet() ) {
+			List<Object> neighbors = graph.getNeighbors(v);
+			Set<Object> expected = model.get(v);
+			//a self loop is listed twice
+			int loops = expected.contains(v) ? 1 : 0;
+			expect(neighbors.size() == expected.size() + loops && expected.containsAll(neighbors),
+				when + ": neighbors of " + v + " are " + neighbors + " for " + expected);
+			for( Object w : model.keySet() ) {
+				expect(graph.isEdge(v, w) == expected.contains(w), when + ": isEdge " + v + " " + w + " is " + !expected.contains(w));
+			}
+			edges += expected.size() + loops;
+		}
+		expect(graph.getEdgeCount() == edges/2, when + ": " + graph.getEdgeCount() + " edges for " + edges/2);
+		CompactGraph compact = graph.compact();
+		for( Object v : model.keySet() ) {
+			int u = compact.indexOf(v);
+			Set<Object> found = new HashSet<Object>();
+			for( int i=compact.offset(u); i<compact.offset(u+1); i++ ) {
+				found.add(compact.getLabel(compact.target(i)));
+			}
+			expect(found.equals(model.get(v)), when + ": compact neighbors of " + v + " are " + found);
+		}
+	}
+
+	private void checkIncremental() throws Exception {
+		IncrementalPlanarGraph k5 = new IncrementalPlanarGraph();
+		int added = 0;
+		for( int a=1; a<=5; a++ ) {
+			for( int b=a+1; b<=5; b++ ) {
+				boolean last = a == 4;
+				expect(k5.tryAddEdge(a, b) != last, "edge " + a + " " + b + " of K5 is " + (last ? "accepted" : "rejected"));
+				if( !last ) added++;
+			}
+		}
+		expect(k5.getEdgeCount() == added, "K5 minus an edge has " + k5.getEdgeCount() + " edges");
+		List<Edge> k33 = new ArrayList<Edge>();
+		for( int a=0; a<3; a++ ) {
+			for( int b=0; b<3; b++ ) {
+				k33.add(new Edge("a" + a, "b" + b));
+			}
+		}
+		boolean[] accepted = new IncrementalPlanarGraph().tryAddEdges(k33);
+		for( int e=0; e<accepted.length; e++ ) {
+			expect(accepted[e] == (e < accepted.length-1), "edge " + e + " of K3,3 is " + (accepted[e] ? "accepted" : "rejected"));
+		}
+		//a batch gives the answers of adding its edges one by one, and leaves a planar graph
+		LeftRightTester tester = new LeftRightTester();
+		for( String family : new String[] { "triangulation", "k5", "k33" } ) {
+			CompactGraph graph = new GraphGenerator(515).generate(family, 300);
+			List<Edge> edges = new Graph(graph).getEdges();
+			edges.add(new Edge(graph.getLabel(0), graph.getLabel(graph.size()-1)));
+			edges.add(new Edge(graph.getLabel(1), graph.getLabel(graph.size()/2)));
+			Collections.shuffle(edges, new Random(515));
+			IncrementalPlanarGraph single = new IncrementalPlanarGraph();
+			IncrementalPlanarGraph batch = new IncrementalPlanarGraph();
+			boolean[] together = batch.tryAddEdges(edges);
+			for( int e=0; e<edges.size(); e++ ) {
+				expect(single.tryAddEdge(edges.get(e).v1, edges.get(e).v2) == together[e], "tryAddEdges differs on edge " + e + " of " + family);
+			}
+			expect(tester.isPlanar(batch.toGraph()), "tryAddEdges made " + family + " nonplanar");
+			expect(single.getEdgeCount() == batch.getEdgeCount(), "tryAddEdges kept other edges of " + family);
+		}
+	}
+
+	private void checkCache() throws Exception {
+		PlanarityTester engine = TestPlanarity.getEngine("lr");
+		Graph first = new Graph(cases.get(0)), second = new Graph(cases.get(1)), third = new Graph(cases.get(2));
+		ResultCache cache = new ResultCache(2, false);
+		cache.isPlanar(engine, first);
+		cache.isPlanar(engine, second);
+		cache.isPlanar(engine, first);
+		//evicts the second graph, which is now the least recently used
+		cache.isPlanar(engine, third);
+		cache.isPlanar(engine, first);
+		expect(cache.size() == 2 && cache.getHits() == 2 && cache.getMisses() == 3, "LRU is wrong: " + cache.getSummary());
+		cache.isPlanar(engine, second);
+		expect(cache.getMisses() == 4, "evicted graph answered: " + cache.getSummary());
+		//the cache now holds first and second
+		File file = File.createTempFile("planarity-check", ".cache");
+		try {
+			cache.save(file);
+			ResultCache loaded = new ResultCache(10, false);
+			loaded.load(file);
+			expect(loaded.size() == 2, "loaded " + loaded.size() + " answers");
+			expect(loaded.isPlanar(engine, first) == isPlanarCase(cases.get(0)) && loaded.isPlanar(engine, second) == isPlanarCase(cases.get(1)),
+				"loaded answers are wrong");
+			expect(loaded.getHits() == 2 && loaded.getMisses() == 0, "loaded answers are missed: " + loaded.getSummary());
+			loaded.isPlanar(TestPlanarity.getEngine("dc"), first);
+			expect(loaded.getMisses() == 1, "answer shared between engines: " + loaded.getSummary());
+			loaded.isPlanar(new FilteredTester(engine, PlanarityFilters.FILTERS, false), first);
+			expect(loaded.getMisses() == 2, "answer shared between filtered and bare engine: " + loaded.getSummary());
+			loaded.isPlanar(new FilteredTester(engine, PlanarityFilters.FILTERS, true), first);
+			expect(loaded.getMisses() == 3, "answer shared with and without reduction: " + loaded.getSummary());
+			Files.write(file.toPath(), "not a cache".getBytes(StandardCharsets.UTF_8));
+			try {
+				loaded.load(file);
+				expect(false, "a file that is no cache was loaded");
+			} catch (IOException e) {
+				//refused
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	private void checkFilters() throws Exception {
+		//K3,3 with one edge less has 8 edges
+		Graph nearK33 = completeBipartite(3, 3);
+		nearK33.removeEdge(0, 3);
+		expectFilter(PlanarityFilters.SMALL, complete(4), Boolean.TRUE, "K4");
+		expectFilter(PlanarityFilters.SMALL, nearK33, Boolean.TRUE, "K3,3 minus an edge");
+		expectFilter(PlanarityFilters.SMALL, complete(5), null, "K5");
+
+		expectFilter(PlanarityFilters.EDGES, complete(5), Boolean.FALSE, "K5");
+		//K5 with one edge less has exactly 3n-6 edges
+		Graph nearK5 = complete(5);
+		nearK5.removeEdge(0, 1);
+		expectFilter(PlanarityFilters.EDGES, nearK5, null, "K5 minus an edge");
+		expectFilter(PlanarityFilters.EDGES, completeBipartite(3, 3), null, "K3,3");
+		expectFilter(PlanarityFilters.EDGES, grid(5), null, "5x5 grid");
+
+		Graph tree = path(20, 0);
+		tree.addEdge(5, 100);
+		tree.addEdge(5, 101);
+		expectFilter(PlanarityFilters.FOREST, tree, Boolean.TRUE, "tree");
+		expectFilter(PlanarityFilters.FOREST, cycle(20), Boolean.TRUE, "cycle");
+		expectFilter(PlanarityFilters.FOREST, complete(4), null, "K4");
+
+		//a cycle with two chords has only 4 vertices of degree 3
+		Graph chords = cycle(20);
+		chords.addEdge(0, 10);
+		chords.addEdge(5, 15);
+		//K5 with a long path attached has 2-core K5
+		Graph pendantK5 = complete(5);
+		pendantK5.addEdge(0, 100);
+		pendantK5.addGraph(path(20, 100));
+		expectFilter(PlanarityFilters.DEGREES, chords, Boolean.TRUE, "cycle with two chords");
+		expectFilter(PlanarityFilters.DEGREES, pendantK5, Boolean.FALSE, "K5 with a path attached");
+		expectFilter(PlanarityFilters.DEGREES, grid(5), null, "5x5 grid");
+
+		expectFilter(PlanarityFilters.BIPARTITE, completeBipartite(3, 3), Boolean.FALSE, "K3,3");
+		//K2,3 has exactly 2n-4 edges
+		expectFilter(PlanarityFilters.BIPARTITE, completeBipartite(2, 3), null, "K2,3");
+		expectFilter(PlanarityFilters.BIPARTITE, grid(5), null, "5x5 grid");
+		expectFilter(PlanarityFilters.BIPARTITE, complete(5), null, "K5");
+
+		//a fan, a path with every vertex joined to a hub, is outerplanar
+		Graph fan = path(20, 0);
+		for( int v=0; v<20; v++ ) {
+			fan.addEdge(100, v);
+		}
+		expectFilter(PlanarityFilters.SERIES_PARALLEL, completeBipartite(2, 3), Boolean.TRUE, "K2,3");
+		expectFilter(PlanarityFilters.SERIES_PARALLEL, fan, Boolean.TRUE, "fan");
+		expectFilter(PlanarityFilters.SERIES_PARALLEL, complete(4), null, "K4");
+		expectFilter(PlanarityFilters.SERIES_PARALLEL, completeBipartite(3, 3), null, "K3,3");
+	}
+
+	private void checkReduction() throws Exception {
+		List<CompactGraph> graphs = new ArrayList<CompactGraph>();
+		for( File file : cases ) {
+			if( isPlanarCase(file) ) graphs.add(new Graph(file).compact());
+		}
+		Random random = new Random(515);
+		for( String family : new String[] { "grid", "triangulation", "wheel" } ) {
+			graphs.add(subdivide(new GraphGenerator(515).generate(family, 500), random));
+		}
+		Graph fan = path(20, 0);
+		for( int v=0; v<20; v++ ) {
+			fan.addEdge(100, v);
+		}
+		graphs.add(fan.compact());
+		int shrunk = 0, complete = 0;
+		for( CompactGraph graph : graphs ) {
+			GraphReduction reduction = new GraphReduction(graph);
+			CompactGraph kernel = reduction.getKernel();
+			if( reduction.isComplete() ) {
+				complete++;
+			}else if( kernel.size() < graph.size() ) {
+				shrunk++;
+			}
+			PlanarEmbedding embedding = reduction.expand(new LeftRightTester().embed(kernel));
+			CompactGraph expanded = embedding.getGraph();
+			expect(expanded.size() == graph.size() && expanded.getEdgeCount() == graph.getEdgeCount(),
+				"expanded embedding has " + expanded.size() + " vertices and " + expanded.getEdgeCount() + " edges");
+			expect(isPlanarEmbedding(embedding), "expanded embedding is not planar");
+		}
+		expect(shrunk >= 3 && complete >= 1, "only " + shrunk + " graphs reduced to a smaller kernel and " + complete + " away");
+	}
+
+	/**
+	 * @return the graph with about a third of its edges subdivided and a pendant path at
+	 * 		   about a tenth of its vertices
+	 */
+	private static CompactGraph subdivide(CompactGraph graph, Random random) {
+		Graph subdivided = new Graph();
+		int next = graph.size();
+		for( int v=0; v<graph.size(); v++ ) {
+			subdivided.addVertex(v);
+			for( int i=graph.offset(v); i<graph.offset(v+1); i++ ) {
+				int w = graph.target(i);
+				if( w < v ) continue;
+				if( random.nextInt(3) == 0 ) {
+					subdivided.addEdge(v, next);
+					subdivided.addEdge(next++, w);
+				}else {
+					subdivided.addEdge(v, w);
+				}
+			}
+			if( random.nextInt(10) == 0 ) {
+				subdivided.addEdge(v, next);
+				subdivided.addEdge(next, next+1);
+				next += 2;
+			}
+		}
+		return subdivided.compact();
+	}
+
+	private static void expectFilter(PlanarityFilter filter, Graph graph, Boolean expected, String what) {
+		Boolean found = filter.test(graph.compact());
+		expect(found == null ? expected == null : found.equals(expected), filter.getName() + " gives " + found + " for " + what);
+	}
+
+	private static Graph complete(int n) {
+		Graph graph = new Graph();
+		for( int v=0; v<n; v++ ) {
+			for( int w=v+1; w<n; w++ ) {
+				graph.addEdge(v, w);
+			}
+		}
+		return graph;
+	}
+
+	private static Graph completeBipartite(int a, int b) {
+		Graph graph = new Graph();
+		for( int v=0; v<a; v++ ) {
+			for( int w=a; w<a+b; w++ ) {
+				graph.addEdge(v, w);
+			}
+		}
+		return graph;
+	}
+
+	/**
+	 * @return the path on the n vertices first..first+n-1
+	 */
+	private static Graph path(int n, int first) {
+		Graph graph = new Graph();
+		for( int v=first; v<first+n-1; v++ ) {
+			graph.addEdge(v, v+1);
+		}
+		return graph;
+	}
+
+	private static Graph cycle(int n) {
+		Graph graph = path(n, 0);
+		graph.addEdge(n-1, 0);
+		return graph;
+	}
+
+	/**
+	 * @return the k by k grid
+	 */
+	private static Graph grid(int k) {
+		Graph graph = new Graph();
+		for( int v=0; v<k*k; v++ ) {
+			if( v % k < k-1 ) graph.addEdge(v, v+1);
+			if( v + k < k*k ) graph.addEdge(v, v+k);
+		}
+		return graph;
+	}
+
+	private void checkStream() throws Exception {
+		//the largest graph first, so the small ones after it finish before it
+		List<File> records = new ArrayList<File>(cases);
+		Collections.sort(records, new Comparator<File>() {
+			public int compare(File a, File b) {
+				return Long.compare(b.length(), a.length());
+			}
+		});
+		ByteArrayOutputStream input = new ByteArrayOutputStream();
+		List<String> expected = new ArrayList<String>();
+		for( int round=0; round<3; round++ ) {
+			for( File file : records ) {
+				input.write(Files.readAllBytes(file.toPath()));
+				input.write("\n\n".getBytes(StandardCharsets.UTF_8));
+				expected.add(isPlanarCase(file) ? "planar" : "nonplanar");
+			}
+			input.write("bad\n\n".getBytes(StandardCharsets.UTF_8));
+			expected.add("error");
+			input.write("boom a\n\n".getBytes(StandardCharsets.UTF_8));
+			expected.add("error");
+		}
+		final PlanarityTester engine = TestPlanarity.getEngine("lr");
+		//fails on a vertex "boom" with an Error, which must not stop the stream
+		PlanarityTester failing = new PlanarityTester() {
+			public boolean isPlanar(Graph graph) throws PlanarityException {
+				if( graph.compact().indexOf("boom") >= 0 ) throw new OutOfMemoryError("boom");
+				return engine.isPlanar(graph);
+			}
+
+			public String getName() {
+				return engine.getName();
+			}
+		};
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		PrintStream out = new PrintStream(output, true, "UTF-8");
+		StreamRunner runner = new StreamRunner(failing, 3, out);
+		expect(!runner.run(new ByteArrayInputStream(input.toByteArray())), "malformed records were not reported");
+		String[] lines = new String(output.toByteArray(), StandardCharsets.UTF_8).split("\n");
+		expect(lines.length == expected.size(), lines.length + " lines for " + expected.size() + " records");
+		for( int r=0; r<lines.length; r++ ) {
+			String[] fields = lines[r].trim().split("\t");
+			expect(fields[0].equals(String.valueOf(r+1)) && fields[1].equals(expected.get(r)), "line " + (r+1) + " is " + lines[r].trim());
+		}
+	}
+
+	private void checkServer() throws Exception {
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final PlanarityTester engine = TestPlanarity.getEngine("lr");
+		//holds graphs with a vertex "block" until released, and fails on a vertex "boom"
+		PlanarityTester blocking = new PlanarityTester() {
+			public boolean isPlanar(Graph graph) throws PlanarityException {
+				if( graph.compact().indexOf("boom") >= 0 ) throw new IllegalStateException("boom");
+				if( graph.compact().indexOf("block") >= 0 ) {
+					started.countDown();
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				return engine.isPlanar(graph);
+			}
+
+			public String getName() {
+				return engine.getName();
+			}
+		};
+		PlanarityServer server = new PlanarityServer(blocking, new InetSocketAddress("127.0.0.1", 0), 1, 1);
+		server.start();
+		try {
+			final URL url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/planarity");
+			expect(request(url, "POST", "a b\nb c\nc a\n").startsWith("200 planar"), "triangle is not planar");
+			expect(request(url, "POST", new String(Files.readAllBytes(cases.get(0).toPath()), StandardCharsets.UTF_8))
+				.startsWith("200 " + (isPlanarCase(cases.get(0)) ? "planar" : "nonplanar")), "wrong answer for " + cases.get(0));
+			expect(request(url, "POST", "bad\n").startsWith("400 "), "malformed edge list is not answered 400");
+			expect(request(url, "GET", null).startsWith("405 "), "GET is not answered 405");
+			expect(request(url, "POST", "boom a\n").startsWith("500 "), "engine failure is not answered 500");
+			//one request takes the worker and one the queue, so the next is refused
+			final String[] answers = new String[2];
+			Thread[] clients = new Thread[2];
+			for( int c=0; c<2; c++ ) {
+				final int client = c;
+				clients[c] = new Thread() {
+					public void run() {
+						try {
+							answers[client] = request(url, "POST", "block a\n");
+						} catch (IOException e) {
+							answers[client] = e.toString();
+						}
+					}
+				};
+				clients[c].start();
+				if( c == 0 ) started.await();
+				else Thread.sleep(500);
+			}
+			String busy = request(url, "POST", "a b\n");
+			release.countDown();
+			for( Thread client : clients ) {
+				client.join();
+			}
+			expect(busy.startsWith("503 "), "full queue answered " + busy.trim());
+			expect(answers[0].startsWith("200 planar") && answers[1].startsWith("200 planar"), "queued requests answered " + answers[0].trim() + ", " + answers[1].trim());
+		} finally {
+			release.countDown();
+			server.stop(1);
+		}
+	}
+
+	/**
+	 * @return the status and body of a request, separated by a space
+	 */
+	private static String request(URL url, String method, String body) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection)url.openConnection();
+		connection.setRequestMethod(method);
+		if( body != null ) {
+			connection.setDoOutput(true);
+			OutputStream out = connection.getOutputStream();
+			out.write(body.getBytes(StandardCharsets.UTF_8));
+			out.close();
+		}
+		int status = connection.getResponseCode();
+		InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+		ByteArrayOutputStream text = new ByteArrayOutputStream();
+		if( in != null ) {
+			byte[] buffer = new byte[1 << 12];
+			for( int read; (read = in.read(buffer)) > 0; ) {
+				text.write(buffer, 0, read);
+			}
+			in.close();
+		}
+		connection.disconnect();
+		return status + " " + new String(text.toByteArray(), StandardCharsets.UTF_8);
+	}
+}
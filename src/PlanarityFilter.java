@@ -0,0 +1,30 @@
+/**
+ * filename: PlanarityFilter.java
+ */
+
+/**
+ * A PlanarityFilter is a cheap rule that settles the planarity of some graphs without
+ * running a full PlanarityTester, such as the 3n-6 edge bound. Filters are chained in front
+ * of an engine by FilteredTester; see PlanarityFilters for the available rules.
+ * 
+ * @author Trevor Mack		(tmm9274@rit.edu)
+ * @author David Sweeney	(dfs7079@rit.edu)
+ *
+ */
+public interface PlanarityFilter {
+
+	/**
+	 * Applies the rule to a graph. A filter must only answer when the answer is certain.
+	 * 
+	 * @param 	graph		- the graph to test
+	 * @return	TRUE		- graph is planar
+	 * 			FALSE		- graph is not planar
+	 * 			null		- the rule does not apply, the graph goes on to the next filter
+	 */
+	public Boolean test(CompactGraph graph);
+
+	/**
+	 * @return the short name used to select this filter on the command line
+	 */
+	public String getName();
+}
@@ -0,0 +1,230 @@
+/**
+ * filename: PlanarityFilters.java
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The PlanarityFilter rules, each linear in the size of the graph. Self loops never affect
+ * planarity and are ignored by all of them; apart from loops the graphs are simple, as every
+ * CompactGraph built by this package is.
+ *
+ * 		small			- accepts graphs with at most 4 vertices or at most 8 edges, since K5
+ * 						  has 10 edges and K3,3 has 9
+ * 		edges			- rejects graphs with more than 3n-6 edges
+ * 		forest			- accepts graphs whose every component has at most as many edges as
+ * 						  vertices: forests, cycles and single cycles with trees attached
+ * 		degrees			- accepts graphs with fewer than 5 vertices of degree 4 or more and
+ * 						  fewer than 6 of degree 3 or more, too few for the branch vertices of
+ * 						  a subdivided K5 or K3,3, and rejects graphs whose 2-core (the graph
+ * 						  left after repeatedly removing vertices of degree at most 1) has
+ * 						  more than 3n-6 edges
+ * 		bipartite		- rejects bipartite graphs, which have no triangles, whose 2-core has
+ * 						  more than 2n-4 edges
+ * 		series-parallel	- accepts graphs without a K4 minor (at most 2n-3 edges), which
+ * 						  GraphReduction reduces to nothing. Every outerplanar graph is among
+ * 						  them.
+ *
+ * FILTERS lists them cheapest first, the order FilteredTester applies them in by default.
+ *
+ * @author Trevor Mack		(tmm9274@rit.edu)
+ * @author David Sweeney	(dfs7079@rit.edu)
+ *
+ */
+public class PlanarityFilters {
+
+	public static final PlanarityFilter SMALL = new PlanarityFilter() {
+		public Boolean test(CompactGraph graph) {
+			return graph.size() <= 4 || simpleEdgeCount(graph) <= 8 ? Boolean.TRUE : null;
+		}
+		public String getName() {
+			return "small";
+		}
+	};
+
+	public static final PlanarityFilter EDGES = new PlanarityFilter() {
+		public Boolean test(CompactGraph graph) {
+			return exceeds(graph.size(), simpleEdgeCount(graph), 3, 6) ? Boolean.FALSE : null;
+		}
+		public String getName() {
+			return "edges";
+		}
+	};
+
+	public static final PlanarityFilter FOREST = new PlanarityFilter() {
+		public Boolean test(CompactGraph graph) {
+			return isPseudoforest(graph) ? Boolean.TRUE : null;
+		}
+		public String getName() {
+			return "forest";
+		}
+	};
+
+	public static final PlanarityFilter DEGREES = new PlanarityFilter() {
+		public Boolean test(CompactGraph graph) {
+			int atLeast3 = 0, atLeast4 = 0;
+			for( int v=0; v<graph.size(); v++ ) {
+				int degree = simpleDegree(graph, v);
+				if( degree >= 3 ) atLeast3++;
+				if( degree >= 4 ) atLeast4++;
+			}
+			if( atLeast3 < 6 && atLeast4 < 5 ) return Boolean.TRUE;
+			int[] core = coreSize(graph);
+			return exceeds(core[0], core[1], 3, 6) ? Boolean.FALSE : null;
+		}
+		public String getName() {
+			return "degrees";
+		}
+	};
+
+	public static final PlanarityFilter BIPARTITE = new PlanarityFilter() {
+		public Boolean test(CompactGraph graph) {
+			int[] core = coreSize(graph);
+			return exceeds(core[0], core[1], 2, 4) && graph.isBipartite() ? Boolean.FALSE : null;
+		}
+		public String getName() {
+			return "bipartite";
+		}
+	};
+
+	public static final PlanarityFilter SERIES_PARALLEL = new PlanarityFilter() {
+		public Boolean test(CompactGraph graph) {
+			return isSeriesParallel(graph) ? Boolean.TRUE : null;
+		}
+		public String getName() {
+			return "series-parallel";
+		}
+	};
+
+	//all filters, cheapest first
+	public static final PlanarityFilter[] FILTERS = { SMALL, EDGES, FOREST, DEGREES, BIPARTITE, SERIES_PARALLEL };
+
+	private PlanarityFilters() {
+	}
+
+	/**
+	 * Selects filters by name.
+	 *
+	 * @param names	- comma separated filter names, "all" for FILTERS or "none"
+	 * @return the filters in the given order, or null if a name is unknown
+	 */
+	public static PlanarityFilter[] getFilters(String names) {
+		if( names.equals("all") ) return FILTERS.clone();
+		if( names.equals("none") ) return new PlanarityFilter[0];
+		List<PlanarityFilter> filters = new ArrayList<PlanarityFilter>();
+		for( String name : names.split(",") ) {
+			PlanarityFilter found = null;
+			for( PlanarityFilter filter : FILTERS ) {
+				if( filter.getName().equals(name.trim()) ) found = filter;
+			}
+			if( found == null ) return null;
+			filters.add(found);
+		}
+		return filters.toArray(new PlanarityFilter[filters.size()]);
+	}
+
+	/**
+	 * @return true if a graph of at least 3 vertices has more than factor*n - constant edges
+	 */
+	private static boolean exceeds(int n, long m, int factor, int constant) {
+		return n >= 3 && m > (long)factor*n - constant;
+	}
+
+	private static int simpleDegree(CompactGraph graph, int v) {
+		int degree = 0;
+		for( int i=graph.offset(v); i<graph.offset(v+1); i++ ) {
+			if( graph.target(i) != v ) degree++;
+		}
+		return degree;
+	}
+
+	/**
+	 * @return the number of edges that are not self loops
+	 */
+	static int simpleEdgeCount(CompactGraph graph) {
+		int arcs = 0;
+		for( int v=0; v<graph.size(); v++ ) {
+			arcs += simpleDegree(graph, v);
+		}
+		return arcs/2;
+	}
+
+	/**
+	 * Counts the vertices and edges of the 2-core by peeling vertices of degree at most 1.
+	 *
+	 * @return {vertices, edges} of the 2-core
+	 */
+	static int[] coreSize(CompactGraph graph) {
+		int n = graph.size();
+		int[] degree = new int[n];
+		int[] stack = new int[n];
+		int top = 0, edges = 0;
+		for( int v=0; v<n; v++ ) {
+			degree[v] = simpleDegree(graph, v);
+			edges += degree[v];
+			if( degree[v] <= 1 ) stack[top++] = v;
+		}
+		edges /= 2;
+		int vertices = n;
+		boolean[] removed = new boolean[n];
+		while( top > 0 ) {
+			int v = stack[--top];
+			removed[v] = true;
+			vertices--;
+			for( int i=graph.offset(v); i<graph.offset(v+1); i++ ) {
+				int w = graph.target(i);
+				if( w == v || removed[w] ) continue;
+				edges--;
+				//push w once, when its degree first drops to 1
+				if( --degree[w] == 1 ) stack[top++] = w;
+			}
+		}
+		return new int[] { vertices, edges };
+	}
+
+	/**
+	 * Checks with a union-find over the edges that no component has more edges than
+	 * vertices.
+	 */
+	static boolean isPseudoforest(CompactGraph graph) {
+		int n = graph.size();
+		int[] parent = new int[n];
+		//edges minus vertices of each component, kept at its root
+		int[] excess = new int[n];
+		for( int v=0; v<n; v++ ) {
+			parent[v] = v;
+			excess[v] = -1;
+		}
+		for( int v=0; v<n; v++ ) {
+			for( int i=graph.offset(v); i<graph.offset(v+1); i++ ) {
+				int w = graph.target(i);
+				if( w <= v ) continue;
+				int a = find(parent, v), b = find(parent, w);
+				if( a != b ) {
+					parent[a] = b;
+					excess[b] += excess[a];
+				}
+				if( ++excess[b] > 0 ) return false;
+			}
+		}
+		return true;
+	}
+
+	private static int find(int[] parent, int v) {
+		while( parent[v] != v ) {
+			parent[v] = parent[parent[v]];
+			v = parent[v];
+		}
+		return v;
+	}
+
+	/**
+	 * @return true if the graph has no K4 minor, see GraphReduction
+	 */
+	static boolean isSeriesParallel(CompactGraph graph) {
+		//graphs without a K4 minor have at most 2n-3 edges
+		if( exceeds(graph.size(), simpleEdgeCount(graph), 2, 3) ) return false;
+		return new GraphReduction(graph).isComplete();
+	}
+}
@@ -0,0 +1,277 @@
+/**
+ * filename: PlanarityServer.java
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A resident planarity service, so repeated checks skip the JVM startup and run on warm
+ * code. It listens on a local HTTP port (see TestPlanarity -serve):
+ *
+ * 		POST /planarity	- the body is an edge list in the text format of EdgeListLoader.
+ * 						  The answer is one line
+ * 							planar|nonplanar	parse micros	test micros
+ * 						  or "error" and a message, with status 400 for a malformed edge
+ * 						  list, 413 for a body over MAX_BODY bytes and 500 when the engine
+ * 						  fails, such as by running out of stack or heap; the worker
+ * 						  survives the failure.
+ * 		GET /stats		- throughput, request counts and latency histograms as text
+ *
+ * Requests are tested on a fixed pool of worker threads fed by a bounded queue. When all
+ * workers are busy and the queue is full a request is refused at once with status 503 and
+ * a Retry-After header, instead of piling up, so the queue bounds the requests in flight
+ * and the latency of those accepted.
+ *
+ * Latency is recorded in LatencyHistograms for the time spent waiting in the queue,
+ * parsing, testing and in total, from the request being accepted to the answer being
+ * sent.
+ *
+ * @author Trevor Mack		(tmm9274@rit.edu)
+ * @author David Sweeney	(dfs7079@rit.edu)
+ *
+ */
+public class PlanarityServer {
+
+	//largest request body accepted
+	static final int MAX_BODY = 64 << 20;
+
+	private final PlanarityTester engine;
+	private final HttpServer server;
+	private final ThreadPoolExecutor workers;
+	private final int queueSize;
+	//answers of earlier requests, or null to test every graph
+	private ResultCache cache;
+	private final long started = System.nanoTime();
+	//results so far
+	private final LongAdder planar = new LongAdder();
+	private final LongAdder nonplanar = new LongAdder();
+	private final LongAdder errors = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+	private final LatencyHistogram queued = new LatencyHistogram();
+	private final LatencyHistogram parse = new LatencyHistogram();
+	private final LatencyHistogram test = new LatencyHistogram();
+	private final LatencyHistogram total = new LatencyHistogram();
+
+	/**
+	 * Creates a server; start() makes it accept requests.
+	 *
+	 * @param engine	- the planarity engine to test every graph with
+	 * @param address	- the address to listen on
+	 * @param threads	- the number of worker threads
+	 * @param queueSize	- the number of requests that may wait for a worker
+	 * @throws IOException if the address cannot be bound
+	 */
+	public PlanarityServer(PlanarityTester engine, InetSocketAddress address, int threads, int queueSize) throws IOException {
+		this.engine = engine;
+		this.queueSize = queueSize;
+		final AtomicInteger number = new AtomicInteger();
+		workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+			new ArrayBlockingQueue<Runnable>(queueSize), new ThreadFactory() {
+				public Thread newThread(Runnable task) {
+					Thread thread = new Thread(task, "planarity-worker-" + number.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		//an answer is written as headers and then a body, which Nagle's algorithm would hold
+		//back until the client acknowledges the headers; the property must be set before the
+		//first server is made
+		if( System.getProperty("sun.net.httpserver.nodelay") == null ) {
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+		}
+		server = HttpServer.create(address, 0);
+		//the handlers only queue requests, so the dispatcher thread runs them itself
+		server.setExecutor(null);
+		server.createContext("/planarity", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				submit(exchange);
+			}
+		});
+		server.createContext("/stats", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				respond(exchange, 200, getStats());
+			}
+		});
+	}
+
+	/**
+	 * @param cache	- answers to reuse for repeated graphs, or null to test every graph
+	 */
+	public void setCache(ResultCache cache) {
+		this.cache = cache;
+	}
+
+	/**
+	 * Starts accepting requests in the background.
+	 */
+	public void start() {
+		server.start();
+	}
+
+	/**
+	 * Stops accepting requests, and waits for the requests in flight to finish.
+	 *
+	 * @param seconds	- the longest time to wait
+	 */
+	public void stop(int seconds) {
+		server.stop(0);
+		workers.shutdown();
+		try {
+			workers.awaitTermination(seconds, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * @return the address the server listens on
+	 */
+	public InetSocketAddress getAddress() {
+		return server.getAddress();
+	}
+
+	/**
+	 * Queues a check request for a worker, or refuses it if the queue is full.
+	 */
+	private void submit(final HttpExchange exchange) throws IOException {
+		if( !exchange.getRequestMethod().equals("POST") ) {
+			respond(exchange, 405, "error\tPOST an edge list\n");
+			return;
+		}
+		final long accepted = System.nanoTime();
+		try {
+			workers.execute(new Runnable() {
+				public void run() {
+					queued.record(System.nanoTime() - accepted);
+					try {
+						check(exchange);
+					} catch (IOException e) {
+						//the client went away
+					} finally {
+						exchange.close();
+						total.record(System.nanoTime() - accepted);
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			rejected.increment();
+			exchange.getResponseHeaders().set("Retry-After", "1");
+			respond(exchange, 503, "busy\n");
+		}
+	}
+
+	/**
+	 * Reads, parses and tests the edge list of one request, and sends the answer.
+	 */
+	private void check(HttpExchange exchange) throws IOException {
+		ByteBuffer body = readBody(exchange.getRequestBody());
+		if( body == null ) {
+			errors.increment();
+			respond(exchange, 413, "error\tmore than " + MAX_BODY + " bytes\n");
+			return;
+		}
+		long start = System.nanoTime();
+		CompactGraph compact;
+		try {
+			compact = EdgeListLoader.load(body);
+		} catch (Exception e) {
+			errors.increment();
+			respond(exchange, 400, "error\t" + e.getMessage() + "\n");
+			return;
+		} catch (Error e) {
+			fail(exchange, e);
+			return;
+		}
+		long parsed = System.nanoTime();
+		parse.record(parsed - start);
+		boolean answer;
+		try {
+			Graph graph = new Graph(compact);
+			answer = cache == null ? engine.isPlanar(graph) : cache.isPlanar(engine, graph);
+		} catch (Exception e) {
+			fail(exchange, e);
+			return;
+		} catch (Error e) {
+			fail(exchange, e);
+			return;
+		}
+		long tested = System.nanoTime();
+		test.record(tested - parsed);
+		(answer ? planar : nonplanar).increment();
+		respond(exchange, 200, (answer ? "planar" : "nonplanar") + "\t" + (parsed - start) / 1000 + "\t"
+			+ (tested - parsed) / 1000 + "\n");
+	}
+
+	/**
+	 * Answers a request the engine or loader failed on with status 500 and the failure.
+	 */
+	private void fail(HttpExchange exchange, Throwable failure) throws IOException {
+		errors.increment();
+		respond(exchange, 500, "error\t" + failure + "\n");
+	}
+
+	/**
+	 * @return the whole body, or null if it is longer than MAX_BODY
+	 */
+	private static ByteBuffer readBody(InputStream in) throws IOException {
+		byte[] bytes = new byte[1 << 14];
+		int length = 0;
+		while( true ) {
+			if( length == bytes.length ) {
+				if( length == MAX_BODY ) return in.read() < 0 ? ByteBuffer.wrap(bytes) : null;
+				bytes = Arrays.copyOf(bytes, Math.min(MAX_BODY, 2 * length));
+			}
+			int read = in.read(bytes, length, bytes.length - length);
+			if( read < 0 ) return ByteBuffer.wrap(bytes, 0, length);
+			length += read;
+		}
+	}
+
+	private static void respond(HttpExchange exchange, int status, String text) throws IOException {
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		OutputStream out = exchange.getResponseBody();
+		out.write(bytes);
+		out.close();
+	}
+
+	/**
+	 * @return throughput, request counts, requests in flight, and a summary line and the
+	 * 		   buckets of every latency histogram
+	 */
+	public String getStats() {
+		double seconds = (System.nanoTime() - started) / 1e9;
+		long done = planar.sum() + nonplanar.sum() + errors.sum();
+		StringBuilder stats = new StringBuilder();
+		stats.append(String.format("engine %s, up %.1f s, %.1f requests/s%n", engine.getName(), seconds, done / seconds));
+		stats.append(String.format("%d planar, %d nonplanar, %d error(s), %d rejected%n",
+			planar.sum(), nonplanar.sum(), errors.sum(), rejected.sum()));
+		stats.append(String.format("%d running, %d/%d queued%n", workers.getActiveCount(), workers.getQueue().size(), queueSize));
+		if( cache != null ) stats.append(cache.getSummary()).append(String.format("%n"));
+		stats.append(LatencyHistogram.getHeader()).append(String.format("%n"));
+		stats.append(queued.getSummary("queued")).append(String.format("%n"));
+		stats.append(parse.getSummary("parse")).append(String.format("%n"));
+		stats.append(test.getSummary("test")).append(String.format("%n"));
+		stats.append(total.getSummary("total")).append(String.format("%n"));
+		stats.append(String.format("total latency histogram:%n")).append(total.getBuckets());
+		return stats.toString();
+	}
+}
@@ -0,0 +1,259 @@
+/**
+ * filename: PlanarityStats.java
+ */
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntBinaryOperator;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Per-phase instrumentation of the planarity pipeline. The engines time their phases with
+ *
+ * 		long start = PlanarityStats.start();
+ * 		...
+ * 		PlanarityStats.end(PlanarityStats.FIND_PIECES, start, depth);
+ *
+ * and report piece counts and allocated subgraphs. The measurements go to two places:
+ * counters summed over the run, read with getSummary() and switched on with
+ * setEnabled(true) (TestPlanarity --stats), and JDK Flight Recorder events (planarity.Phase
+ * and planarity.Pieces), recorded whenever a recording enables them.
+ *
+ * When neither is on, start() returns OFF without reading the clock and every other call
+ * returns after two flag checks, so the instrumentation can stay in place. The event
+ * classes are not touched until Flight Recorder is started.
+ *
+ * @author Trevor Mack		(tmm9274@rit.edu)
+ * @author David Sweeney	(dfs7079@rit.edu)
+ *
+ */
+public class PlanarityStats {
+
+	//phases of the divide and conquer engine
+	public static final int BLOCKS = 0;
+	public static final int BOUND = 1;
+	public static final int FIND_PIECES = 2;
+	public static final int BUILD_PIECES = 3;
+	public static final int RECURSION = 4;
+	public static final int INTERLACEMENT = 5;
+	public static final int BIPARTITE = 6;
+	//phases of the left-right engine
+	public static final int LR_ORIENT = 7;
+	public static final int LR_TEST = 8;
+	public static final int LR_EMBED = 9;
+
+	//returned by start() when nothing is measured; nanoTime may take any other value
+	static final long OFF = Long.MIN_VALUE;
+
+	private static final String[] PHASES = { "blocks", "bound", "FindPieces", "buildPieces",
+		"recursion", "InterlacementGraph", "isBipartite", "lr.orient", "lr.test", "lr.embed" };
+
+	/**
+	 * The time spent in one phase of one call.
+	 */
+	@Name("planarity.Phase")
+	@Label("Planarity Phase")
+	@Category("Planarity")
+	@Description("Time spent in one phase of a planarity test")
+	static class PhaseEvent extends Event {
+		@Label("Phase")
+		String phase;
+		@Label("Recursion Depth")
+		int depth;
+		@Label("Duration")
+		@Timespan(Timespan.NANOSECONDS)
+		long nanos;
+	}
+
+	/**
+	 * The pieces found by one call of the divide and conquer engine.
+	 */
+	@Name("planarity.Pieces")
+	@Label("Planarity Pieces")
+	@Category("Planarity")
+	@Description("Pieces of a graph with respect to a separating cycle")
+	static class PiecesEvent extends Event {
+		@Label("Recursion Depth")
+		int depth;
+		@Label("Pieces")
+		int pieces;
+		@Label("Vertices")
+		int vertices;
+		@Label("Largest Piece")
+		int largest;
+	}
+
+	/**
+	 * Probes whether a recording has the events enabled. Creating the first event sets up
+	 * the event classes with the recorder, which takes hundreds of milliseconds, so the
+	 * probes are only created once Flight Recorder has been started.
+	 */
+	private static class Probes {
+		static final PhaseEvent PHASE = new PhaseEvent();
+		static final PiecesEvent PIECES = new PiecesEvent();
+	}
+
+	private static volatile boolean enabled;
+
+	private static final LongAdder[] nanos = new LongAdder[PHASES.length];
+	private static final LongAdder[] calls = new LongAdder[PHASES.length];
+	private static final AtomicInteger maxDepth = new AtomicInteger();
+	private static final LongAdder pieces = new LongAdder();
+	private static final LongAdder pieceVertices = new LongAdder();
+	private static final AtomicInteger largestPiece = new AtomicInteger();
+	private static final LongAdder subgraphs = new LongAdder();
+	private static final IntBinaryOperator MAX = new IntBinaryOperator() {
+		public int applyAsInt(int left, int right) {
+			return Math.max(left, right);
+		}
+	};
+	static {
+		for( int p=0; p<PHASES.length; p++ ) {
+			nanos[p] = new LongAdder();
+			calls[p] = new LongAdder();
+		}
+	}
+
+	private PlanarityStats() {
+	}
+
+	/**
+	 * @param on	- whether to sum measurements for getSummary()
+	 */
+	public static void setEnabled(boolean on) {
+		enabled = on;
+	}
+
+	/**
+	 * @return true if measurements are summed for getSummary()
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Starts timing a phase.
+	 *
+	 * @return the start time to pass to end, or OFF if nothing is measured
+	 */
+	static long start() {
+		if( !enabled && !recordingPhases() ) return OFF;
+		long now = System.nanoTime();
+		//a clock reading that happens to equal OFF is moved by a nanosecond
+		return now == OFF ? now + 1 : now;
+	}
+
+	/**
+	 * Ends timing a phase.
+	 *
+	 * @param phase	- one of the phase constants
+	 * @param start	- the value returned by start()
+	 * @param depth	- recursion depth of the call, 0 at the top
+	 */
+	static void end(int phase, long start, int depth) {
+		if( start == OFF ) return;
+		long elapsed = System.nanoTime() - start;
+		if( enabled ) {
+			nanos[phase].add(elapsed);
+			calls[phase].increment();
+			maxDepth.accumulateAndGet(depth, MAX);
+		}
+		if( recordingPhases() ) {
+			PhaseEvent event = new PhaseEvent();
+			event.phase = PHASES[phase];
+			event.depth = depth;
+			event.nanos = elapsed;
+			event.commit();
+		}
+	}
+
+	/**
+	 * Records the pieces found by one call.
+	 *
+	 * @param count		- number of pieces
+	 * @param vertices	- vertices over all pieces
+	 * @param largest	- vertices of the largest piece
+	 * @param depth		- recursion depth of the call
+	 */
+	static void pieces(int count, int vertices, int largest, int depth) {
+		if( enabled ) {
+			pieces.add(count);
+			pieceVertices.add(vertices);
+			largestPiece.accumulateAndGet(largest, MAX);
+		}
+		if( recordingPieces() ) {
+			PiecesEvent event = new PiecesEvent();
+			event.depth = depth;
+			event.pieces = count;
+			event.vertices = vertices;
+			event.largest = largest;
+			event.commit();
+		}
+	}
+
+	/**
+	 * @return true if pieces(...) records anything, so callers can skip computing its
+	 * 		   arguments
+	 */
+	static boolean isRecordingPieces() {
+		return enabled || recordingPieces();
+	}
+
+	private static boolean recordingPhases() {
+		return FlightRecorder.isInitialized() && Probes.PHASE.isEnabled();
+	}
+
+	private static boolean recordingPieces() {
+		return FlightRecorder.isInitialized() && Probes.PIECES.isEnabled();
+	}
+
+	/**
+	 * Records subgraphs allocated by an engine.
+	 *
+	 * @param count	- number of Graph objects built
+	 */
+	static void subgraphs(int count) {
+		if( enabled ) subgraphs.add(count);
+	}
+
+	/**
+	 * Clears all summed measurements.
+	 */
+	public static void reset() {
+		for( int p=0; p<PHASES.length; p++ ) {
+			nanos[p].reset();
+			calls[p].reset();
+		}
+		maxDepth.set(0);
+		pieces.reset();
+		pieceVertices.reset();
+		largestPiece.set(0);
+		subgraphs.reset();
+	}
+
+	/**
+	 * @return the summed measurements as a table, one line per phase that ran
+	 */
+	public static String getSummary() {
+		StringBuilder summary = new StringBuilder();
+		summary.append(String.format("%-20s %10s %12s %12s%n", "phase", "calls", "total ms", "mean us"));
+		for( int p=0; p<PHASES.length; p++ ) {
+			long count = calls[p].sum();
+			if( count == 0 ) continue;
+			long total = nanos[p].sum();
+			summary.append(String.format("%-20s %10d %12.3f %12.3f%n", PHASES[p], count, total / 1e6, total / 1e3 / count));
+		}
+		summary.append("max recursion depth: ").append(maxDepth.get()).append(String.format("%n"));
+		summary.append("pieces: ").append(pieces.sum()).append(" (").append(pieceVertices.sum())
+			.append(" vertices, largest ").append(largestPiece.get()).append(")").append(String.format("%n"));
+		summary.append("subgraphs allocated: ").append(subgraphs.sum()).append(String.format("%n"));
+		return summary.toString();
+	}
+}
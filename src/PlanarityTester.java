@@ -0,0 +1,29 @@
+/**
+ * filename: PlanarityTester.java
+ */
+
+/**
+ * A PlanarityTester is an engine that decides whether a Graph can be drawn in the
+ * plane without crossing edges.
+ * 
+ * @author Trevor Mack		(tmm9274@rit.edu)
+ * @author David Sweeney	(dfs7079@rit.edu)
+ *
+ */
+public interface PlanarityTester {
+
+	/**
+	 * Tests whether or not a graph is planar.
+	 * 
+	 * @param 	graph		- the graph to test
+	 * @return	true		- graph is indeed planar
+	 * 			false		- graph is not planar
+	 * @throws PlanarityException if the engine cannot handle the input graph
+	 */
+	public boolean isPlanar(Graph graph) throws PlanarityException;
+
+	/**
+	 * @return the short name used to select this engine on the command line
+	 */
+	public String getName();
+}
@@ -0,0 +1,439 @@
+/**
+ * filename: ResultCache.java
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Remembers planarity answers for graphs that were already tested, so repeated queries in
+ * a batch or across runs skip the engine. Answers are keyed by a 128 bit fingerprint of the
+ * graph and the configuration of the tester that produced them: the engine name, and for
+ * a FilteredTester its filters and reduction. The engines may disagree, and a filter chain
+ * changes which graphs reach the engine, so answers of different configurations are never
+ * shared.
+ *
+ * Two fingerprints are used:
+ *
+ * 		exact		- a hash of the labelled edge set, independent of the order of the edges
+ * 					  in the file. It matches the same graph written in any order.
+ * 		structural	- optional, a Weisfeiler-Lehman hash that ignores the labels. Colour
+ * 					  refinement is run from the degrees until it stops splitting classes.
+ * 					  The key is only made when every vertex ends up with its own colour:
+ * 					  the colours are then a canonical labelling, and the key hashes the
+ * 					  edge set under it, so a hit is an isomorphic graph and not just one
+ * 					  that refinement cannot tell apart (such as K3,3 and the prism).
+ * 					  Graphs with a nontrivial automorphism never get a structural key.
+ *
+ * A fingerprint alone is not trusted: every answer also keeps the vertex and edge counts
+ * and the degree sequence of its graph, which both kinds of key preserve, and is only
+ * returned for a graph that matches them. A key that matches a graph of another shape is
+ * counted as a collision and the graph is tested.
+ *
+ * The cache holds at most a fixed number of answers and evicts the least recently used
+ * one. It can be saved to and loaded from a file to keep answers between runs. All methods
+ * are thread safe.
+ *
+ * @author Trevor Mack		(tmm9274@rit.edu)
+ * @author David Sweeney	(dfs7079@rit.edu)
+ *
+ */
+public class ResultCache {
+
+	//"PRCA" and the format version of save(File)
+	private static final int MAGIC = 0x50524341;
+	private static final int VERSION = 1;
+	//refinement rounds tried before giving up on a structural key
+	private static final int ROUNDS = 32;
+	//seeds of the two halves of a fingerprint
+	private static final long HIGH = 0x9e3779b97f4a7c15L;
+	private static final long LOW = 0xc2b2ae3d27d4eb4fL;
+	//separates exact and structural keys
+	private static final long EXACT = 1;
+	private static final long STRUCTURAL = 2;
+
+	/**
+	 * A 128 bit fingerprint.
+	 */
+	static final class Key {
+		final long high;
+		final long low;
+
+		Key(long high, long low) {
+			this.high = high;
+			this.low = low;
+		}
+
+		public boolean equals(Object other) {
+			if( !(other instanceof Key) ) return false;
+			Key key = (Key)other;
+			return high == key.high && low == key.low;
+		}
+
+		public int hashCode() {
+			return (int)(high ^ (high >>> 32));
+		}
+	}
+
+	/**
+	 * An answer and the shape of the graph it was given for, which a hit must match.
+	 */
+	static final class Entry {
+		final int n;
+		final int m;
+		//pairs of a degree and the number of vertices of that degree, by ascending degree
+		final int[] degrees;
+		final boolean planar;
+
+		Entry(int n, int m, int[] degrees, boolean planar) {
+			this.n = n;
+			this.m = m;
+			this.degrees = degrees;
+			this.planar = planar;
+		}
+
+		/**
+		 * The shape of a graph, with no answer yet.
+		 */
+		Entry(CompactGraph graph) {
+			this(graph.size(), graph.getEdgeCount(), degreeSequence(graph), false);
+		}
+
+		Entry answer(boolean planar) {
+			return new Entry(n, m, degrees, planar);
+		}
+
+		boolean sameShape(Entry other) {
+			return n == other.n && m == other.m && Arrays.equals(degrees, other.degrees);
+		}
+	}
+
+	private final int capacity;
+	private final boolean structural;
+	private final LinkedHashMap<Key, Entry> answers;
+	private long hits;
+	private long structuralHits;
+	private long misses;
+	private long collisions;
+	private long evictions;
+
+	/**
+	 * @param capacity		- the most answers to keep
+	 * @param structural	- whether to also key answers by the structural fingerprint
+	 */
+	public ResultCache(final int capacity, boolean structural) {
+		if( capacity < 1 ) throw new IllegalArgumentException("capacity must be positive");
+		this.capacity = capacity;
+		this.structural = structural;
+		answers = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+				if( size() <= capacity ) return false;
+				evictions++;
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * Answers from the cache if the graph, or with structural keys an isomorphic graph, was
+	 * tested by a tester of the same configuration before; otherwise runs the engine and
+	 * remembers its answer. An engine that throws is not cached.
+	 *
+	 * @param engine	- the planarity engine
+	 * @param graph		- the graph to test
+	 * @return the answer of the engine for graph
+	 * @throws PlanarityException if the engine cannot handle the graph
+	 */
+	public boolean isPlanar(PlanarityTester engine, Graph graph) throws PlanarityException {
+		CompactGraph compact = graph.compact();
+		long seed = hash(configuration(engine), HIGH);
+		Key exact = exactKey(compact, seed);
+		Key isomorphic = null;
+		Entry shape = new Entry(compact);
+		synchronized( this ) {
+			Entry entry = answers.get(exact);
+			if( entry != null && entry.sameShape(shape) ) {
+				hits++;
+				return entry.planar;
+			}
+			if( entry != null ) collisions++;
+		}
+		if( structural ) {
+			isomorphic = structuralKey(compact, seed);
+			if( isomorphic != null ) {
+				synchronized( this ) {
+					Entry entry = answers.get(isomorphic);
+					if( entry != null && entry.sameShape(shape) ) {
+						hits++;
+						structuralHits++;
+						answers.put(exact, entry);
+						return entry.planar;
+					}
+					if( entry != null ) collisions++;
+				}
+			}
+		}
+		synchronized( this ) {
+			misses++;
+		}
+		Entry entry = shape.answer(engine.isPlanar(graph));
+		synchronized( this ) {
+			answers.put(exact, entry);
+			if( isomorphic != null ) answers.put(isomorphic, entry);
+		}
+		return entry.planar;
+	}
+
+	/**
+	 * @return the configuration of a FilteredTester, or the name of any other engine
+	 */
+	private static String configuration(PlanarityTester engine) {
+		return engine instanceof FilteredTester ? ((FilteredTester)engine).getConfiguration() : engine.getName();
+	}
+
+	/**
+	 * Counts the vertices of every degree.
+	 *
+	 * @return pairs of a degree and its number of vertices, by ascending degree
+	 */
+	static int[] degreeSequence(CompactGraph graph) {
+		int n = graph.size();
+		int max = 0;
+		for( int v=0; v<n; v++ ) {
+			max = Math.max(max, graph.degree(v));
+		}
+		int[] count = new int[max+1];
+		int distinct = 0;
+		for( int v=0; v<n; v++ ) {
+			if( count[graph.degree(v)]++ == 0 ) distinct++;
+		}
+		int[] degrees = new int[2*distinct];
+		for( int d=0, k=0; d<=max; d++ ) {
+			if( count[d] == 0 ) continue;
+			degrees[k++] = d;
+			degrees[k++] = count[d];
+		}
+		return degrees;
+	}
+
+	/**
+	 * Hashes the labels of the endpoints of every edge, and of every vertex so isolated
+	 * vertices count. The hashes are summed, which makes the key independent of the order
+	 * of the vertices and edges.
+	 */
+	static Key exactKey(CompactGraph graph, long seed) {
+		int n = graph.size();
+		long[] labels = new long[n];
+		for( int v=0; v<n; v++ ) {
+			labels[v] = hash(String.valueOf(graph.getLabel(v)), seed);
+		}
+		return fingerprint(graph, labels, seed ^ EXACT);
+	}
+
+	/**
+	 * Refines vertex colours from the degrees. Each round a vertex takes a hash of its colour
+	 * and the sum of its neighbors' colours, until every colour class is a single vertex or
+	 * a round splits no class.
+	 *
+	 * @return the fingerprint of the edge set under the final colours, or null if some class
+	 * 		   still holds more than one vertex
+	 */
+	static Key structuralKey(CompactGraph graph, long seed) {
+		int n = graph.size();
+		long[] colors = new long[n];
+		for( int v=0; v<n; v++ ) {
+			colors[v] = mix(graph.degree(v) ^ seed);
+		}
+		long[] sorted = new long[n];
+		int classes = countClasses(colors, sorted);
+		for( int round=0; round<ROUNDS && classes < n; round++ ) {
+			long[] next = new long[n];
+			for( int v=0; v<n; v++ ) {
+				long sum = 0;
+				for( int i=graph.offset(v); i<graph.offset(v+1); i++ ) {
+					sum += mix(colors[graph.target(i)] ^ LOW);
+				}
+				next[v] = mix(colors[v] * HIGH + sum);
+			}
+			int refined = countClasses(next, sorted);
+			if( refined == classes ) break;
+			colors = next;
+			classes = refined;
+		}
+		return classes < n ? null : fingerprint(graph, colors, seed ^ STRUCTURAL);
+	}
+
+	private static int countClasses(long[] colors, long[] sorted) {
+		System.arraycopy(colors, 0, sorted, 0, colors.length);
+		Arrays.sort(sorted);
+		int classes = 0;
+		for( int i=0; i<sorted.length; i++ ) {
+			if( i == 0 || sorted[i] != sorted[i-1] ) classes++;
+		}
+		return classes;
+	}
+
+	/**
+	 * Sums two independent hashes of every vertex name and of every edge, as the unordered
+	 * pair of its endpoint names. Each edge is met once from its smaller endpoint, a self
+	 * loop twice.
+	 */
+	private static Key fingerprint(CompactGraph graph, long[] names, long seed) {
+		int n = graph.size();
+		long high = mix(seed ^ n) + mix(graph.getEdgeCount() ^ HIGH);
+		long low = mix(seed ^ LOW ^ n) + mix(graph.getEdgeCount() ^ LOW);
+		for( int v=0; v<n; v++ ) {
+			high += mix(names[v] ^ HIGH);
+			low += mix(names[v] ^ LOW);
+			for( int i=graph.offset(v); i<graph.offset(v+1); i++ ) {
+				int w = graph.target(i);
+				if( w < v ) continue;
+				long a = Math.min(names[v], names[w]), b = Math.max(names[v], names[w]);
+				long edge = mix(a) * 31 + b;
+				high += mix(edge + HIGH);
+				low += mix(edge ^ LOW) * LOW;
+			}
+		}
+		return new Key(high, low);
+	}
+
+	private static long hash(String s, long seed) {
+		long h = seed;
+		for( int i=0; i<s.length(); i++ ) {
+			h = (h ^ s.charAt(i)) * 0x100000001b3L;
+		}
+		return mix(h ^ s.length());
+	}
+
+	private static long mix(long x) {
+		x ^= x >>> 33;
+		x *= 0xff51afd7ed558ccdL;
+		x ^= x >>> 33;
+		x *= 0xc4ceb9fe1a85ec53L;
+		x ^= x >>> 33;
+		return x;
+	}
+
+	/**
+	 * Loads answers saved by save(File). They are added as the least recently used entries,
+	 * in the order they were saved, and the oldest are evicted if they do not fit.
+	 *
+	 * @param file	- the cache file
+	 * @throws IOException if the file cannot be read or is not a cache file
+	 */
+	public void load(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+		try {
+			if( in.readInt() != MAGIC ) throw new IOException("not a cache file: " + file);
+			int version = in.readInt();
+			if( version != VERSION ) throw new IOException("unsupported cache version " + version + ": " + file);
+			int count = in.readInt();
+			List<Key> keys = new ArrayList<Key>(Math.min(count, capacity));
+			List<Entry> entries = new ArrayList<Entry>(Math.min(count, capacity));
+			for( int k=0; k<count; k++ ) {
+				Key key = new Key(in.readLong(), in.readLong());
+				boolean planar = in.readBoolean();
+				int n = in.readInt(), m = in.readInt();
+				int[] degrees = new int[in.readInt()];
+				for( int d=0; d<degrees.length; d++ ) {
+					degrees[d] = in.readInt();
+				}
+				if( k < count - capacity ) continue;
+				keys.add(key);
+				entries.add(new Entry(n, m, degrees, planar));
+			}
+			synchronized( this ) {
+				//entries already present are more recent than anything in the file
+				LinkedHashMap<Key, Entry> current = new LinkedHashMap<Key, Entry>(answers);
+				long evicted = evictions;
+				answers.clear();
+				for( int k=0; k<keys.size(); k++ ) {
+					answers.put(keys.get(k), entries.get(k));
+				}
+				answers.putAll(current);
+				evictions = evicted;
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Saves all answers, least recently used first.
+	 *
+	 * @param file	- the cache file, replaced if it exists
+	 * @throws IOException if the file cannot be written
+	 */
+	public void save(File file) throws IOException {
+		File temp = new File(file.getPath() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1 << 16));
+		try {
+			synchronized( this ) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(answers.size());
+				for( Map.Entry<Key, Entry> entry : answers.entrySet() ) {
+					Entry answer = entry.getValue();
+					out.writeLong(entry.getKey().high);
+					out.writeLong(entry.getKey().low);
+					out.writeBoolean(answer.planar);
+					out.writeInt(answer.n);
+					out.writeInt(answer.m);
+					out.writeInt(answer.degrees.length);
+					for( int degree : answer.degrees ) {
+						out.writeInt(degree);
+					}
+				}
+			}
+		} finally {
+			out.close();
+		}
+		//replace the old file only once the new one is complete
+		if( !temp.renameTo(file) && !(file.delete() && temp.renameTo(file)) ) {
+			throw new IOException("cannot replace " + file);
+		}
+	}
+
+	/**
+	 * @return the number of answers held
+	 */
+	public synchronized int size() {
+		return answers.size();
+	}
+
+	/**
+	 * @return the number of queries answered from the cache
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return the number of queries that ran the engine
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return a one line summary of hits, misses, collisions and evictions
+	 */
+	public synchronized String getSummary() {
+		return "cache: " + hits + " hit(s)" + (structural ? " (" + structuralHits + " structural)" : "") + ", "
+			+ misses + " miss(es), " + (collisions > 0 ? collisions + " collision(s), " : "")
+			+ evictions + " eviction(s), " + answers.size() + "/" + capacity + " entries";
+	}
+}
@@ -0,0 +1,286 @@
+/**
+ * filename: StreamRunner.java
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests a stream of graphs, such as the output of a producer piped to standard input,
+ * without staging them in files. The stream is a series of records in the text format of
+ * EdgeListLoader, each ended by a blank line or by the end of the stream; empty records are
+ * skipped. The work is split into pipeline stages that run at the same time on their own
+ * threads, connected by bounded queues:
+ *
+ * 		read	- splits the stream into records
+ * 		parse	- scans the edges of a record, see EdgeListLoader.parse
+ * 		build	- builds the CompactGraph of the edges
+ * 		test	- runs the engine, on a number of threads
+ * 		write	- prints the results in input order, on the calling thread
+ *
+ * so a record is parsed while the one before it is built and earlier ones are tested. A
+ * slow stage holds back the stages before it once its queue is full, and at most a fixed
+ * number of records are in flight, so memory stays bounded however long the stream is.
+ * Every result is printed as one line of the form
+ *
+ * 		record	planar|nonplanar|error	micros
+ *
+ * where record counts from 1 and micros is the time spent parsing, building and testing
+ * it. A record that cannot be parsed or that the engine rejects is reported as "error"
+ * and does not stop the stream. With a ResultCache, a graph that was tested before is
+ * answered from the cache.
+ *
+ * @author Trevor Mack		(tmm9274@rit.edu)
+ * @author David Sweeney	(dfs7079@rit.edu)
+ *
+ */
+public class StreamRunner {
+
+	//records that may wait between two stages
+	private static final int QUEUE_SIZE = 16;
+	//bytes read from the stream at once
+	private static final int READ_SIZE = 1 << 16;
+	//marks the end of the stream in every queue
+	private static final Record END = new Record(0, null);
+
+	private final PlanarityTester engine;
+	private final int testers;
+	private final PrintStream out;
+	//answers of earlier tests, or null to test every graph
+	private ResultCache cache;
+	//records read but not yet printed, so results waiting for an earlier one stay bounded
+	private final Semaphore inFlight;
+	//results so far
+	private final AtomicInteger planar = new AtomicInteger();
+	private final AtomicInteger nonplanar = new AtomicInteger();
+	private final AtomicInteger errors = new AtomicInteger();
+	//the first failure reading the stream, or null
+	private volatile IOException readError;
+
+	/**
+	 * One graph on its way through the stages; each stage fills in its part.
+	 */
+	private static final class Record {
+		final long index;
+		final ByteBuffer bytes;
+		long nanos;
+		EdgeListLoader edges;
+		Graph graph;
+		String result;
+
+		Record(long index, ByteBuffer bytes) {
+			this.index = index;
+			this.bytes = bytes;
+		}
+	}
+
+	/**
+	 * A stage of the pipeline: takes records from one queue, works on them and passes them
+	 * on, until it takes END. The last of the threads of a stage to finish passes END on.
+	 */
+	private abstract class Stage extends Thread {
+		private final BlockingQueue<Record> in;
+		private final BlockingQueue<Record> out;
+		private final AtomicInteger running;
+
+		Stage(String name, BlockingQueue<Record> in, BlockingQueue<Record> out, AtomicInteger running) {
+			super(name);
+			setDaemon(true);
+			this.in = in;
+			this.out = out;
+			this.running = running;
+		}
+
+		public void run() {
+			try {
+				while( true ) {
+					Record record = in.take();
+					if( record == END ) {
+						//let the other threads of this stage see the end too
+						in.put(END);
+						break;
+					}
+					if( record.result == null ) {
+						long start = System.nanoTime();
+						try {
+							work(record);
+						} catch (Throwable e) {
+							//a stage that died would stall the pipeline, so any failure is an error
+							record.result = "error";
+						}
+						record.nanos += System.nanoTime() - start;
+					}
+					out.put(record);
+				}
+				if( running.decrementAndGet() == 0 ) out.put(END);
+			} catch (InterruptedException e) {
+				//the pipeline is shut down
+			}
+		}
+
+		abstract void work(Record record) throws Exception;
+	}
+
+	/**
+	 * @param engine	- the planarity engine to run on every graph
+	 * @param testers	- number of threads of the test stage
+	 * @param out		- where result lines are written
+	 */
+	public StreamRunner(PlanarityTester engine, int testers, PrintStream out) {
+		this.engine = engine;
+		this.testers = testers;
+		this.out = out;
+		//every queue full, a record in every stage and one waiting for a permit
+		inFlight = new Semaphore(4*QUEUE_SIZE + testers + 3);
+	}
+
+	/**
+	 * @param cache	- answers to reuse for repeated graphs, or null to test every graph
+	 */
+	public void setCache(ResultCache cache) {
+		this.cache = cache;
+	}
+
+	/**
+	 * Tests every record of a stream and waits until every result has been printed.
+	 *
+	 * @param stream	- the stream of records, read to its end but not closed
+	 * @return true	- if no record ended in an error
+	 * @throws IOException if the stream cannot be read; the records read before are
+	 * 					   still tested and printed
+	 * @throws InterruptedException if interrupted while waiting for the stages
+	 */
+	public boolean run(final InputStream stream) throws IOException, InterruptedException {
+		final BlockingQueue<Record> read = new ArrayBlockingQueue<Record>(QUEUE_SIZE);
+		BlockingQueue<Record> parsed = new ArrayBlockingQueue<Record>(QUEUE_SIZE);
+		BlockingQueue<Record> built = new ArrayBlockingQueue<Record>(QUEUE_SIZE);
+		BlockingQueue<Record> tested = new ArrayBlockingQueue<Record>(QUEUE_SIZE);
+		Thread reader = new Thread("stream-read") {
+			public void run() {
+				try {
+					split(stream, read);
+				} catch (IOException e) {
+					readError = e;
+				} catch (InterruptedException e) {
+					return;
+				}
+				try {
+					read.put(END);
+				} catch (InterruptedException e) {
+					//the pipeline is shut down
+				}
+			}
+		};
+		reader.setDaemon(true);
+		Thread[] stages = new Thread[testers + 2];
+		stages[0] = new Stage("stream-parse", read, parsed, new AtomicInteger(1)) {
+			void work(Record record) throws Exception {
+				record.edges = EdgeListLoader.parse(record.bytes);
+			}
+		};
+		stages[1] = new Stage("stream-build", parsed, built, new AtomicInteger(1)) {
+			void work(Record record) {
+				record.graph = new Graph(record.edges.build());
+				record.edges = null;
+			}
+		};
+		AtomicInteger running = new AtomicInteger(testers);
+		for( int t=0; t<testers; t++ ) {
+			stages[t+2] = new Stage("stream-test-" + (t+1), built, tested, running) {
+				void work(Record record) throws Exception {
+					boolean planar = cache == null ? engine.isPlanar(record.graph) : cache.isPlanar(engine, record.graph);
+					record.result = planar ? "planar" : "nonplanar";
+					record.graph = null;
+				}
+			};
+		}
+		reader.start();
+		for( Thread stage : stages ) {
+			stage.start();
+		}
+		try {
+			write(tested);
+		} finally {
+			reader.interrupt();
+			for( Thread stage : stages ) {
+				stage.interrupt();
+			}
+		}
+		if( readError != null ) throw readError;
+		return errors.get() == 0;
+	}
+
+	/**
+	 * Splits the stream into records at blank lines and queues them in order.
+	 */
+	private void split(InputStream stream, BlockingQueue<Record> read) throws IOException, InterruptedException {
+		byte[] buffer = new byte[READ_SIZE];
+		byte[] record = new byte[READ_SIZE];
+		int length = 0, lineStart = 0;
+		long index = 0;
+		while( true ) {
+			int count = stream.read(buffer);
+			if( count < 0 ) break;
+			for( int i=0; i<count; i++ ) {
+				byte b = buffer[i];
+				if( length == record.length ) record = Arrays.copyOf(record, 2*record.length);
+				record[length++] = b;
+				if( b != '\n' ) continue;
+				//a blank line, "\n" or "\r\n", ends the record before it
+				int line = length - lineStart;
+				if( line == 1 || (line == 2 && record[lineStart] == '\r') ) {
+					if( lineStart > 0 ) index = queue(read, record, lineStart, index);
+					length = 0;
+				}
+				lineStart = length;
+			}
+		}
+		if( length > 0 ) queue(read, record, length, index);
+	}
+
+	private long queue(BlockingQueue<Record> read, byte[] record, int length, long index) throws InterruptedException {
+		inFlight.acquire();
+		read.put(new Record(index+1, ByteBuffer.wrap(Arrays.copyOf(record, length))));
+		return index+1;
+	}
+
+	/**
+	 * Prints the results in input order, holding back those that finish before an earlier
+	 * record, until the end of the stream has passed every stage.
+	 */
+	private void write(BlockingQueue<Record> tested) throws InterruptedException {
+		Map<Long, Record> waiting = new HashMap<Long, Record>();
+		long next = 1;
+		while( true ) {
+			Record record = tested.take();
+			if( record == END ) break;
+			waiting.put(record.index, record);
+			for( Record ready = waiting.remove(next); ready != null; ready = waiting.remove(++next) ) {
+				if( ready.result.equals("planar") ) planar.incrementAndGet();
+				else if( ready.result.equals("nonplanar") ) nonplanar.incrementAndGet();
+				else errors.incrementAndGet();
+				out.println(ready.index + "\t" + ready.result + "\t" + ready.nanos / 1000);
+				inFlight.release();
+			}
+		}
+		out.flush();
+	}
+
+	/**
+	 * @return a one line summary of the results so far, and of the cache if there is one
+	 */
+	public String getSummary() {
+		return (planar.get() + nonplanar.get() + errors.get()) + " record(s): " + planar.get() + " planar, "
+			+ nonplanar.get() + " nonplanar, " + errors.get() + " error(s)"
+			+ (cache == null ? "" : String.format("%n") + cache.getSummary());
+	}
+}
@@ -3,8 +3,18 @@
  */
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Random;
+import java.util.Set;
 import java.util.Stack;
 
 
@@ -20,17 +30,251 @@ import java.util.Stack;
  */
 public class TestPlanarity {
 
+	//planarity engines selectable with -engine, the first one is the default
+	private static final PlanarityTester[] ENGINES = {
+		new LeftRightTester(), new DivideAndConquerTester()
+	};
+	//answers kept by -cachefile when no -cache size is given
+	private static final int DEFAULT_CACHE_SIZE = 100000;
+	//requests that may wait for a worker of -serve when no -queue size is given
+	private static final int DEFAULT_QUEUE_SIZE = 64;
+	//generated graphs of -crosscheck when no -graphs count is given, and their seed
+	private static final int DEFAULT_CROSSCHECK_GRAPHS = 200;
+	private static final long DEFAULT_SEED = 515;
+	
 	/**
+	 * usage: java TestPlanarity [-engine lr|dc] [-filters all|none|list] [-noreduce] [--stats] [-cachefile file [-wl]] [-offheap [-offheapfile file]] [-certificate file] [-embedding] filename
+	 *        java TestPlanarity -verify certificate filename
+	 *        java TestPlanarity [-engine lr|dc] [-filters all|none|list] [-noreduce] [--stats] [-threads n] [-cache n] [-cachefile file] [-wl] -batch directory|glob|manifest
+	 *        java TestPlanarity [-engine lr|dc] [-filters all|none|list] [-noreduce] [--stats] [-threads n] [-cache n] [-cachefile file] [-wl] -stream -|pipe
+	 *        java TestPlanarity [-engine lr|dc] [-filters all|none|list] [-noreduce] [--stats] [-threads n] [-queue n] [-cache n] [-cachefile file] [-wl] -serve port
+	 *        java TestPlanarity -crosscheck [-graphs n] [-seed s] [directory|filename]
+	 *
+	 * Graph files are text edge lists or binary graphs (see BinaryGraphFormat), told apart by
+	 * their first bytes.
+	 *
+	 * -engine picks the left-right engine (lr, the default) or the divide and conquer engine
+	 * (dc). The latter is the reference implementation, kept for -crosscheck and for
+	 * comparison.
+	 * 
+	 * -filters names the PlanarityFilters tried before the engine, comma separated (all by
+	 * default); --stats also prints how many graphs each of them settled. Graphs that pass
+	 * them are shrunk by a GraphReduction before the engine, certificate or embedding runs,
+	 * unless -noreduce is given.
+	 *
+	 * -cache keeps up to n answers in a ResultCache, -cachefile loads the cache from file and
+	 * saves it back after the run, and -wl also matches graphs by their structure.
+	 *
+	 * -offheap loads a binary graph into an OffHeapStorage of direct memory, or of a mapping
+	 * of the scratch file given with -offheapfile, so the heap does not grow with the graph.
+	 * 
+	 * -stream tests the blank line separated edge lists read from standard input ("-") or a
+	 * named pipe with a StreamRunner, parsing, building and testing them at the same time on
+	 * their own threads (-threads of them testing), and prints the results in input order.
+	 * 
+	 * -serve runs a PlanarityServer on the loopback interface until the JVM is stopped, with
+	 * -threads workers and room for -queue waiting requests. Its statistics are printed on
+	 * exit.
+	 * 
+	 * -crosscheck runs every engine on the graph files of a directory (test_cases by default)
+	 * and on -graphs generated graphs (200 by default) from the seed given with -seed, and
+	 * reports the graphs the engines disagree on.
+	 * 
 	 * @param args
 	 */
 	public static void main(String[] args) {
-		if( args.length != 1 ) {
-			System.err.println("usage: java PlanarityTest filename");
+		PlanarityTester engine = ENGINES[0];
+		boolean crossCheck = false;
+		int crossCheckGraphs = DEFAULT_CROSSCHECK_GRAPHS;
+		long seed = DEFAULT_SEED;
+		String batch = null;
+		String stream = null;
+		String certificate = null;
+		String verify = null;
+		boolean embedding = false;
+		int cacheSize = 0;
+		String cacheFile = null;
+		boolean structural = false;
+		PlanarityFilter[] filters = PlanarityFilters.FILTERS;
+		boolean reduce = true;
+		int threads = Runtime.getRuntime().availableProcessors();
+		int port = -1;
+		int queue = DEFAULT_QUEUE_SIZE;
+		boolean offHeap = false;
+		String offHeapFile = null;
+		String filename = null;
+		boolean usage = false;
+		for( int i=0; i<args.length; i++ ) {
+			if( args[i].equals("-engine") && i+1 < args.length ) {
+				engine = getEngine(args[++i]);
+				if( engine == null ) usage = true;
+			}else if( args[i].equals("-certificate") && i+1 < args.length ) {
+				certificate = args[++i];
+			}else if( args[i].equals("-verify") && i+1 < args.length ) {
+				verify = args[++i];
+			}else if( args[i].equals("-batch") && i+1 < args.length ) {
+				batch = args[++i];
+			}else if( args[i].equals("-stream") && i+1 < args.length ) {
+				stream = args[++i];
+			}else if( args[i].equals("-threads") && i+1 < args.length ) {
+				try {
+					threads = Integer.parseInt(args[++i]);
+				} catch (NumberFormatException e) {
+					usage = true;
+				}
+				if( threads < 1 ) usage = true;
+			}else if( args[i].equals("-cache") && i+1 < args.length ) {
+				try {
+					cacheSize = Integer.parseInt(args[++i]);
+				} catch (NumberFormatException e) {
+					usage = true;
+				}
+				if( cacheSize < 1 ) usage = true;
+			}else if( args[i].equals("-serve") && i+1 < args.length ) {
+				try {
+					port = Integer.parseInt(args[++i]);
+				} catch (NumberFormatException e) {
+					usage = true;
+				}
+				if( port < 0 || port > 65535 ) usage = true;
+			}else if( args[i].equals("-queue") && i+1 < args.length ) {
+				try {
+					queue = Integer.parseInt(args[++i]);
+				} catch (NumberFormatException e) {
+					usage = true;
+				}
+				if( queue < 1 ) usage = true;
+			}else if( args[i].equals("-cachefile") && i+1 < args.length ) {
+				cacheFile = args[++i];
+			}else if( args[i].equals("-filters") && i+1 < args.length ) {
+				filters = PlanarityFilters.getFilters(args[++i]);
+				if( filters == null ) usage = true;
+			}else if( args[i].equals("-offheap") ) {
+				offHeap = true;
+			}else if( args[i].equals("-offheapfile") && i+1 < args.length ) {
+				offHeap = true;
+				offHeapFile = args[++i];
+			}else if( args[i].equals("-noreduce") ) {
+				reduce = false;
+			}else if( args[i].equals("-wl") ) {
+				structural = true;
+			}else if( args[i].equals("-crosscheck") ) {
+				crossCheck = true;
+			}else if( args[i].equals("-graphs") && i+1 < args.length ) {
+				try {
+					crossCheckGraphs = Integer.parseInt(args[++i]);
+				} catch (NumberFormatException e) {
+					usage = true;
+				}
+				if( crossCheckGraphs < 0 ) usage = true;
+			}else if( args[i].equals("-seed") && i+1 < args.length ) {
+				try {
+					seed = Long.parseLong(args[++i]);
+				} catch (NumberFormatException e) {
+					usage = true;
+				}
+			}else if( args[i].equals("-embedding") ) {
+				embedding = true;
+			}else if( args[i].equals("--stats") || args[i].equals("-stats") ) {
+				PlanarityStats.setEnabled(true);
+			}else if( filename == null ) {
+				filename = args[i];
+			}else {
+				usage = true;
+			}
+		}
+		final FilteredTester filtered = usage || (filters.length == 0 && !reduce) ? null : new FilteredTester(engine, filters, reduce);
+		if( filtered != null ) engine = filtered;
+		if( PlanarityStats.isEnabled() ) {
+			//printed on every exit path, including System.exit
+			Runtime.getRuntime().addShutdownHook(new Thread() {
+				public void run() {
+					System.err.print(PlanarityStats.getSummary());
+					if( filtered != null ) System.err.print(filtered.getSummary());
+				}
+			});
+		}
+		final ResultCache cache = cacheSize > 0 || cacheFile != null
+			? new ResultCache(cacheSize > 0 ? cacheSize : DEFAULT_CACHE_SIZE, structural) : null;
+		if( cacheFile != null && new File(cacheFile).exists() && !usage ) {
+			try {
+				cache.load(new File(cacheFile));
+			} catch (IOException e) {
+				System.err.println("ignoring cache file: " + e.getMessage());
+			}
+		}
+		if( crossCheck && !usage ) {
+			System.exit(CrossCheck(new File(filename == null ? "test_cases" : filename), crossCheckGraphs, seed) ? 0 : 1);
+		}
+		if( batch != null && !usage && filename == null ) {
+			BatchRunner runner = new BatchRunner(engine, threads, System.out);
+			runner.setCache(cache);
+			try {
+				boolean ok = runner.run(BatchRunner.listInputs(batch));
+				System.err.println(runner.getSummary());
+				if( cacheFile != null ) cache.save(new File(cacheFile));
+				System.exit(ok ? 0 : 1);
+			} catch (Exception e) {
+				e.printStackTrace();
+				System.exit(1);
+			}
+		}
+		if( stream != null && !usage && filename == null ) {
+			StreamRunner runner = new StreamRunner(engine, threads, System.out);
+			runner.setCache(cache);
+			try {
+				InputStream in = stream.equals("-") ? System.in : new FileInputStream(stream);
+				boolean ok;
+				try {
+					ok = runner.run(in);
+				} finally {
+					if( in != System.in ) in.close();
+				}
+				System.err.println(runner.getSummary());
+				if( cacheFile != null ) cache.save(new File(cacheFile));
+				System.exit(ok ? 0 : 1);
+			} catch (Exception e) {
+				e.printStackTrace();
+				System.err.println(runner.getSummary());
+				System.exit(1);
+			}
+		}
+		if( port >= 0 && !usage && filename == null ) {
+			Serve(engine, port, threads, queue, cache, cacheFile);
+			return;
+		}
+		if( verify != null && !usage && filename != null ) {
+			try {
+				boolean valid = KuratowskiSubgraph.verify(new Graph(new File(filename)), KuratowskiSubgraph.read(new File(verify)));
+				System.out.println(valid ? "valid" : "invalid");
+				System.exit(valid ? 0 : 1);
+			} catch (Exception e) {
+				e.printStackTrace();
+				System.exit(1);
+			}
+		}
+		if( usage || filename == null ) {
+			System.err.println("usage: java TestPlanarity [-engine lr|dc] [-filters all|none|list] [-noreduce] [--stats] [-cachefile file [-wl]] [-offheap [-offheapfile file]] [-certificate file] [-embedding] filename");
+			System.err.println("       java TestPlanarity -verify certificate filename");
+			System.err.println("       java TestPlanarity [-engine lr|dc] [-filters all|none|list] [-noreduce] [--stats] [-threads n] [-cache n] [-cachefile file] [-wl] -batch directory|glob|manifest");
+			System.err.println("       java TestPlanarity [-engine lr|dc] [-filters all|none|list] [-noreduce] [--stats] [-threads n] [-cache n] [-cachefile file] [-wl] -stream -|pipe");
+			System.err.println("       java TestPlanarity [-engine lr|dc] [-filters all|none|list] [-noreduce] [--stats] [-threads n] [-queue n] [-cache n] [-cachefile file] [-wl] -serve port");
+			System.err.println("       java TestPlanarity -crosscheck [-graphs n] [-seed s] [directory|filename]");
 		}else {
-			File aFile = new File(args[0]); 
+			File aFile = new File(filename); 
 			Graph graph = null;
+			OffHeapStorage storage = null;
 			try {
-				graph = new Graph(aFile);
+				if (offHeap) {
+					if (!BinaryGraphFormat.isBinary(aFile)) {
+						System.err.println("-offheap needs a binary graph, convert it with BinaryGraphFormat");
+						System.exit(1);
+					}
+					storage = BinaryGraphFormat.loadOffHeap(aFile, offHeapFile == null ? null : new File(offHeapFile));
+					graph = new Graph(storage.getGraph());
+				}else {
+					graph = new Graph(aFile);
+				}
 				
 				/*System.out.println("#unique-nodes? " + graph.size());
 				System.out.println("#undirected-edges? " + graph.getEdgeCount());
@@ -41,20 +285,245 @@ public class TestPlanarity {
 				
 				//TODO: planar doesn't work yet...
 				System.out.println("is planar? " + graph.isPlanar(graph.simpleCycle()));*/
-				if (graph.isPlanar(graph.simpleCycle()))
+				boolean planar = cache == null ? engine.isPlanar(graph) : cache.isPlanar(engine, graph);
+				if( cacheFile != null ) {
+					cache.save(new File(cacheFile));
+					System.err.println(cache.getSummary());
+				}
+				if (planar) {
 					System.out.println("planar");
-				else
+					if (embedding)
+						WriteEmbedding(graph, new File(filename + ".emb"), reduce);
+				}else {
 					System.out.println("nonplanar");
+					if (certificate != null)
+						WriteCertificate(graph, new File(certificate), reduce);
+				}
 				
 			} catch (PlanarityException e) {
 				System.out.println("nonplanar");
 				System.exit(1);
 			} catch (Exception e) {
 				e.printStackTrace();
+			} finally {
+				try {
+					if (storage != null)
+						storage.close();
+				} catch (IOException e) {
+					System.err.println("cannot close off-heap storage: " + e.getMessage());
+				}
 			}
 		}
 	}
 	
+	/**
+	 * Runs a PlanarityServer until the JVM is stopped, then prints its statistics and saves
+	 * the cache.
+	 * 
+	 * @param engine	- the planarity engine
+	 * @param port		- the local port to listen on, 0 for any free port
+	 * @param threads	- the number of worker threads
+	 * @param queue		- the number of requests that may wait for a worker
+	 * @param cache		- the result cache, or null
+	 * @param cacheFile	- where to save the cache on exit, or null
+	 */
+	private static void Serve(PlanarityTester engine, int port, int threads, int queue, final ResultCache cache,
+			final String cacheFile) {
+		final PlanarityServer server;
+		try {
+			server = new PlanarityServer(engine, new InetSocketAddress(InetAddress.getLoopbackAddress(), port), threads, queue);
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.exit(1);
+			return;
+		}
+		server.setCache(cache);
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			public void run() {
+				server.stop(5);
+				System.err.print(server.getStats());
+				if( cacheFile != null ) {
+					try {
+						cache.save(new File(cacheFile));
+					} catch (IOException e) {
+						System.err.println("cannot save cache: " + e.getMessage());
+					}
+				}
+			}
+		});
+		server.start();
+		System.err.println("listening on http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/planarity");
+	}
+	
+	/**
+	 * Embeds a planar graph and writes its rotation system next to the input file.
+	 * 
+	 * @param graph		- the planar graph
+	 * @param file		- the embedding file
+	 * @param reduce	- whether to embed the kernel of a GraphReduction and expand it
+	 * @throws IOException if the file cannot be written
+	 */
+	private static void WriteEmbedding(Graph graph, File file, boolean reduce) throws IOException {
+		PlanarEmbedding embedding;
+		if( reduce ) {
+			GraphReduction reduction = new GraphReduction(graph.compact());
+			embedding = new LeftRightTester().embed(reduction.getKernel());
+			if( embedding != null ) embedding = reduction.expand(embedding);
+		}else {
+			embedding = new LeftRightTester().embed(graph);
+		}
+		if( embedding == null ) {
+			System.err.println("no embedding: the graph is not planar");
+		}else {
+			embedding.write(file);
+			System.err.println("embedding with " + embedding.getFaceCount() + " faces written to " + file);
+		}
+	}
+
+	/**
+	 * Extracts a Kuratowski subgraph of a nonplanar graph and writes it as an edge list.
+	 * 
+	 * @param graph		- the nonplanar graph
+	 * @param file		- the certificate file
+	 * @param reduce	- whether to search the kernel of a GraphReduction and expand the result
+	 * @throws IOException if the file cannot be written
+	 */
+	private static void WriteCertificate(Graph graph, File file, boolean reduce) throws IOException {
+		KuratowskiSubgraph subgraph;
+		if( reduce ) {
+			GraphReduction reduction = new GraphReduction(graph.compact());
+			subgraph = KuratowskiSubgraph.find(new Graph(reduction.getKernel()));
+			if( subgraph != null ) subgraph = subgraph.expand(reduction);
+		}else {
+			subgraph = KuratowskiSubgraph.find(graph);
+		}
+		if( subgraph == null ) {
+			System.err.println("no certificate: the graph has no Kuratowski subgraph");
+		}else {
+			subgraph.write(file);
+			System.err.println(subgraph.getType() + " subdivision with " + subgraph.getEdges().size() + " edges written to " + file);
+		}
+	}
+	
+	/**
+	 * Finds a planarity engine by its short name.
+	 * 
+	 * @param name	- the engine name, see PlanarityTester.getName()
+	 * @return the engine, or null if there is no engine of that name
+	 */
+	public static PlanarityTester getEngine(String name) {
+		for( PlanarityTester engine : ENGINES ) {
+			if( engine.getName().equals(name) ) return engine;
+		}
+		return null;
+	}
+	
+	/**
+	 * Runs every engine on each graph file of a directory (or on a single file) and
+	 * prints one line per file: the file name, the answer of each engine and whether
+	 * the answers agree. An engine that throws is reported as "error".
+	 * 
+	 * Then runs them on generated graphs, alternately a sparse random graph of 5 to 40
+	 * vertices and a near planar triangulation or grid of 100 to 500 vertices (see
+	 * GraphGenerator), where a wrong answer is most likely. Only the graphs the engines
+	 * disagree on are printed, as one line of comma separated edges.
+	 * 
+	 * @param path		- a directory of edge list files, or a single file
+	 * @param graphs	- the number of generated graphs
+	 * @param seed		- the seed of the generated graphs
+	 * @return true	- if all engines agreed on every file and generated graph
+	 */
+	public static boolean CrossCheck(File path, int graphs, long seed) {
+		File[] files = path.isDirectory() ? path.listFiles() : new File[] { path };
+		if( files == null ) {
+			System.err.println("cannot read " + path);
+			return false;
+		}
+		Arrays.sort(files);
+		int disagreements = 0;
+		for( File file : files ) {
+			if( !file.isFile() ) continue;
+			CompactGraph graph;
+			try {
+				graph = new Graph(file).compact();
+			} catch (Exception e) {
+				graph = null;
+			}
+			StringBuilder line = new StringBuilder(file.getPath());
+			boolean agree = CrossCheck(graph, line);
+			if( !agree ) disagreements++;
+			System.out.println(line);
+		}
+		GraphGenerator generator = new GraphGenerator(seed);
+		Random random = new Random(seed);
+		for( int g=0; g<graphs; g++ ) {
+			CompactGraph graph;
+			if( g % 2 == 0 ) {
+				int n = 5 + random.nextInt(36);
+				graph = generator.random(n, n + random.nextInt(2*n));
+			}else {
+				graph = generator.nearPlanar(g % 4 == 1 ? "triangulation" : "grid", 100 + random.nextInt(401));
+			}
+			StringBuilder line = new StringBuilder("graph ").append(g+1).append(" of seed ").append(seed);
+			if( CrossCheck(graph, line) ) continue;
+			disagreements++;
+			line.append('\t');
+			for( Edge edge : new Graph(graph).getEdges() ) {
+				line.append(edge.v1).append(' ').append(edge.v2).append(',');
+			}
+			line.setLength(line.length()-1);
+			System.out.println(line);
+		}
+		if( graphs > 0 ) System.out.println(graphs + " generated graph(s) of seed " + seed);
+		System.out.println(disagreements + " disagreement(s)");
+		return disagreements == 0;
+	}
+	
+	/**
+	 * Appends the answer of every engine for a graph, and whether they agree, to a line.
+	 * 
+	 * @param graph	- the graph, or null if it could not be loaded
+	 * @param line	- the line to append to
+	 * @return true	- if all engines agreed
+	 */
+	private static boolean CrossCheck(CompactGraph graph, StringBuilder line) {
+		String first = null;
+		boolean agree = true;
+		for( PlanarityTester engine : ENGINES ) {
+			String answer;
+			try {
+				answer = graph == null ? "error" : engine.isPlanar(new Graph(graph)) ? "planar" : "nonplanar";
+			} catch (Exception e) {
+				answer = "error";
+			}
+			line.append('\t').append(engine.getName()).append('=').append(answer);
+			if( first == null ) first = answer;
+			else if( !first.equals(answer) ) agree = false;
+		}
+		line.append('\t').append(agree ? "agree" : "DISAGREE");
+		return agree;
+	}
+	
+	/**
+	 * Computes the interlacement graph of the pieces: one vertex per piece (its index in
+	 * pieces) and an edge between every two pieces that conflict. Pieces P and Q conflict
+	 * when Q does not fit between two consecutive attachments of P, which is the case exactly
+	 * when P has an attachment strictly between the first and last attachment of Q along
+	 * the cycle, and Q has one strictly between those of P.
+	 * 
+	 * The cycle is numbered once and the attachments of every piece are kept as a sorted
+	 * array of cycle positions. A sweep over all attachments sorted by position then finds,
+	 * for each piece Q and each gap between consecutive attachments of Q, the pieces with an
+	 * attachment inside the gap that do not fit in it; a segment tree over the sweep (see
+	 * Spans) skips the pieces that fit, such as nested chords. Pieces sharing an inner
+	 * attachment of Q are checked with a binary search. This costs O(A log A) for A
+	 * attachments in total, plus O(log A) for every conflicting attachment found and every
+	 * attachment shared with an inner attachment.
+	 * 
+	 * @param pieces	- the pieces of a graph with respect to cycle
+	 * @param cycle		- the separating cycle
+	 * @return the interlacement graph
+	 */
 	public static Graph InterlacementGraph(List<Graph> pieces, Graph cycle) { 
 		
 		if (cycle==null) {
@@ -65,48 +534,209 @@ public class TestPlanarity {
 			} else
 				return null;
 		}
-			
 		
-		Graph Interlacement = new Graph();
+		HashMap<Object, Integer> position = CyclePositions(cycle);
+		int count = pieces.size();
+		int[][] attachments = new int[count][];
+		int total = 0;
+		for (int i=0; i < count; i++) {
+			attachments[i] = AttachmentPositions(pieces.get(i), position);
+			total += attachments[i].length;
+		}
 		
+		//every attachment as (position, piece), sorted by position
+		long[] sweep = new long[total];
+		int n = 0;
+		for (int i=0; i < count; i++) {
+			for (int p : attachments[i])
+				sweep[n++] = ((long)p << 32) | i;
+		}
+		Arrays.sort(sweep);
 		
-		for (int i=0; i < pieces.size(); i++) {
-			
-			//TODO: devise method to determine order of vertices in cycle so that we can determine interval list
-			List<Object> attach = Attach(pieces.get(i).getNodes(), cycle);
-			
-			
-			Object first = attach.get(0);
-			Object last = attach.get(attach.size()-1);
-			
-			
-			Stack<Object> interval = Intervalize(cycle, first, last);
-			
-			for (int j =0 ; j < pieces.size(); j++) {
-				if (i!=j) {
-					for (int k=0; k < pieces.get(j).size(); k++) {
-						
-						if (interval.contains(pieces.get(j).getNodes().get(k))) {
-							Interlacement.addEdge(i, j);
+		Spans spans = new Spans(sweep, attachments);
+		int[] sources = new int[16], destinations = new int[16];
+		int edges = 0;
+		int[] seen = new int[count];
+		for (int q=0; q < count; q++) {
+			int[] attach = attachments[q];
+			if (attach.length < 2)
+				continue;
+			//pieces with an attachment strictly inside the span of q, in order of position
+			for (int j=0; j+1 < attach.length; j++) {
+				//inside a gap: the piece conflicts unless it fits in the gap
+				int from = FirstAbove(sweep, attach[j]), to = FirstAbove(sweep, attach[j+1]-1);
+				int found = spans.escaping(from, to, attach[j], attach[j+1]);
+				for (int f=0; f < found; f++) {
+					int p = (int)sweep[spans.found[f]];
+					if (p >= q || seen[p] == q+1)
+						continue;
+					seen[p] = q+1;
+					if (edges == sources.length) {
+						sources = Arrays.copyOf(sources, 2*edges);
+						destinations = Arrays.copyOf(destinations, 2*edges);
+					}
+					sources[edges] = p;
+					destinations[edges++] = q;
+				}
+				if (j+2 == attach.length)
+					break;
+				//on the inner attachment that ends the gap: q needs an attachment inside the piece
+				for (int k = to; k < total && (int)(sweep[k] >>> 32) == attach[j+1]; k++) {
+					int p = (int)sweep[k];
+					if (p >= q || seen[p] == q+1)
+						continue;
+					seen[p] = q+1;
+					int[] other = attachments[p];
+					int inside = Arrays.binarySearch(attach, other[0]);
+					inside = inside < 0 ? -inside-1 : inside+1;
+					if (inside < attach.length && attach[inside] < other[other.length-1]) {
+						if (edges == sources.length) {
+							sources = Arrays.copyOf(sources, 2*edges);
+							destinations = Arrays.copyOf(destinations, 2*edges);
 						}
-							
+						sources[edges] = p;
+						destinations[edges++] = q;
 					}
 				}
 			}
-			
-			
 		}
 		
-		return Interlacement;
+		Object[] labels = new Object[count];
+		for (int i=0; i < count; i++)
+			labels[i] = i;
+		return new Graph(CompactGraph.fromEdges(labels, sources, destinations, edges));
 		
 	}
 	
+	/**
+	 * Numbers the vertices of a cycle in the order met walking around it.
+	 * 
+	 * @param cycle	- the cycle
+	 * @return the position of every cycle vertex
+	 */
+	static HashMap<Object, Integer> CyclePositions(Graph cycle) {
+		HashMap<Object, Integer> position = new HashMap<Object, Integer>();
+		for (Object start : cycle.getNodes()) {
+			if (position.containsKey(start))
+				continue;
+			Object current = start;
+			while (current != null) {
+				position.put(current, position.size());
+				Object next = null;
+				for (Object neighbor : cycle.getNeighbors(current)) {
+					if (!position.containsKey(neighbor)) {
+						next = neighbor;
+						break;
+					}
+				}
+				current = next;
+			}
+		}
+		return position;
+	}
+	
+	/**
+	 * @param piece		- a piece
+	 * @param position	- the cycle positions from CyclePositions
+	 * @return the cycle positions of the attachments of piece, sorted
+	 */
+	static int[] AttachmentPositions(Graph piece, HashMap<Object, Integer> position) {
+		List<Object> nodes = piece.getNodes();
+		int[] attach = new int[nodes.size()];
+		int n = 0;
+		for (Object node : nodes) {
+			Integer p = position.get(node);
+			if (p != null)
+				attach[n++] = p;
+		}
+		attach = Arrays.copyOf(attach, n);
+		Arrays.sort(attach);
+		return attach;
+	}
+	
+	/**
+	 * A segment tree over the sweep of InterlacementGraph that holds, for every entry, the
+	 * first and last attachment of its piece, and finds the entries of a range whose piece
+	 * reaches below or above given positions in O(log A) per entry found.
+	 */
+	private static class Spans {
+		final int size;
+		//lowest first attachment and highest last attachment below each node
+		final int[] lowest;
+		final int[] highest;
+		//the entries found by the last call of escaping
+		int[] found = new int[16];
+		int count;
+		
+		Spans(long[] sweep, int[][] attachments) {
+			int leaves = 1;
+			while (leaves < sweep.length)
+				leaves *= 2;
+			size = leaves;
+			lowest = new int[2*size];
+			highest = new int[2*size];
+			Arrays.fill(lowest, Integer.MAX_VALUE);
+			Arrays.fill(highest, Integer.MIN_VALUE);
+			for (int k=0; k < sweep.length; k++) {
+				int[] attach = attachments[(int)sweep[k]];
+				lowest[size+k] = attach[0];
+				highest[size+k] = attach[attach.length-1];
+			}
+			for (int node = size-1; node > 0; node--) {
+				lowest[node] = Math.min(lowest[2*node], lowest[2*node+1]);
+				highest[node] = Math.max(highest[2*node], highest[2*node+1]);
+			}
+		}
+		
+		/**
+		 * Finds the entries from..to-1 whose piece has an attachment below low or above high.
+		 * 
+		 * @return the number of entries found, kept in found in sweep order
+		 */
+		int escaping(int from, int to, int low, int high) {
+			count = 0;
+			if (from < to)
+				collect(1, 0, size, from, to, low, high);
+			return count;
+		}
+		
+		private void collect(int node, int nodeFrom, int nodeTo, int from, int to, int low, int high) {
+			if (nodeTo <= from || to <= nodeFrom || (lowest[node] >= low && highest[node] <= high))
+				return;
+			if (node >= size) {
+				if (count == found.length)
+					found = Arrays.copyOf(found, 2*count);
+				found[count++] = node - size;
+				return;
+			}
+			int middle = (nodeFrom + nodeTo) >>> 1;
+			collect(2*node, nodeFrom, middle, from, to, low, high);
+			collect(2*node+1, middle, nodeTo, from, to, low, high);
+		}
+	}
+	
+	/**
+	 * @return the index of the first entry of sweep whose position is greater than p
+	 */
+	private static int FirstAbove(long[] sweep, int p) {
+		int lo = 0, hi = sweep.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if ((int)(sweep[mid] >>> 32) <= p)
+				lo = mid+1;
+			else
+				hi = mid;
+		}
+		return lo;
+	}
+	
 	public static List<Object> Attach(List<Object> piece, Graph cycle) {
 		//attach(n) returns attachment vertices of piece n (in other words, all nodes that exist in both the piece and the cycle)
 		if (cycle==null)
 			return null;
 		
 		List<Object> cycleNodes = cycle.getNodes();
+		Set<Object> pieceNodes = new HashSet<Object>(piece);
 		
 		List<Object> attachments=new ArrayList<Object>();
 		
@@ -114,7 +744,7 @@ public class TestPlanarity {
 			List<Object> neighbors = cycle.getNeighbors(cycleNodes.get(i));
 			
 			for (int j=0; j < neighbors.size(); j++) {
-				if (piece.contains(neighbors.get(j))) {
+				if (pieceNodes.contains(neighbors.get(j))) {
 					//add the current cycle node to attachment list and move
 					//to next cycle node
 					attachments.add(neighbors.get(j));
@@ -135,146 +765,56 @@ public class TestPlanarity {
 	}
 	
 	public static Stack<Object> Intervalize(Graph cycle, Object first, Object last) {
-		List<Object> neighbors = cycle.getNeighbors(first);
+		CompactGraph compact = cycle.compact();
 		Stack<Object> pathStack = new Stack<Object>();
-		List<Object> visited = new ArrayList<Object>();
-		pathStack.add(first);
-		
-		boolean found=false;
-		for (int i=0; i < neighbors.size(); i++) {
-			if (neighbors.get(i)!=last && !found) {
-				visited.add(first);
-				if (DepthSearch(cycle, neighbors.get(i), last, pathStack, visited) != (Object)(-1))
-					found=true;
-			}
-		}
-		
+		for (int node : Interval(compact, compact.indexOf(first), compact.indexOf(last)))
+			pathStack.add(compact.getLabel(node));
 		return pathStack;
 	
 	}
 	
-	private static Object DepthSearch(Graph cycle, Object first, Object goal, Stack<Object> currentPath, List<Object> visited) {
-		
-		List<Object> neighbors = cycle.getNeighbors(first);
-		visited.add(first);
-		
-		for (int i=0; i < neighbors.size(); i++ ) {
-			if (neighbors.get(i) != goal && !visited.contains(neighbors.get(i))) {
-				Object result = DepthSearch(cycle, neighbors.get(i), goal, currentPath, visited);
-				
-				if (result != (Object)(-1)) {
-					currentPath.add(result);
-					return neighbors.get(i);
-				}
-			}
-			else 
-				if (neighbors.get(i)==goal)
-				return neighbors.get(i);
-				
-		}
-		
-		//visited.remove(first);
-		return -1;
-		
-			
-	}
-	
-	public static List<Graph> FindPieces(Graph graph, Graph cycle) { 
-	    
-		//List<Object> graphNodes = cycle.getNodes();
-		List<Object> cycleNodes = cycle.getNodes();
-		
-	
-		List<Object> state = new ArrayList<Object>();
-		
-		List<Graph> pieces = new ArrayList<Graph>();  
+	/**
+	 * Intervalize on vertex ids.
+	 * 
+	 * @param cycle	- the cycle
+	 * @param start	- the id of the first vertex
+	 * @param goal	- the id of the last vertex
+	 * @return the ids of the vertices Intervalize returns, in the same order
+	 */
+	static int[] Interval(CompactGraph cycle, int start, int goal) {
+		GraphSearch search = GraphSearch.forThread();
+		search.begin(cycle);
+		int[] path = new int[cycle.size()+1];
+		path[0] = start;
+		int length = 1;
 		
-		for (int i=0; i < cycleNodes.size(); i++) {
-			List<Object> neighbors = graph.getNeighbors(cycleNodes.get(i));
-			
-			//visit node
-			state.add(cycleNodes.get(i));
-			
-			for (int j=0; j< neighbors.size(); j++) {
-				
-				
-				//search the node if it is not on the cycle
-				if (!cycleNodes.contains(neighbors.get(j)) && !state.contains(neighbors.get(j))) {
-					Graph newPiece = TraversePiece(graph, cycleNodes, neighbors.get(j), state); //this should add all nodes to the piece
-					//newPiece.addEdge(neighbors.get(j), cycleNodes.get(i));
-					pieces.add(newPiece);
+		for (int i=cycle.offset(start); i < cycle.offset(start+1); i++) {
+			int neighbor = cycle.target(i);
+			if (neighbor != goal) {
+				search.mark(start);
+				int found = search.pathTo(neighbor, goal, path, length);
+				if (found >= 0) {
+					length = found;
+					break;
 				}
-						
-			//and i think that's it	
-			}
-			
-		}
-		
-		return pieces;
-		
-	}
-	
-	private static Graph TraversePiece(Graph graph, List<Object> cycleNodes, Object startNode, List<Object> state) {
-		List<Object> neighbors = graph.getNeighbors(startNode);
-		
-		Graph piece = new Graph();
-		
-		//visit node
-		state.add(startNode);
-		
-		for (int i=0; i < neighbors.size(); i++) {
-			if (!state.contains(neighbors.get(i)) && !cycleNodes.contains(neighbors.get(i))) {
-				Graph newPiece=TraversePiece(graph, cycleNodes, neighbors.get(i), state);
-				piece.addGraph(newPiece);
-				piece.addEdge(startNode, neighbors.get(i));
-				
-				//also write code to add this node to the piece list or whatever
 			}
-			if (cycleNodes.contains(neighbors.get(i))) {
-				piece.addEdge(startNode, neighbors.get(i));
-			}
-				
-			
 		}
 		
-		return piece;
+		return Arrays.copyOf(path, length);
 	
 	}
 	
-	static List<Graph> FindVertexPieces(Graph graph, Graph cycle, List<Graph> otherPieces) {
-			
-		List<Graph> pieces = new ArrayList<Graph>();
-		
-		List<Edge> graphEdges = graph.getEdges();
-		List<Edge> cycleEdges = cycle.getEdges();
-	
-		//for (Edge edge : graphEdges) {
-		//	if (graphEdges.contains(edge))
-		//			continue;//graphEdges.remove(edge);
-		//}
-		
-		for (Edge edge : cycleEdges) {
-			for (int i =0; i < graphEdges.size(); i++) {
-				if ( (graphEdges.get(i).equals(edge)))
-					graphEdges.remove(i);
-			}
-		}
-		for (Graph piece : otherPieces) {
-			for (Edge edge : piece.getEdges()) {
-				for (int i =0; i < graphEdges.size(); i++) {
-					if ( (graphEdges.get(i).equals(edge)))
-						graphEdges.remove(i);
-				}
-			}
-		}
-		
-		for (Edge edge : graphEdges) {
-			Graph newGraph = new Graph();
-			newGraph.addEdge(edge.v1, edge.v2);
-			pieces.add(newGraph);
-		}
-	
-		return pieces;
+	/**
+	 * Finds the pieces of a graph with respect to a cycle in one pass, see CyclePieces: the
+	 * bridges in the order their first attachment is met walking the cycle, then the chords
+	 * as single edge pieces.
+	 * 
+	 * @param graph	- the graph
+	 * @param cycle	- the separating cycle
+	 * @return the pieces, as subgraphs of graph
+	 */
+	public static List<Graph> FindPieces(Graph graph, Graph cycle) { 
+		return new CyclePieces(graph.compact(), cycle.compact()).getPieceGraphs();
 	}
 	
 